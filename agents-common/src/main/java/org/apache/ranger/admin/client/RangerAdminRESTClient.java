@@ -23,6 +23,10 @@
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 
+import java.io.InputStream;
+
+import javax.ws.rs.core.MediaType;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.security.AccessControlException;
@@ -32,15 +36,21 @@ import org.apache.ranger.plugin.util.GrantRevokeRequest;
 import org.apache.ranger.plugin.util.RangerRESTClient;
 import org.apache.ranger.plugin.util.RangerRESTUtils;
 import org.apache.ranger.plugin.util.ServicePolicies;
+import org.apache.ranger.plugin.util.ServicePoliciesBinaryFormat;
 
 
 public class RangerAdminRESTClient implements RangerAdminClient {
 	private static final Log LOG = LogFactory.getLog(RangerAdminRESTClient.class);
+
+	private static final long READ_TIMEOUT_MARGIN_MS = 30 * 1000; // over policyUpdateWaitMs, for Ranger Admin to respond after the wait
  
-	private String           serviceName = null;
-	private String           pluginId    = null;
-	private RangerRESTClient restClient  = null;
-	private RangerRESTUtils  restUtils   = new RangerRESTUtils();
+	private String           serviceName          = null;
+	private String           pluginId             = null;
+	private boolean          supportsPolicyDeltas = true;
+	private boolean          useBinaryFormat      = false;
+	private long             policyUpdateWaitMs   = 0;
+	private RangerRESTClient restClient           = null;
+	private RangerRESTUtils  restUtils            = new RangerRESTUtils();
 
 
 	public RangerAdminRESTClient() {
@@ -54,7 +64,18 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 		String url               = RangerConfiguration.getInstance().get(propertyPrefix + ".policy.rest.url");
 		String sslConfigFileName = RangerConfiguration.getInstance().get(propertyPrefix + ".policy.rest.ssl.config.file");
 
+		this.supportsPolicyDeltas = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policy.rest.supports.policy.deltas", true);
+		this.policyUpdateWaitMs   = RangerConfiguration.getInstance().getLong(propertyPrefix + ".policy.rest.wait.for.update.ms", 30 * 1000);
+		this.useBinaryFormat      = RangerConfiguration.getInstance().getBoolean(propertyPrefix + ".policy.rest.binary.format", false);
+
+		// without a read timeout, a request held by Ranger Admin, or lost on the way, blocks the refresher thread and its shutdown
+		long readTimeoutMs = RangerConfiguration.getInstance().getLong(propertyPrefix + ".policy.rest.client.read.timeout.ms", policyUpdateWaitMs > 0 ? (policyUpdateWaitMs + READ_TIMEOUT_MARGIN_MS) : 0);
+
 		init(url, sslConfigFileName);
+
+		if(readTimeoutMs > 0) {
+			restClient.setReadTimeoutMs((int) Math.min(readTimeoutMs, Integer.MAX_VALUE));
+		}
 	}
 
 	@Override
@@ -67,11 +88,22 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 
 		WebResource webResource = createWebResource(RangerRESTUtils.REST_URL_POLICY_GET_FOR_SERVICE_IF_UPDATED + serviceName)
 										.queryParam(RangerRESTUtils.REST_PARAM_LAST_KNOWN_POLICY_VERSION, Long.toString(lastKnownVersion))
-										.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId);
-		ClientResponse response = webResource.accept(RangerRESTUtils.REST_MIME_TYPE_JSON).get(ClientResponse.class);
+										.queryParam(RangerRESTUtils.REST_PARAM_PLUGIN_ID, pluginId)
+										.queryParam(RangerRESTUtils.REST_PARAM_SUPPORTS_POLICY_DELTAS, Boolean.toString(supportsPolicyDeltas));
+
+		// Ranger Admin holds the request until policies change, or for this long
+		if(policyUpdateWaitMs > 0 && lastKnownVersion != -1) {
+			webResource = webResource.queryParam(RangerRESTUtils.REST_PARAM_WAIT_FOR_POLICY_UPDATE_MS, Long.toString(policyUpdateWaitMs));
+		}
+
+		// Ranger Admin that doesn't support the binary format responds in JSON
+		WebResource.Builder builder = useBinaryFormat ? webResource.accept(ServicePoliciesBinaryFormat.MIME_TYPE, RangerRESTUtils.REST_MIME_TYPE_JSON)
+		                                              : webResource.accept(RangerRESTUtils.REST_MIME_TYPE_JSON);
+
+		ClientResponse response = builder.get(ClientResponse.class);
 
 		if(response != null && response.getStatus() == 200) {
-			ret = response.getEntity(ServicePolicies.class);
+			ret = isBinaryFormat(response) ? readBinaryFormat(response) : response.getEntity(ServicePolicies.class);
 		} else if(response != null && response.getStatus() == 304) {
 			// no change
 		} else {
@@ -153,6 +185,22 @@ public class RangerAdminRESTClient implements RangerAdminClient {
 		}
 	}
 
+	private boolean isBinaryFormat(ClientResponse response) {
+		MediaType type = response.getType();
+
+		return type != null && ServicePoliciesBinaryFormat.MIME_TYPE.equalsIgnoreCase(type.getType() + "/" + type.getSubtype());
+	}
+
+	private ServicePolicies readBinaryFormat(ClientResponse response) throws Exception {
+		InputStream in = response.getEntityInputStream();
+
+		try {
+			return ServicePoliciesBinaryFormat.read(in);
+		} finally {
+			in.close();
+		}
+	}
+
 	private WebResource createWebResource(String url) {
 		WebResource ret = restClient.getResource(url);
 		
@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.conditionevaluator;
+
+/**
+ * Condition evaluator that can tell whether its result depends on the request context.
+ *
+ * Decisions of policies with conditions are cached across requests only if all their condition evaluators
+ * implement this interface and return true from isContextIndependent(). Evaluators that don't implement it,
+ * like RangerIpMatcher and RangerTimeOfDayMatcher, are taken to depend on the request context.
+ */
+public interface RangerContextIndependentConditionEvaluator extends RangerConditionEvaluator {
+
+	/**
+	 * @return true if isMatched() depends only on the user, groups, access type and resource of the request;
+	 *         not on its context, client address, access time or any other state
+	 */
+	boolean isContextIndependent();
+}
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.ranger.plugin.policyengine;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache for use on the authorization path, as a replacement for a synchronized CacheMap.
+ *
+ * Entries are spread over segments; each segment evicts with the CLOCK algorithm. Lookups don't take
+ * any lock - a hit only sets the entry's reference bit. Insertion of a new key locks just its segment.
+ * A null key is never cached: lookups of it miss and puts of it are ignored. Null values are not supported.
+ */
+public class ConcurrentCacheMap<K, V> {
+    private static final Log LOG = LogFactory.getLog(ConcurrentCacheMap.class);
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    private final Segment<K, V>[] segments;
+    private final int             segmentMask;
+    private final int             capacity;
+
+    public ConcurrentCacheMap(int capacity) {
+        this(capacity, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentCacheMap(int capacity, int concurrencyLevel) {
+        if (capacity < 1) {
+            capacity = 1;
+        }
+
+        int segmentCount = 1;
+
+        while (segmentCount < concurrencyLevel && segmentCount * 2 <= capacity) {
+            segmentCount <<= 1;
+        }
+
+        int segmentCapacity = (capacity + segmentCount - 1) / segmentCount;
+
+        this.capacity    = capacity;
+        this.segmentMask = segmentCount - 1;
+        this.segments    = new Segment[segmentCount];
+
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment<K, V>(segmentCapacity);
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("ConcurrentCacheMap(capacity=" + capacity + ", concurrencyLevel=" + concurrencyLevel + "): segmentCount=" + segmentCount + ", segmentCapacity=" + segmentCapacity);
+        }
+    }
+
+    public V get(K key) {
+        return key == null ? null : segmentFor(key).get(key);
+    }
+
+    public boolean containsKey(K key) {
+        return get(key) != null;
+    }
+
+    public void put(K key, V value) {
+        if (value == null) {
+            throw new NullPointerException("ConcurrentCacheMap doesn't support null values");
+        }
+
+        if (key != null) {
+            segmentFor(key).put(key, value);
+        }
+    }
+
+    public V remove(K key) {
+        return key == null ? null : segmentFor(key).remove(key);
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int ret = 0;
+
+        for (Segment<K, V> segment : segments) {
+            ret += segment.map.size();
+        }
+
+        return ret;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        long ret = 0;
+
+        for (Segment<K, V> segment : segments) {
+            ret += segment.hitCount.get();
+        }
+
+        return ret;
+    }
+
+    public long getMissCount() {
+        long ret = 0;
+
+        for (Segment<K, V> segment : segments) {
+            ret += segment.missCount.get();
+        }
+
+        return ret;
+    }
+
+    public long getEvictionCount() {
+        long ret = 0;
+
+        for (Segment<K, V> segment : segments) {
+            ret += segment.evictionCount.get();
+        }
+
+        return ret;
+    }
+
+    private Segment<K, V> segmentFor(Object key) {
+        int h = key.hashCode();
+
+        // spread the bits, so that keys differing only in high bits land in different segments
+        h ^= (h >>> 20) ^ (h >>> 12);
+        h ^= (h >>> 7) ^ (h >>> 4);
+
+        return segments[h & segmentMask];
+    }
+
+    @Override
+    public String toString( ) {
+        StringBuilder sb = new StringBuilder();
+
+        toString(sb);
+
+        return sb.toString();
+    }
+
+    public StringBuilder toString(StringBuilder sb) {
+        sb.append("ConcurrentCacheMap={");
+
+        sb.append("capacity={").append(capacity).append("} ");
+        sb.append("segments={").append(segments.length).append("} ");
+        sb.append("size={").append(size()).append("} ");
+        sb.append("hitCount={").append(getHitCount()).append("} ");
+        sb.append("missCount={").append(getMissCount()).append("} ");
+        sb.append("evictionCount={").append(getEvictionCount()).append("} ");
+
+        sb.append("}");
+
+        return sb;
+    }
+
+    static final class Node<K, V> {
+        final K          key;
+        volatile V       value;
+        volatile boolean referenced = false;
+        boolean          removed    = false; // guarded by segment lock
+
+        Node(K key, V value) {
+            this.key   = key;
+            this.value = value;
+        }
+    }
+
+    static final class Segment<K, V> {
+        final ConcurrentHashMap<K, Node<K, V>> map;
+        final Node<K, V>[]                     clock; // guarded by this
+        final AtomicLong                       hitCount      = new AtomicLong();
+        final AtomicLong                       missCount     = new AtomicLong();
+        final AtomicLong                       evictionCount = new AtomicLong();
+
+        private int count = 0; // guarded by this
+        private int hand  = 0; // guarded by this
+
+        @SuppressWarnings("unchecked")
+        Segment(int capacity) {
+            this.map   = new ConcurrentHashMap<K, Node<K, V>>(capacity);
+            this.clock = new Node[capacity];
+        }
+
+        V get(Object key) {
+            Node<K, V> node = map.get(key);
+
+            if (node == null) {
+                missCount.incrementAndGet();
+
+                return null;
+            }
+
+            if (!node.referenced) { // skip the volatile write when the bit is already set
+                node.referenced = true;
+            }
+
+            hitCount.incrementAndGet();
+
+            return node.value;
+        }
+
+        void put(K key, V value) {
+            Node<K, V> node = map.get(key);
+
+            if (node != null) {
+                node.value      = value;
+                node.referenced = true;
+
+                return;
+            }
+
+            synchronized (this) {
+                node = map.get(key);
+
+                if (node != null) {
+                    node.value = value;
+
+                    return;
+                }
+
+                node = new Node<K, V>(key, value);
+
+                if (count < clock.length) {
+                    clock[count++] = node;
+                } else {
+                    // CLOCK: give referenced entries a second chance, replace the first one that isn't
+                    while (true) {
+                        Node<K, V> victim = clock[hand];
+
+                        if (victim.removed) {
+                            break;
+                        }
+
+                        if (!victim.referenced) {
+                            map.remove(victim.key, victim);
+
+                            evictionCount.incrementAndGet();
+
+                            break;
+                        }
+
+                        victim.referenced = false;
+
+                        hand = (hand + 1) % clock.length;
+                    }
+
+                    clock[hand] = node;
+                    hand        = (hand + 1) % clock.length;
+                }
+
+                map.put(key, node);
+            }
+        }
+
+        V remove(Object key) {
+            synchronized (this) {
+                Node<K, V> node = map.remove(key);
+
+                if (node == null) {
+                    return null;
+                }
+
+                node.removed = true; // its clock slot is reused on the next insert that needs one
+
+                return node.value;
+            }
+        }
+
+        void clear() {
+            synchronized (this) {
+                map.clear();
+
+                Arrays.fill(clock, null);
+
+                count = 0;
+                hand  = 0;
+            }
+        }
+    }
+}
@@ -40,5 +40,7 @@ public interface RangerAccessResource {
 
 	public String getAsString(RangerServiceDef serviceDef);
 
+	public RangerAccessResourceKey getCacheKey(RangerServiceDef serviceDef);
+
 	public Map<String, String> getAsMap();
 }
@@ -31,10 +31,11 @@ import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
 
 
 public class RangerAccessResourceImpl implements RangerMutableResource {
-	private String              ownerUser        = null;
-	private Map<String, String> elements         = null;
-	private String              stringifiedValue = null;
-	private String              leafName         = null;
+	private String                  ownerUser        = null;
+	private Map<String, String>     elements         = null;
+	private String                  stringifiedValue = null;
+	private String                  leafName         = null;
+	private RangerAccessResourceKey cacheKey         = null;
 
 
 	public RangerAccessResourceImpl() {
@@ -106,6 +107,7 @@ public class RangerAccessResourceImpl implements RangerMutableResource {
 
 		// reset, so that these will be computed again with updated elements
 		stringifiedValue = leafName = null;
+		cacheKey         = null;
 	}
 
 	@Override
@@ -162,6 +164,17 @@ public class RangerAccessResourceImpl implements RangerMutableResource {
 		return ret;
 	}
 
+	@Override
+	public RangerAccessResourceKey getCacheKey(RangerServiceDef serviceDef) {
+		RangerAccessResourceKey ret = cacheKey;
+
+		if(ret == null) {
+			ret = cacheKey = RangerAccessResourceKey.create(this, serviceDef);
+		}
+
+		return ret;
+	}
+
 	@Override
 	public Map<String, String> getAsMap() {
 		return Collections.unmodifiableMap(elements);
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+
+/**
+ * Key of a resource in caches: values of the resource, in the order of resources in the service-def.
+ *
+ * Identifies the same resources as getAsString() of the resource, without joining the values; the hash is
+ * computed once, when the key is created, and keys with different hashes are not compared value by value.
+ */
+public final class RangerAccessResourceKey {
+	private final String[] values;
+	private final boolean  hasOnlyServiceDefKeys;
+	private final int      hashCode;
+
+	private RangerAccessResourceKey(String[] values, boolean hasOnlyServiceDefKeys) {
+		this.values                = values;
+		this.hasOnlyServiceDefKeys = hasOnlyServiceDefKeys;
+		this.hashCode              = Arrays.hashCode(values);
+	}
+
+	/**
+	 * @return key of the given resource; null if the service-def has no resources
+	 */
+	public static RangerAccessResourceKey create(RangerAccessResource resource, RangerServiceDef serviceDef) {
+		List<RangerResourceDef> resourceDefs = serviceDef == null ? null : serviceDef.getResources();
+
+		if(resource == null || resourceDefs == null) {
+			return null;
+		}
+
+		String[] values     = new String[resourceDefs.size()];
+		int      valueCount = 0;
+
+		for(int i = 0; i < values.length; i++) {
+			RangerResourceDef resourceDef = resourceDefs.get(i);
+
+			if(resourceDef != null && resource.exists(resourceDef.getName())) {
+				values[i] = String.valueOf(resource.getValue(resourceDef.getName()));
+
+				valueCount++;
+			}
+		}
+
+		Set<String> keys = resource.getKeys();
+
+		return new RangerAccessResourceKey(values, keys == null || keys.size() == valueCount);
+	}
+
+	/**
+	 * @return false if the resource has values for names not in the service-def; these are not part of the key
+	 */
+	public boolean hasOnlyServiceDefKeys() {
+		return hasOnlyServiceDefKeys;
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+
+		if(!(obj instanceof RangerAccessResourceKey)) {
+			return false;
+		}
+
+		RangerAccessResourceKey other = (RangerAccessResourceKey) obj;
+
+		return hashCode == other.hashCode && Arrays.equals(values, other.values);
+	}
+
+	@Override
+	public String toString( ) {
+		StringBuilder sb = new StringBuilder();
+
+		for(String value : values) {
+			if(value == null) {
+				continue;
+			}
+
+			if(sb.length() > 0) {
+				sb.append(RangerAccessResource.RESOURCE_SEP);
+			}
+
+			sb.append(value);
+		}
+
+		return sb.toString();
+	}
+}
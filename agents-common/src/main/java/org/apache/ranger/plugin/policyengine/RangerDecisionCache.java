@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+
+/**
+ * Cache of complete access decisions, keyed by (user, groups, accessType, resource).
+ *
+ * Only decisions that didn't involve any policy-item condition are stored, since such decisions depend on
+ * nothing else in the request. An instance belongs to a single RangerPolicyRepository, so installing new
+ * policies discards all cached decisions along with the old repository.
+ */
+public class RangerDecisionCache {
+	private static final Log LOG = LogFactory.getLog(RangerDecisionCache.class);
+
+	private final RangerServiceDef                             serviceDef;
+	private final long                                         ttlMs;
+	private final ConcurrentCacheMap<CacheKey, CachedDecision> cache;
+
+	public RangerDecisionCache(RangerServiceDef serviceDef, int cacheSize, long ttlMs) {
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerDecisionCache(" + serviceDef.getName() + ", cacheSize=" + cacheSize + ", ttlMs=" + ttlMs + ")");
+		}
+
+		this.serviceDef = serviceDef;
+		this.ttlMs      = ttlMs;
+		this.cache      = new ConcurrentCacheMap<CacheKey, CachedDecision>(cacheSize);
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerDecisionCache(" + serviceDef.getName() + ", cacheSize=" + cacheSize + ", ttlMs=" + ttlMs + ")");
+		}
+	}
+
+	/**
+	 * @return the key to lookup/store the decision for the request; null if the request can't be cached
+	 */
+	public CacheKey getKey(RangerAccessRequest request) {
+		RangerAccessResource    resource    = request.getResource();
+		RangerAccessResourceKey resourceKey = resource == null ? null : resource.getCacheKey(serviceDef);
+
+		// keys unknown to the service-def take part in matching; don't cache such requests
+		if(resourceKey == null || !resourceKey.hasOnlyServiceDefKeys()) {
+			return null;
+		}
+
+		String accessType = StringUtils.isEmpty(request.getAccessType()) ? RangerPolicyEngine.ANY_ACCESS : request.getAccessType();
+
+		return new CacheKey(request.getUser(), request.getUserGroups(), accessType, resourceKey);
+	}
+
+	/**
+	 * @return true if a cached decision was found and copied into the result
+	 */
+	public boolean getDecision(CacheKey key, RangerAccessResult result) {
+		CachedDecision decision = cache.get(key);
+
+		if(decision == null) {
+			return false;
+		}
+
+		if(ttlMs > 0 && System.currentTimeMillis() - decision.createTime > ttlMs) {
+			cache.remove(key);
+
+			return false;
+		}
+
+		if(decision.isAccessDetermined) {
+			result.setIsAllowed(decision.isAllowed);
+		}
+
+		if(decision.isAuditedDetermined) {
+			result.setIsAudited(decision.isAudited);
+		}
+
+		result.setPolicyId(decision.policyId);
+		result.setReason(decision.reason);
+
+		return true;
+	}
+
+	public void putDecision(CacheKey key, RangerAccessResult result) {
+		// the request's group set can be modified by the caller after this call; keep a copy
+		CacheKey storedKey = new CacheKey(key.user, key.userGroups == null ? null : new HashSet<String>(key.userGroups), key.accessType, key.resourceKey);
+
+		cache.put(storedKey, new CachedDecision(result));
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	@Override
+	public String toString( ) {
+		StringBuilder sb = new StringBuilder();
+
+		toString(sb);
+
+		return sb.toString();
+	}
+
+	public StringBuilder toString(StringBuilder sb) {
+		sb.append("RangerDecisionCache={");
+
+		sb.append("ttlMs={").append(ttlMs).append("} ");
+		sb.append("cache={").append(cache).append("} ");
+
+		sb.append("}");
+
+		return sb;
+	}
+
+	public static final class CacheKey {
+		private final String                  user;
+		private final Set<String>             userGroups;
+		private final String                  accessType;
+		private final RangerAccessResourceKey resourceKey;
+		private final int                     hashCode;
+
+		CacheKey(String user, Set<String> userGroups, String accessType, RangerAccessResourceKey resourceKey) {
+			this.user        = user;
+			this.userGroups  = userGroups;
+			this.accessType  = accessType;
+			this.resourceKey = resourceKey;
+
+			int hash = 7;
+
+			hash = 31 * hash + ObjectUtils.hashCode(user);
+			hash = 31 * hash + ObjectUtils.hashCode(userGroups);
+			hash = 31 * hash + ObjectUtils.hashCode(accessType);
+			hash = 31 * hash + resourceKey.hashCode();
+
+			this.hashCode = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+
+			if(!(obj instanceof CacheKey)) {
+				return false;
+			}
+
+			CacheKey other = (CacheKey) obj;
+
+			return hashCode == other.hashCode &&
+				   ObjectUtils.equals(user, other.user) &&
+				   ObjectUtils.equals(accessType, other.accessType) &&
+				   resourceKey.equals(other.resourceKey) &&
+				   ObjectUtils.equals(userGroups, other.userGroups);
+		}
+	}
+
+	static final class CachedDecision {
+		final boolean isAccessDetermined;
+		final boolean isAllowed;
+		final boolean isAuditedDetermined;
+		final boolean isAudited;
+		final long    policyId;
+		final String  reason;
+		final long    createTime;
+
+		CachedDecision(RangerAccessResult result) {
+			this.isAccessDetermined  = result.getIsAccessDetermined();
+			this.isAllowed           = result.getIsAllowed();
+			this.isAuditedDetermined = result.getIsAuditedDetermined();
+			this.isAudited           = result.getIsAudited();
+			this.policyId            = result.getPolicyId();
+			this.reason              = result.getReason();
+			this.createTime          = System.currentTimeMillis();
+		}
+	}
+}
@@ -41,6 +41,20 @@ public interface RangerPolicyEngine {
 
 	void setPolicies(String serviceName, RangerServiceDef serviceDef, List<RangerPolicy> policies);
 
+	/**
+	 * @return policies in use; unchanged policies can be the instances from earlier calls to setPolicies() or applyPolicyDeltas(), instead of the ones last given
+	 */
+	List<RangerPolicy> getPolicies();
+
+	/**
+	 * Updates the current policies with the given changes, re-initializing only evaluators of changed policies.
+	 *
+	 * @param changedPolicies  added and updated policies
+	 * @param deletedPolicyIds ids of deleted policies
+	 * @return false if there are no current policies of the service to apply the changes to; setPolicies() should be called then
+	 */
+	boolean applyPolicyDeltas(String serviceName, RangerServiceDef serviceDef, List<RangerPolicy> changedPolicies, Collection<Long> deletedPolicyIds);
+
 	void setDefaultAuditHandler(RangerAuditHandler auditHandler);
 
 	RangerAuditHandler getDefaultAuditHandler();
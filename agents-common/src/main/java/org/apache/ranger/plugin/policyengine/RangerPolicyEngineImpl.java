@@ -19,31 +19,49 @@
 
 package org.apache.ranger.plugin.policyengine;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.audit.RangerAuditHandler;
 import org.apache.ranger.plugin.contextenricher.RangerContextEnricher;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
-import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
+import org.apache.ranger.plugin.policyevaluator.RangerAccessPrincipal;
+import org.apache.ranger.plugin.policyevaluator.RangerConditionResults;
+import org.apache.ranger.plugin.util.ServicePolicies;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 	private static final Log LOG = LogFactory.getLog(RangerPolicyEngineImpl.class);
 
-	private String                 serviceName         = null;
-	private RangerPolicyRepository policyRepository    = null;
-	private RangerAuditHandler     defaultAuditHandler = null;
+	private static final int BULK_EVALUATION_CHUNK_SIZE = 256;
+
+	private volatile String                 serviceName         = null;
+	private volatile RangerPolicyRepository policyRepository    = null;
+	private RangerAuditHandler              defaultAuditHandler = null;
+	private volatile RangerRecentRequests   recentRequests      = null;
+	private boolean                         isWarmupConfigured  = false;
+	private final int                       bulkParallelThreshold;
 
 	public RangerPolicyEngineImpl() {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerPolicyEngineImpl()");
 		}
 
+		// bulk requests of at least this many are evaluated in parallel; 0 to not evaluate in parallel
+		bulkParallelThreshold = RangerConfiguration.getInstance().getInt("ranger.policyengine.bulk.parallel.threshold", 4 * BULK_EVALUATION_CHUNK_SIZE);
+
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerPolicyEngineImpl()");
 		}
@@ -69,14 +87,23 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 	}
 
 	@Override
-	public void setPolicies(String serviceName, RangerServiceDef serviceDef, List<RangerPolicy> policies) {
+	public List<RangerPolicy> getPolicies() {
+		RangerPolicyRepository policyRepository = getPolicyRepository();
+
+		return policyRepository == null ? null : policyRepository.getPolicies();
+	}
+
+	@Override
+	public synchronized void setPolicies(String serviceName, RangerServiceDef serviceDef, List<RangerPolicy> policies) {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerPolicyEngineImpl.setPolicies(" + serviceName + ", " + serviceDef + ", policies.count=" + (policies == null ? 0 : policies.size()) + ")");
 		}
 
 		if (serviceName != null && serviceDef != null && policies != null) {
 			RangerPolicyRepository policyRepository = new RangerPolicyRepository(serviceName);
-			policyRepository.init(serviceDef, policies);
+			policyRepository.init(serviceDef, policies, getPolicyRepository(serviceName));
+
+			warmup(serviceName, policyRepository);
 
 			this.serviceName = serviceName;
 			setPolicyRepository(policyRepository);
@@ -89,6 +116,40 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		}
 	}
 
+	@Override
+	public synchronized boolean applyPolicyDeltas(String serviceName, RangerServiceDef serviceDef, List<RangerPolicy> changedPolicies, Collection<Long> deletedPolicyIds) {
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerPolicyEngineImpl.applyPolicyDeltas(" + serviceName + ", " + serviceDef + ", changedPolicies.count=" + (changedPolicies == null ? 0 : changedPolicies.size()) + ", deletedPolicyIds=" + deletedPolicyIds + ")");
+		}
+
+		boolean                ret               = false;
+		RangerPolicyRepository currentRepository = getPolicyRepository(serviceName);
+
+		if (serviceName == null || serviceDef == null) {
+			LOG.error("RangerPolicyEngineImpl.applyPolicyDeltas ->Invalid arguments: serviceName or serviceDef is null");
+		} else if (currentRepository == null || currentRepository.getPolicies() == null) {
+			LOG.warn("RangerPolicyEngineImpl.applyPolicyDeltas(" + serviceName + "): no current policies to apply the changes to");
+		} else {
+			List<RangerPolicy> policies = ServicePolicies.applyPolicyDeltas(currentRepository.getPolicies(), changedPolicies, deletedPolicyIds);
+
+			RangerPolicyRepository policyRepository = new RangerPolicyRepository(serviceName);
+			policyRepository.init(serviceDef, policies, currentRepository);
+
+			warmup(serviceName, policyRepository);
+
+			this.serviceName = serviceName;
+			setPolicyRepository(policyRepository);
+
+			ret = true;
+		}
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerPolicyEngineImpl.applyPolicyDeltas(" + serviceName + ", " + serviceDef + ", changedPolicies.count=" + (changedPolicies == null ? 0 : changedPolicies.size()) + ", deletedPolicyIds=" + deletedPolicyIds + "): " + ret);
+		}
+
+		return ret;
+	}
+
 	@Override
 	public void setDefaultAuditHandler(RangerAuditHandler auditHandler) {
 		this.defaultAuditHandler = auditHandler;
@@ -101,9 +162,7 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 
 	@Override
 	public RangerAccessResult createAccessResult(RangerAccessRequest request) {
-		RangerPolicyRepository policyRepository = getPolicyRepository();
-
-		return new RangerAccessResult(serviceName, policyRepository == null ? null : policyRepository.getServiceDef(), request);
+		return createAccessResult(request, getPolicyRepository());
 	}
 
 	@Override
@@ -143,12 +202,18 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		
 		Collection<RangerAccessResult> ret = new ArrayList<RangerAccessResult>();
 
-		if(requests != null) {
-			for(RangerAccessRequest request : requests) {
-				RangerAccessResult result = isAccessAllowedNoAudit(request);
+		if(requests != null && !requests.isEmpty()) {
+			RangerAccessRequest[] requestArray = requests.toArray(new RangerAccessRequest[requests.size()]);
+			RangerAccessResult[]  results      = new RangerAccessResult[requestArray.length];
+			BulkEvaluation        evaluation   = new BulkEvaluation(new BulkEvaluationContext(getPolicyRepository()), requestArray, results, 0, requestArray.length);
 
-				ret.add(result);
+			if(bulkParallelThreshold > 0 && requestArray.length >= bulkParallelThreshold) {
+				BulkEvaluationPool.instance.invoke(evaluation);
+			} else {
+				evaluation.compute();
 			}
+
+			ret.addAll(Arrays.asList(results));
 		}
 
 		if(auditHandler != null) {
@@ -163,33 +228,77 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 	}
 
 	protected RangerAccessResult isAccessAllowedNoAudit(RangerAccessRequest request) {
+		RangerRecentRequests recentRequests = this.recentRequests;
+
+		if(recentRequests != null) {
+			recentRequests.add(request);
+		}
+
+		return isAccessAllowedNoAudit(request, getPolicyRepository(), null, false);
+	}
+
+	/*
+	 * @param bulkContext lookups shared with other requests of a bulk request, or null
+	 * @param isWarmup    true for a replayed request, which is not counted in the evaluation statistics used to order evaluators
+	 */
+	private RangerAccessResult isAccessAllowedNoAudit(RangerAccessRequest request, RangerPolicyRepository policyRepository, BulkEvaluationContext bulkContext, boolean isWarmup) {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> RangerPolicyEngineImpl.isAccessAllowedNoAudit(" + request + ")");
 		}
 
-		RangerPolicyRepository policyRepository = getPolicyRepository();
-
-		RangerAccessResult ret = createAccessResult(request);
+		RangerAccessResult ret = createAccessResult(request, policyRepository);
 
 		if(policyRepository != null && ret != null && request != null) {
-			List<RangerPolicyEvaluatorFacade> evaluators = policyRepository.getPolicyEvaluators();
-
-			if(evaluators != null) {
-				boolean foundInCache = policyRepository.setAuditEnabledFromCache(request, ret);
+			RangerDecisionCache          decisionCache = policyRepository.getDecisionCache();
+			RangerDecisionCache.CacheKey decisionKey   = decisionCache == null ? null : decisionCache.getKey(request);
 
-				for(RangerPolicyEvaluator evaluator : evaluators) {
-					evaluator.evaluate(request, ret);
-
-					// stop once allowed==true && auditedDetermined==true
-					if(ret.getIsAccessDetermined() && ret.getIsAuditedDetermined()) {
-						break;
-					}
+			if(decisionKey != null && decisionCache.getDecision(decisionKey, ret)) {
+				if(LOG.isDebugEnabled()) {
+					LOG.debug("RangerPolicyEngineImpl.isAccessAllowedNoAudit(" + request + "): found decision in cache");
 				}
+			} else {
+				if(! policyRepository.setAuditEnabledFromCache(request, ret)) {
+					policyRepository.setAuditEnabled(request, ret);
 
-				if(! foundInCache) {
 					policyRepository.storeAuditEnabledInCache(request, ret);
 				}
 
+				List<RangerPolicyEvaluatorFacade> evaluators = bulkContext == null ? policyRepository.getPolicyEvaluators(request.getResource())
+				                                                                   : policyRepository.getPolicyEvaluators(request.getResource(), bulkContext.evaluatorLookups);
+
+				if(evaluators != null) {
+					boolean                isContextDependent = false;
+					RangerAccessPrincipal  principal          = bulkContext == null ? policyRepository.getAccessPrincipal(request.getUser(), request.getUserGroups())
+					                                                                : bulkContext.getAccessPrincipal(request.getUser(), request.getUserGroups());
+					RangerConditionResults conditionResults   = new RangerConditionResults(); // shared by evaluators, to evaluate a condition once per request
+					boolean                isSampled          = !isWarmup && policyRepository.isEvaluationSampled();
+					int                    evaluatedCount     = 0;
+
+					for(RangerPolicyEvaluatorFacade evaluator : evaluators) {
+						isContextDependent = isContextDependent || evaluator.isContextDependent();
+
+						evaluator.evaluate(request, ret, principal, conditionResults);
+
+						evaluatedCount++;
+
+						// audit is determined before the loop; stop once allowed==true
+						if(ret.getIsAccessDetermined()) {
+							if(isSampled) {
+								evaluator.incrementDecisionCount();
+							}
+
+							break;
+						}
+					}
+
+					if(isSampled) {
+						policyRepository.recordEvaluations(evaluatedCount);
+					}
+
+					if(decisionKey != null && !isContextDependent) {
+						decisionCache.putDecision(decisionKey, ret);
+					}
+				}
 			}
 		}
 
@@ -200,14 +309,146 @@ public class RangerPolicyEngineImpl implements RangerPolicyEngine {
 		return ret;
 	}
 
-	private RangerPolicyRepository getPolicyRepository() {
+	RangerPolicyRepository getPolicyRepository() {
 		return this.policyRepository;
 	}
 
+	/**
+	 * @param count number of the most recent requests to replay against new policies before they are put to use;
+	 *              0 to not replay requests
+	 */
+	synchronized void setWarmupRequestCount(int count) {
+		isWarmupConfigured = true;
+		recentRequests     = count > 0 ? new RangerRecentRequests(count) : null;
+	}
+
+	private RangerAccessResult createAccessResult(RangerAccessRequest request, RangerPolicyRepository policyRepository) {
+		return new RangerAccessResult(serviceName, policyRepository == null ? null : policyRepository.getServiceDef(), request);
+	}
+
+	/*
+	 * Evaluates recent requests with the given repository, before it replaces the current one, so that requests
+	 * don't find its caches empty. Called from the thread that sets policies, not from the thread of a request.
+	 */
+	private void warmup(String serviceName, RangerPolicyRepository policyRepository) {
+		if(!isWarmupConfigured) {
+			setWarmupRequestCount(RangerConfiguration.getInstance().getInt("ranger.plugin." + serviceName + ".policyengine.warmup.request.count", 0));
+		}
+
+		RangerRecentRequests recentRequests = this.recentRequests;
+
+		if(recentRequests == null || getPolicyRepository(serviceName) == null) {
+			return;
+		}
+
+		long                      startTimeMs = System.currentTimeMillis();
+		List<RangerAccessRequest> requests    = recentRequests.getRequests(policyRepository.getServiceDef());
+		int                       failedCount = 0;
+
+		for(RangerAccessRequest request : requests) {
+			try {
+				isAccessAllowedNoAudit(request, policyRepository, null, true);
+			} catch(Exception excp) {
+				// the caller could be modifying the request; warmup is best-effort
+				failedCount++;
+
+				if(LOG.isDebugEnabled()) {
+					LOG.debug("RangerPolicyEngineImpl.warmup(" + serviceName + "): failed to evaluate " + request, excp);
+				}
+			}
+		}
+
+		if(LOG.isInfoEnabled()) {
+			LOG.info("RangerPolicyEngineImpl.warmup(" + serviceName + "): evaluated " + (requests.size() - failedCount) + " recent requests in " + (System.currentTimeMillis() - startTimeMs) + "ms");
+		}
+	}
+
+	/**
+	 * @return current repository, if it has policies of the given service
+	 */
+	private RangerPolicyRepository getPolicyRepository(String serviceName) {
+		RangerPolicyRepository ret = getPolicyRepository();
+
+		return ret != null && StringUtils.equals(serviceName, ret.getRepositoryName()) ? ret : null;
+	}
+
 	private void setPolicyRepository(RangerPolicyRepository policyRepository) {
 		this.policyRepository = policyRepository;
 	}
 
+	/*
+	 * Lookups shared by requests of a bulk request: requests for the same user, or with common resource values, like
+	 * columns of a table, look up their principal and the candidate policies for the common values once.
+	 */
+	static final class BulkEvaluationContext {
+		final RangerPolicyRepository                                       policyRepository;
+		final ConcurrentMap<List<String>, List<RangerPolicyEvaluatorFacade>> evaluatorLookups = new ConcurrentHashMap<List<String>, List<RangerPolicyEvaluatorFacade>>();
+		final ConcurrentMap<List<Object>, RangerAccessPrincipal>             principals       = new ConcurrentHashMap<List<Object>, RangerAccessPrincipal>();
+
+		BulkEvaluationContext(RangerPolicyRepository policyRepository) {
+			this.policyRepository = policyRepository;
+		}
+
+		RangerAccessPrincipal getAccessPrincipal(String user, Set<String> userGroups) {
+			List<Object>          key = Arrays.<Object>asList(user, userGroups);
+			RangerAccessPrincipal ret = principals.get(key);
+
+			if(ret == null) {
+				ret = policyRepository.getAccessPrincipal(user, userGroups);
+
+				principals.put(key, ret);
+			}
+
+			return ret;
+		}
+	}
+
+	/*
+	 * Evaluates requests[fromIndex, toIndex) into the same positions of results; splits into parallel tasks when
+	 * run in a fork-join pool.
+	 */
+	final class BulkEvaluation extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final BulkEvaluationContext context;
+		private final RangerAccessRequest[] requests;
+		private final RangerAccessResult[]  results;
+		private final int                   fromIndex;
+		private final int                   toIndex;
+
+		BulkEvaluation(BulkEvaluationContext context, RangerAccessRequest[] requests, RangerAccessResult[] results, int fromIndex, int toIndex) {
+			this.context   = context;
+			this.requests  = requests;
+			this.results   = results;
+			this.fromIndex = fromIndex;
+			this.toIndex   = toIndex;
+		}
+
+		@Override
+		protected void compute() {
+			if(toIndex - fromIndex > BULK_EVALUATION_CHUNK_SIZE && inForkJoinPool()) {
+				int midIndex = (fromIndex + toIndex) >>> 1;
+
+				invokeAll(new BulkEvaluation(context, requests, results, fromIndex, midIndex),
+				          new BulkEvaluation(context, requests, results, midIndex, toIndex));
+			} else {
+				RangerRecentRequests recentRequests = RangerPolicyEngineImpl.this.recentRequests;
+
+				for(int i = fromIndex; i < toIndex; i++) {
+					if(recentRequests != null) {
+						recentRequests.add(requests[i]);
+					}
+
+					results[i] = isAccessAllowedNoAudit(requests[i], context.policyRepository, context, false);
+				}
+			}
+		}
+	}
+
+	private static final class BulkEvaluationPool {
+		static final ForkJoinPool instance = new ForkJoinPool(Math.max(1, RangerConfiguration.getInstance().getInt("ranger.policyengine.bulk.parallelism", Runtime.getRuntime().availableProcessors())));
+	}
+
 	@Override
 	public String toString( ) {
 		StringBuilder sb = new StringBuilder();
@@ -26,18 +26,26 @@ import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.conditionevaluator.RangerConditionEvaluator;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.policyevaluator.RangerAccessPrincipal;
 import org.apache.ranger.plugin.policyevaluator.RangerCachedPolicyEvaluator;
+import org.apache.ranger.plugin.policyevaluator.RangerConditionResults;
 import org.apache.ranger.plugin.policyevaluator.RangerDefaultPolicyEvaluator;
+import org.apache.ranger.plugin.policyevaluator.RangerIdMaps;
 import org.apache.ranger.plugin.policyevaluator.RangerOptimizedPolicyEvaluator;
 import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
 
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RangerPolicyEvaluatorFacade implements RangerPolicyEvaluator, Comparable<RangerPolicyEvaluatorFacade> {
     private static final Log LOG = LogFactory.getLog(RangerPolicyEvaluatorFacade.class);
 
     RangerDefaultPolicyEvaluator delegate = null;
     int computedPolicyEvalOrder           = 0;
+    int evalOrder                         = 0;
+    int initialEvalOrder                  = 0;
+    boolean isContextDependent            = false;
+    AtomicLong decisionCount              = new AtomicLong();
 
     RangerPolicyEvaluatorFacade() {
         super();
@@ -51,19 +59,41 @@ public class RangerPolicyEvaluatorFacade implements RangerPolicyEvaluator, Compa
         }
     }
 
+    /**
+     * Copy of the given evaluator at a different position in the evaluation order. Shares the
+     * policy evaluator and the decision count with the original.
+     */
+    RangerPolicyEvaluatorFacade(RangerPolicyEvaluatorFacade other, int evalOrder) {
+        this.delegate                = other.delegate;
+        this.computedPolicyEvalOrder = other.computedPolicyEvalOrder;
+        this.initialEvalOrder        = other.initialEvalOrder;
+        this.isContextDependent      = other.isContextDependent;
+        this.decisionCount           = other.decisionCount;
+        this.evalOrder               = evalOrder;
+    }
+
     RangerPolicyEvaluator getPolicyEvaluator() {
         return delegate;
     }
 
     @Override
     public void init(RangerPolicy policy, RangerServiceDef serviceDef) {
+        init(policy, serviceDef, null);
+    }
+
+    void init(RangerPolicy policy, RangerServiceDef serviceDef, RangerIdMaps idMaps) {
         if(LOG.isDebugEnabled()) {
             LOG.debug("==> RangerPolicyEvaluatorFacade.init()");
         }
 
+        if(idMaps != null) {
+            delegate.setIdMaps(idMaps);
+        }
+
         delegate.init(policy, serviceDef);
 
         computedPolicyEvalOrder = computePolicyEvalOrder();
+        isContextDependent      = delegate.isContextDependent();
 
         if(LOG.isDebugEnabled()) {
             LOG.debug("<== RangerPolicyEvaluatorFacade.init()");
@@ -85,6 +115,14 @@ public class RangerPolicyEvaluatorFacade implements RangerPolicyEvaluator, Compa
         delegate.evaluate(request, result);
     }
 
+    void evaluate(RangerAccessRequest request, RangerAccessResult result, RangerAccessPrincipal principal, RangerConditionResults conditionResults) {
+        delegate.evaluate(request, result, principal, conditionResults);
+    }
+
+    boolean isAuditMatch(RangerAccessRequest request) {
+        return delegate.isAuditMatch(request);
+    }
+
     @Override
     public boolean isMatch(RangerAccessResource resource) {
         return delegate.isMatch(resource);
@@ -122,6 +160,46 @@ public class RangerPolicyEvaluatorFacade implements RangerPolicyEvaluator, Compa
         return result;
     }
 
+    /**
+     * @return true if the policy has policy-item conditions whose result can depend on request context
+     */
+    boolean isContextDependent() {
+        return isContextDependent;
+    }
+
+    int getEvalOrder() {
+        return evalOrder;
+    }
+
+    void setEvalOrder(int evalOrder) {
+        this.evalOrder        = evalOrder;
+        this.initialEvalOrder = evalOrder;
+    }
+
+    /**
+     * @return position of this evaluator in the order given by compareTo()
+     */
+    int getInitialEvalOrder() {
+        return initialEvalOrder;
+    }
+
+    /**
+     * @return number of sampled requests whose access this evaluator determined, since tracking started
+     */
+    long getDecisionCount() {
+        return decisionCount.get();
+    }
+
+    void incrementDecisionCount() {
+        decisionCount.incrementAndGet();
+    }
+
+    void decayDecisionCount() {
+        long count = decisionCount.get();
+
+        decisionCount.compareAndSet(count, count / 2); // lost race with an increment is harmless
+    }
+
     private int getComputedPolicyEvalOrder() {
         return computedPolicyEvalOrder;
     }
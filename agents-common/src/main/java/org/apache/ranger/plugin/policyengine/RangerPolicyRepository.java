@@ -20,6 +20,7 @@
 package org.apache.ranger.plugin.policyengine;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,24 +28,80 @@ import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.contextenricher.RangerContextEnricher;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.policyevaluator.RangerAccessPrincipal;
+import org.apache.ranger.plugin.policyevaluator.RangerIdMaps;
+import org.apache.ranger.plugin.policyevaluator.RangerNameIdMap;
 import org.apache.ranger.plugin.policyevaluator.RangerPolicyEvaluator;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RangerPolicyRepository {
     private static final Log LOG = LogFactory.getLog(RangerPolicyRepository.class);
 
     private String serviceName                               = null;
-    private List<RangerPolicyEvaluatorFacade> policyEvaluators  = null;
+    private List<RangerPolicy> policies                         = null;
+    private volatile List<RangerPolicyEvaluatorFacade> policyEvaluators = null;
     private List<RangerContextEnricher> contextEnrichers        = null;
     private RangerServiceDef serviceDef                         = null;
-    // Not used at this time
-    private Map<String, Boolean> accessAuditCache     = null;
+    private volatile Map<String, RangerResourceTrie> policyResourceTrie = null;
+    private List<RangerPolicyEvaluatorFacade> auditEvaluators   = null;
+    private Map<String, RangerResourceTrie> auditResourceTrie   = null;
+    private ConcurrentCacheMap<AuditCacheKey, Boolean> accessAuditCache = null;
+    private RangerDecisionCache decisionCache                   = null;
+    private RangerIdMaps idMaps                                 = new RangerIdMaps();
+    private ConcurrentCacheMap<String, RangerAccessPrincipal> principalCache = null;
+    private int reusedEvaluatorCount                            = 0;
+    private boolean isAuditCacheReused                          = false;
+    private boolean isIdMapsReused                              = false;
+    private String heapUsageReport                              = null;
+
+    // runtime reordering of evaluators: most frequently deciding evaluators first. Counted on a sample of requests, reordered in the background
+    private long evaluatorReorderIntervalMs                     = 0; // 0: disabled
+    private final AtomicLong requestCount                       = new AtomicLong();
+    private final AtomicLong evaluationCount                    = new AtomicLong();
+    private final AtomicBoolean isReordering                    = new AtomicBoolean(false);
+    private volatile long lastReorderTime                       = 0;
+    private volatile int evaluatorReorderCount                  = 0;
+    private volatile double lastAvgEvaluationsPerRequest        = 0;
+
+    private static final Comparator<RangerPolicyEvaluatorFacade> DECISION_COUNT_COMPARATOR = new Comparator<RangerPolicyEvaluatorFacade>() {
+        @Override
+        public int compare(RangerPolicyEvaluatorFacade me, RangerPolicyEvaluatorFacade other) {
+            int ret = Long.compare(other.getDecisionCount(), me.getDecisionCount());
+
+            return ret != 0 ? ret : Integer.compare(me.getInitialEvalOrder(), other.getInitialEvalOrder());
+        }
+    };
 
     private static int RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE = 64*1024;
+    private static int RANGER_POLICYENGINE_DECISION_CACHE_SIZE    = 0; // disabled by default
+    private static long RANGER_POLICYENGINE_DECISION_CACHE_TTL_MS = 60*1000;
+    private static int RANGER_POLICYENGINE_PRINCIPAL_CACHE_SIZE   = 4*1024;
+
+    private static final int EVALUATOR_BUILD_CHUNK_SIZE = 64;
+    private static final int ID_MAPS_MIN_UNUSED_IDS     = 1024; // smaller maps are kept, however many of their ids are unused
+    private static final int EVALUATION_SAMPLE_RATE     = 16; // 1 in EVALUATION_SAMPLE_RATE requests is counted for evaluator reordering
+
+    // remembered lookup of a resource value that found no candidates in the trie
+    private static final List<RangerPolicyEvaluatorFacade> NO_CANDIDATES = Collections.unmodifiableList(new ArrayList<RangerPolicyEvaluatorFacade>());
 
     RangerPolicyRepository(String serviceName) {
         super();
@@ -56,58 +113,651 @@ public class RangerPolicyRepository {
     List<RangerPolicyEvaluatorFacade> getPolicyEvaluators() {
         return policyEvaluators;
     }
+
+    List<RangerPolicyEvaluatorFacade> getPolicyEvaluators(RangerAccessResource resource) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerPolicyRepository.getPolicyEvaluators(" + resource + ")");
+        }
+
+        List<RangerPolicyEvaluatorFacade> ret = getEvaluators(policyResourceTrie, policyEvaluators, resource, null);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerPolicyRepository.getPolicyEvaluators(" + resource + "): evaluators.count=" + (ret == null ? 0 : ret.size()));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Same as getPolicyEvaluators(resource), with lookups of resource values in the tries remembered in the given
+     * map; requests evaluated together often share values, like the database and table of Hive columns.
+     */
+    List<RangerPolicyEvaluatorFacade> getPolicyEvaluators(RangerAccessResource resource, ConcurrentMap<List<String>, List<RangerPolicyEvaluatorFacade>> lookups) {
+        return getEvaluators(policyResourceTrie, policyEvaluators, resource, lookups);
+    }
+
+    /**
+     * Sets isAudited of the result, by looking only at evaluators of audit-enabled policies. The result is the same as
+     * evaluating all policies, so the access evaluation can stop as soon as access is determined.
+     */
+    void setAuditEnabled(RangerAccessRequest request, RangerAccessResult result) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerPolicyRepository.setAuditEnabled(" + request + ")");
+        }
+
+        boolean                           isAudited  = false;
+        List<RangerPolicyEvaluatorFacade> evaluators = getEvaluators(auditResourceTrie, auditEvaluators, request.getResource(), null);
+
+        if (evaluators != null) {
+            for (RangerPolicyEvaluatorFacade evaluator : evaluators) {
+                if (evaluator.isAuditMatch(request)) {
+                    isAudited = true;
+
+                    break;
+                }
+            }
+        }
+
+        result.setIsAudited(isAudited);
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerPolicyRepository.setAuditEnabled(" + request + "): " + isAudited);
+        }
+    }
+
+    private static List<RangerPolicyEvaluatorFacade> getEvaluators(Map<String, RangerResourceTrie> tries, List<RangerPolicyEvaluatorFacade> allEvaluators, RangerAccessResource resource, ConcurrentMap<List<String>, List<RangerPolicyEvaluatorFacade>> lookups) {
+        List<RangerPolicyEvaluatorFacade> ret = null;
+
+        if (tries != null && resource != null) {
+            for (Map.Entry<String, RangerResourceTrie> e : tries.entrySet()) {
+                String resourceValue = resource.getValue(e.getKey());
+
+                if (StringUtils.isEmpty(resourceValue)) {
+                    continue;
+                }
+
+                List<RangerPolicyEvaluatorFacade> candidates;
+
+                if (lookups == null) {
+                    candidates = e.getValue().getEvaluatorsForResource(resourceValue);
+                } else {
+                    List<String> lookupKey = Arrays.asList(e.getKey(), resourceValue);
+
+                    candidates = lookups.get(lookupKey);
+
+                    if (candidates == null) {
+                        candidates = e.getValue().getEvaluatorsForResource(resourceValue);
+
+                        lookups.put(lookupKey, candidates == null ? NO_CANDIDATES : candidates);
+                    } else if (candidates == NO_CANDIDATES) {
+                        candidates = null;
+                    }
+                }
+
+                // every evaluator that can match the resource is in each non-null candidate list; pick the smallest
+                if (candidates != null && (ret == null || candidates.size() < ret.size())) {
+                    ret = candidates;
+
+                    if (ret.isEmpty()) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (ret == null) {
+            ret = allEvaluators;
+        }
+
+        return ret;
+    }
+
     List<RangerContextEnricher> getContextEnrichers() {
         return contextEnrichers;
     }
     RangerServiceDef getServiceDef() {
         return serviceDef;
     }
+    List<RangerPolicy> getPolicies() {
+        return policies;
+    }
+    /**
+     * @return estimated heap used by strings of the policies, and the size released by holding each string once
+     */
+    String getHeapUsageReport() {
+        return heapUsageReport;
+    }
+    RangerDecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+    RangerIdMaps getIdMaps() {
+        return idMaps;
+    }
+
+    /**
+     * @return ids of the given user and groups, shared by all evaluators of this repository
+     */
+    RangerAccessPrincipal getAccessPrincipal(String user, Set<String> userGroups) {
+        RangerAccessPrincipal ret = principalCache.get(user);
+
+        // group membership of a user can change between requests; rebuild when it does
+        if (ret == null || !ret.isFor(user, userGroups)) {
+            ret = new RangerAccessPrincipal(idMaps, user, userGroups);
+
+            principalCache.put(user, ret);
+        }
+
+        return ret;
+    }
 
     void init(RangerServiceDef serviceDef, List<RangerPolicy> policies) {
+        init(serviceDef, policies, null);
+    }
+
+    /**
+     * @param previous repository being replaced, can be null. When the service-def is unchanged, evaluators of
+     *                 policies with unchanged id and version are carried over from it, along with the caches
+     *                 that the policy changes don't affect.
+     */
+    void init(RangerServiceDef serviceDef, List<RangerPolicy> policies, RangerPolicyRepository previous) {
         if(LOG.isDebugEnabled()) {
-            LOG.debug("==> RangerPolicyRepository.init(" + serviceDef + ", policies.count=" + policies.size() + ")");
+            LOG.debug("==> RangerPolicyRepository.init(" + serviceDef + ", policies.count=" + policies.size() + ", previous=" + (previous != null) + ")");
         }
 
+        long startTime = System.currentTimeMillis();
+
         this.serviceDef = serviceDef;
 
-        contextEnrichers = new ArrayList<RangerContextEnricher>();
+        boolean isServiceDefUnchanged = previous != null && isSameServiceDef(previous.serviceDef, serviceDef);
 
-        if (!CollectionUtils.isEmpty(serviceDef.getContextEnrichers())) {
-            for (RangerServiceDef.RangerContextEnricherDef enricherDef : serviceDef.getContextEnrichers()) {
-                if (enricherDef == null) {
-                    continue;
-                }
+        Map<Long, RangerPolicyEvaluatorFacade> previousEvaluators = null;
+
+        // ids are never removed from the maps; once most are of users/groups the policies no longer refer to, the
+        // maps are started afresh. Evaluators refer to ids of the maps they were built with, so none is carried over then
+        isIdMapsReused = isServiceDefUnchanged && !hasMostlyUnusedIds(previous.idMaps, policies);
 
-                RangerContextEnricher contextEnricher = buildContextEnricher(enricherDef);
+        if (isIdMapsReused) {
+            // evaluators carried over refer to ids in the previous repository's maps
+            idMaps             = previous.idMaps;
+            previousEvaluators = getEvaluatorsByPolicyId(previous.policyEvaluators);
+        }
+
+        final int userIdCount  = idMaps.getUserIdMap().size();
+        final int groupIdCount = idMaps.getGroupIdMap().size();
+
+        if (isServiceDefUnchanged) {
+            contextEnrichers = previous.contextEnrichers;
+        } else {
+            contextEnrichers = new ArrayList<RangerContextEnricher>();
+
+            if (!CollectionUtils.isEmpty(serviceDef.getContextEnrichers())) {
+                for (RangerServiceDef.RangerContextEnricherDef enricherDef : serviceDef.getContextEnrichers()) {
+                    if (enricherDef == null) {
+                        continue;
+                    }
+
+                    RangerContextEnricher contextEnricher = buildContextEnricher(enricherDef);
 
-                contextEnrichers.add(contextEnricher);
+                    contextEnrichers.add(contextEnricher);
+                }
             }
         }
 
-        policyEvaluators = new ArrayList<RangerPolicyEvaluatorFacade>();
+        long enrichersTime = System.currentTimeMillis();
 
-        for (RangerPolicy policy : policies) {
-            if (!policy.getIsEnabled()) {
+        RangerPolicy[]                policyArray     = policies.toArray(new RangerPolicy[policies.size()]);
+        RangerPolicyEvaluatorFacade[] evaluatorArray  = new RangerPolicyEvaluatorFacade[policyArray.length];
+        int                           parallelMinSize = RangerConfiguration.getInstance().getInt("ranger.policyengine.init.parallel.threshold", 4 * EVALUATOR_BUILD_CHUNK_SIZE);
+
+        // a carried over evaluator keeps its policy; the copy of the policy in the given list is dropped for it
+        for (int i = 0; i < policyArray.length; i++) {
+            if (!policyArray[i].getIsEnabled()) {
                 continue;
             }
 
-            RangerPolicyEvaluatorFacade evaluator = buildPolicyEvaluator(policy, serviceDef);
+            RangerPolicyEvaluatorFacade evaluator = getReusableEvaluator(previousEvaluators, policyArray[i]);
+
+            if (evaluator != null) {
+                evaluatorArray[i] = new RangerPolicyEvaluatorFacade(evaluator, 0); // previous repository could still be using the original
+                policyArray[i]    = evaluator.getPolicy();
+
+                reusedEvaluatorCount++;
+            }
+        }
+
+        this.policies = Arrays.asList(policyArray);
+
+        RangerPolicyStringPool stringPool = null;
+
+        if (RangerConfiguration.getInstance().getBoolean("ranger.plugin." + serviceName + ".policyengine.policy.compact", true)) {
+            stringPool = compactPolicies(policyArray, previous);
+        }
+
+        EvaluatorBuilder builder = new EvaluatorBuilder(policyArray, evaluatorArray, 0, policyArray.length);
+
+        // evaluators are built into the position of their policy, so the order is the same as building one by one
+        if (parallelMinSize > 0 && policyArray.length >= parallelMinSize) {
+            EvaluatorBuilderPool.instance.invoke(builder);
+        } else {
+            builder.compute();
+        }
 
+        policyEvaluators = new ArrayList<RangerPolicyEvaluatorFacade>(evaluatorArray.length);
+
+        for (RangerPolicyEvaluatorFacade evaluator : evaluatorArray) {
             if (evaluator != null) {
                 policyEvaluators.add(evaluator);
             }
         }
+
+        long evaluatorsTime = System.currentTimeMillis();
+
         Collections.sort(policyEvaluators);
 
+        for (int i = 0; i < policyEvaluators.size(); i++) {
+            policyEvaluators.get(i).setEvalOrder(i);
+        }
+
+        long sortTime = System.currentTimeMillis();
+
+        boolean useResourceTrie = RangerConfiguration.getInstance().getBoolean("ranger.policyengine.resource.trie.enabled", true);
+
+        policyResourceTrie = useResourceTrie ? buildResourceTrie(serviceDef, policyEvaluators) : null;
+
+        auditEvaluators = new ArrayList<RangerPolicyEvaluatorFacade>();
+
+        for (RangerPolicyEvaluatorFacade evaluator : policyEvaluators) {
+            if (evaluator.getPolicy().getIsAuditEnabled()) {
+                auditEvaluators.add(evaluator);
+            }
+        }
+
+        auditResourceTrie = useResourceTrie ? buildResourceTrie(serviceDef, auditEvaluators) : null;
+
+        long triesTime = System.currentTimeMillis();
+
         String propertyName = "ranger.plugin." + serviceName + ".policyengine.auditcachesize";
 
         int auditResultCacheSize = RangerConfiguration.getInstance().getInt(propertyName, RANGER_POLICYENGINE_AUDITRESULT_CACHE_SIZE);
 
-        accessAuditCache = new CacheMap<String, Boolean>(auditResultCacheSize);
+        // audit flag of a resource depends only on audit-enabled policies; cached flags remain valid if these didn't change
+        isAuditCacheReused = isServiceDefUnchanged && isSameEvaluators(previous.auditEvaluators, auditEvaluators);
+
+        accessAuditCache = isAuditCacheReused ? previous.accessAuditCache : new ConcurrentCacheMap<AuditCacheKey, Boolean>(auditResultCacheSize);
+
+        String propertyPrefix    = "ranger.plugin." + serviceName + ".policyengine.decisioncache";
+        int    decisionCacheSize = RangerConfiguration.getInstance().getInt(propertyPrefix + ".size", RANGER_POLICYENGINE_DECISION_CACHE_SIZE);
+        long   decisionCacheTtl  = RangerConfiguration.getInstance().getLong(propertyPrefix + ".ttl.ms", RANGER_POLICYENGINE_DECISION_CACHE_TTL_MS);
+
+        decisionCache = decisionCacheSize > 0 ? new RangerDecisionCache(serviceDef, decisionCacheSize, decisionCacheTtl) : null;
+
+        int principalCacheSize = RangerConfiguration.getInstance().getInt("ranger.plugin." + serviceName + ".policyengine.principalcache.size", RANGER_POLICYENGINE_PRINCIPAL_CACHE_SIZE);
+
+        // a cached principal has no id for users/groups that are new to the id maps
+        boolean isPrincipalCacheReusable = isIdMapsReused && idMaps.getUserIdMap().size() == userIdCount && idMaps.getGroupIdMap().size() == groupIdCount;
+
+        principalCache = isPrincipalCacheReusable ? previous.principalCache : new ConcurrentCacheMap<String, RangerAccessPrincipal>(principalCacheSize);
+
+        evaluatorReorderIntervalMs = RangerConfiguration.getInstance().getLong("ranger.plugin." + serviceName + ".policyengine.evaluator.reorder.interval.ms", 0);
+        lastReorderTime            = System.currentTimeMillis();
+
+        if (previous != null && LOG.isInfoEnabled()) {
+            LOG.info("RangerPolicyRepository.init(" + serviceName + "): evaluators.count=" + policyEvaluators.size() + ", reusedEvaluators=" + reusedEvaluatorCount + ", isIdMapsReused=" + isIdMapsReused + ", isAuditCacheReused=" + isAuditCacheReused + ", isPrincipalCacheReused=" + isPrincipalCacheReusable);
+        }
+
+        long endTime = System.currentTimeMillis();
+
+        heapUsageReport = "service=" + serviceName + ", evaluators=" + policyEvaluators.size() + ", reusedEvaluators=" + reusedEvaluatorCount
+                          + (stringPool != null ? ", " + stringPool.getReport() : ", policies=" + policies.size());
+
+        if (LOG.isInfoEnabled()) {
+            LOG.info("RangerPolicyRepository.init(" + serviceName + "): heap usage: " + heapUsageReport);
+            LOG.info("RangerPolicyRepository.init(" + serviceName + "): policies.count=" + policies.size() + ", timeTaken=" + (endTime - startTime) + "ms"
+                     + " (contextEnrichers=" + (enrichersTime - startTime) + "ms, evaluators=" + (evaluatorsTime - enrichersTime) + "ms, sort=" + (sortTime - evaluatorsTime) + "ms"
+                     + ", resourceTries=" + (triesTime - sortTime) + "ms, caches=" + (endTime - triesTime) + "ms)");
+        }
+
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerPolicyRepository.init(" + serviceDef + ", policies.count=" + policies.size() + ", previous=" + (previous != null) + ")");
+        }
+    }
+
+    /**
+     * @return number of evaluators carried over from the previous repository by init()
+     */
+    int getReusedEvaluatorCount() {
+        return reusedEvaluatorCount;
+    }
+
+    boolean isAuditCacheReused() {
+        return isAuditCacheReused;
+    }
+
+    private static boolean isSameServiceDef(RangerServiceDef me, RangerServiceDef other) {
+        if (me == other) {
+            return true;
+        }
+
+        return me != null && other != null && me.getVersion() != null &&
+               StringUtils.equals(me.getName(), other.getName()) && ObjectUtils.equals(me.getVersion(), other.getVersion());
+    }
+
+    private static Map<Long, RangerPolicyEvaluatorFacade> getEvaluatorsByPolicyId(List<RangerPolicyEvaluatorFacade> evaluators) {
+        Map<Long, RangerPolicyEvaluatorFacade> ret = new HashMap<Long, RangerPolicyEvaluatorFacade>();
+
+        if (evaluators != null) {
+            for (RangerPolicyEvaluatorFacade evaluator : evaluators) {
+                RangerPolicy policy = evaluator.getPolicy();
+
+                if (policy != null && policy.getId() != null && policy.getVersion() != null) {
+                    ret.put(policy.getId(), evaluator);
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /*
+     * Builds evaluators of policies[fromIndex, toIndex) that don't have one into the same positions of evaluators;
+     * splits into parallel tasks when run in a fork-join pool. Evaluators add to idMaps, which is safe for concurrent use.
+     */
+    private final class EvaluatorBuilder extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RangerPolicy[]                policies;
+        private final RangerPolicyEvaluatorFacade[] evaluators;
+        private final int                           fromIndex;
+        private final int                           toIndex;
+
+        EvaluatorBuilder(RangerPolicy[] policies, RangerPolicyEvaluatorFacade[] evaluators, int fromIndex, int toIndex) {
+            this.policies   = policies;
+            this.evaluators = evaluators;
+            this.fromIndex  = fromIndex;
+            this.toIndex    = toIndex;
+        }
+
+        @Override
+        protected void compute() {
+            if (toIndex - fromIndex > EVALUATOR_BUILD_CHUNK_SIZE && inForkJoinPool()) {
+                int midIndex = (fromIndex + toIndex) >>> 1;
+
+                invokeAll(new EvaluatorBuilder(policies, evaluators, fromIndex, midIndex),
+                          new EvaluatorBuilder(policies, evaluators, midIndex, toIndex));
+            } else {
+                for (int i = fromIndex; i < toIndex; i++) {
+                    if (evaluators[i] == null && policies[i].getIsEnabled()) {
+                        evaluators[i] = buildPolicyEvaluator(policies[i], serviceDef);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+     * @return true if more than the configured share of the user or group ids in the given maps are of names the given policies don't refer to
+     */
+    private boolean hasMostlyUnusedIds(RangerIdMaps idMaps, List<RangerPolicy> policies) {
+        float       maxUnusedRatio = RangerConfiguration.getInstance().getFloat("ranger.plugin." + serviceName + ".policyengine.idmaps.max.unused.ratio", 0.5f);
+        Set<String> users          = new HashSet<String>();
+        Set<String> groups         = new HashSet<String>();
+
+        for (RangerPolicy policy : policies) {
+            if (policy.getPolicyItems() == null) {
+                continue;
+            }
+
+            for (RangerPolicy.RangerPolicyItem policyItem : policy.getPolicyItems()) {
+                if (policyItem.getUsers() != null) {
+                    users.addAll(policyItem.getUsers());
+                }
+
+                if (policyItem.getGroups() != null) {
+                    groups.addAll(policyItem.getGroups());
+                }
+            }
+        }
+
+        boolean ret = hasMostlyUnusedIds(idMaps.getUserIdMap(), users, maxUnusedRatio) || hasMostlyUnusedIds(idMaps.getGroupIdMap(), groups, maxUnusedRatio);
+
+        if (ret && LOG.isInfoEnabled()) {
+            LOG.info("RangerPolicyRepository.init(" + serviceName + "): most ids are unused; replacing id maps (users=" + idMaps.getUserIdMap().size() + "/" + users.size() + ", groups=" + idMaps.getGroupIdMap().size() + "/" + groups.size() + ")");
+        }
+
+        return ret;
+    }
+
+    private static boolean hasMostlyUnusedIds(RangerNameIdMap idMap, Set<String> names, float maxUnusedRatio) {
+        int size = idMap.size();
+
+        if (size < ID_MAPS_MIN_UNUSED_IDS) {
+            return false;
+        }
+
+        int usedCount = 0;
+
+        for (String name : names) {
+            if (idMap.getId(name) != RangerNameIdMap.UNKNOWN_ID) {
+                usedCount++;
+            }
+        }
+
+        int unusedCount = size - usedCount;
+
+        return unusedCount >= ID_MAPS_MIN_UNUSED_IDS && unusedCount > size * maxUnusedRatio;
+    }
+
+    private static final class EvaluatorBuilderPool {
+        static final ForkJoinPool instance = new ForkJoinPool(Math.max(1, RangerConfiguration.getInstance().getInt("ranger.policyengine.init.parallelism", Runtime.getRuntime().availableProcessors())));
+    }
+
+    private static final class EvaluatorReorderExecutor {
+        static final ExecutorService instance = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread ret = new Thread(r, "RangerPolicyEvaluatorReorder");
+
+                ret.setDaemon(true);
+
+                return ret;
+            }
+        });
+    }
+
+    /*
+     * Replaces duplicate strings in the given policies with a single instance. Policies that the previous
+     * repository holds can be read concurrently, so their strings are only added to the pool.
+     */
+    private RangerPolicyStringPool compactPolicies(RangerPolicy[] policies, RangerPolicyRepository previous) {
+        RangerPolicyStringPool     ret            = new RangerPolicyStringPool();
+        Map<RangerPolicy, Boolean> sharedPolicies = new IdentityHashMap<RangerPolicy, Boolean>();
+
+        if (previous != null && previous.policies != null) {
+            for (RangerPolicy policy : previous.policies) {
+                sharedPolicies.put(policy, Boolean.TRUE);
+            }
+        }
+
+        for (RangerPolicy policy : policies) {
+            if (sharedPolicies.containsKey(policy)) {
+                ret.add(policy);
+            }
+        }
+
+        for (RangerPolicy policy : policies) {
+            if (!sharedPolicies.containsKey(policy)) {
+                ret.compact(policy);
+            }
+        }
+
+        return ret;
+    }
+
+    private static RangerPolicyEvaluatorFacade getReusableEvaluator(Map<Long, RangerPolicyEvaluatorFacade> evaluators, RangerPolicy policy) {
+        if (evaluators == null || policy.getId() == null || policy.getVersion() == null) {
+            return null;
+        }
+
+        RangerPolicyEvaluatorFacade ret = evaluators.get(policy.getId());
+
+        return ret != null && policy.getVersion().equals(ret.getPolicy().getVersion()) ? ret : null;
+    }
+
+    /**
+     * @return true if both lists have the same policy evaluators, regardless of order
+     */
+    private static boolean isSameEvaluators(List<RangerPolicyEvaluatorFacade> me, List<RangerPolicyEvaluatorFacade> other) {
+        if (me == null || other == null || me.size() != other.size()) {
+            return false;
+        }
+
+        Map<RangerPolicyEvaluator, Boolean> myEvaluators = new IdentityHashMap<RangerPolicyEvaluator, Boolean>();
+
+        for (RangerPolicyEvaluatorFacade evaluator : me) {
+            myEvaluators.put(evaluator.getPolicyEvaluator(), Boolean.TRUE);
+        }
+
+        for (RangerPolicyEvaluatorFacade evaluator : other) {
+            if (!myEvaluators.containsKey(evaluator.getPolicyEvaluator())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return number of sampled requests reported with recordEvaluations() since the last reorder
+     */
+    long getSampledRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return true if the engine should report evaluations of a request with recordEvaluations() and incrementDecisionCount().
+     *         Only a sample of requests is reported, so that threads of concurrent requests rarely update the same counters.
+     */
+    boolean isEvaluationSampled() {
+        return evaluatorReorderIntervalMs > 0 && ThreadLocalRandom.current().nextInt(EVALUATION_SAMPLE_RATE) == 0;
+    }
+
+    /**
+     * Called after a sampled request with the number of evaluators it ran. Once per reorder-interval, the evaluators
+     * are reordered in a background thread; the calling thread doesn't wait for it.
+     */
+    void recordEvaluations(int evaluatedCount) {
+        requestCount.incrementAndGet();
+        evaluationCount.addAndGet(evaluatedCount);
+
+        if (System.currentTimeMillis() - lastReorderTime >= evaluatorReorderIntervalMs && isReordering.compareAndSet(false, true)) {
+            try {
+                EvaluatorReorderExecutor.instance.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            reorderEvaluators();
+                        } catch (Throwable excp) {
+                            LOG.error("RangerPolicyRepository.reorderEvaluators(" + serviceName + "): failed", excp);
+                        } finally {
+                            isReordering.set(false);
+                        }
+                    }
+                });
+            } catch (RuntimeException excp) {
+                isReordering.set(false);
+
+                LOG.error("RangerPolicyRepository.recordEvaluations(" + serviceName + "): failed to schedule reorder of evaluators", excp);
+            }
+        }
+    }
+
+    int getEvaluatorReorderCount() {
+        return evaluatorReorderCount;
+    }
+
+    /**
+     * @return average number of evaluators run per request, in the interval before the last reorder
+     */
+    double getLastAvgEvaluationsPerRequest() {
+        return lastAvgEvaluationsPerRequest;
+    }
+
+    /*
+     * Every evaluator can only set isAllowed and isAudited to true, so the order of evaluation doesn't change
+     * the decision; it only changes how soon the evaluation loop stops, and which of the allowing policies is
+     * reported. Runs in the background thread of EvaluatorReorderExecutor; the new order is published as new
+     * evaluator list and tries, through volatile fields, and in-flight requests keep using the ones they already read.
+     */
+    private void reorderEvaluators() {
+        long   requests        = requestCount.getAndSet(0);
+        long   evaluations     = evaluationCount.getAndSet(0);
+        double avgEvaluations  = requests == 0 ? 0 : (double) evaluations / requests;
+
+        List<RangerPolicyEvaluatorFacade> current = policyEvaluators;
+        List<RangerPolicyEvaluatorFacade> sorted  = new ArrayList<RangerPolicyEvaluatorFacade>(current);
+
+        Collections.sort(sorted, DECISION_COUNT_COMPARATOR);
+
+        boolean isOrderChanged = false;
+
+        for (int i = 0; i < sorted.size(); i++) {
+            if (sorted.get(i) != current.get(i)) {
+                isOrderChanged = true;
+
+                break;
+            }
+        }
+
+        if (isOrderChanged) {
+            List<RangerPolicyEvaluatorFacade> reordered = new ArrayList<RangerPolicyEvaluatorFacade>(sorted.size());
+
+            for (int i = 0; i < sorted.size(); i++) {
+                reordered.add(new RangerPolicyEvaluatorFacade(sorted.get(i), i));
+            }
+
+            Map<String, RangerResourceTrie> tries = policyResourceTrie != null ? buildResourceTrie(serviceDef, reordered) : null;
+
+            policyResourceTrie = tries;
+            policyEvaluators   = reordered;
+
+            evaluatorReorderCount++;
+        }
+
+        // older decisions count less in the next interval, so that the order follows changes in traffic
+        for (RangerPolicyEvaluatorFacade evaluator : sorted) {
+            evaluator.decayDecisionCount();
+        }
+
+        lastAvgEvaluationsPerRequest = avgEvaluations;
+        lastReorderTime              = System.currentTimeMillis();
 
+        if (LOG.isInfoEnabled()) {
+            LOG.info("RangerPolicyRepository.reorderEvaluators(" + serviceName + "): sampledRequests=" + requests + ", avgEvaluationsPerRequest=" + avgEvaluations + ", isOrderChanged=" + isOrderChanged + ", reorderCount=" + evaluatorReorderCount);
+        }
+    }
+
+    private Map<String, RangerResourceTrie> buildResourceTrie(RangerServiceDef serviceDef, List<RangerPolicyEvaluatorFacade> evaluators) {
         if(LOG.isDebugEnabled()) {
-            LOG.debug("<== RangerPolicyRepository.init(" + serviceDef + ", policies.count=" + policies.size() + ")");
+            LOG.debug("==> RangerPolicyRepository.buildResourceTrie(" + serviceDef.getName() + ", evaluators.count=" + evaluators.size() + ")");
         }
+
+        Map<String, RangerResourceTrie> ret = new HashMap<String, RangerResourceTrie>();
+
+        if (serviceDef.getResources() != null) {
+            for (RangerServiceDef.RangerResourceDef resourceDef : serviceDef.getResources()) {
+                if (resourceDef == null || StringUtils.isEmpty(resourceDef.getName())) {
+                    continue;
+                }
+
+                ret.put(resourceDef.getName(), new RangerResourceTrie(resourceDef, evaluators));
+            }
+        }
+
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerPolicyRepository.buildResourceTrie(" + serviceDef.getName() + ", evaluators.count=" + evaluators.size() + "): " + ret.values());
+        }
+
+        return ret;
     }
 
     private RangerContextEnricher buildContextEnricher(RangerServiceDef.RangerContextEnricherDef enricherDef) {
@@ -149,7 +799,7 @@ public class RangerPolicyRepository {
         RangerPolicyEvaluatorFacade ret = null;
 
         ret = new RangerPolicyEvaluatorFacade();
-        ret.init(policy, serviceDef);
+        ret.init(policy, serviceDef, idMaps);
 
         if(LOG.isDebugEnabled()) {
             LOG.debug("<== RangerPolicyRepository.buildPolicyEvaluator(" + policy + "," + serviceDef + "): " + ret);
@@ -162,11 +812,8 @@ public class RangerPolicyRepository {
             LOG.debug("==> RangerPolicyRepository.setAuditEnabledFromCache()");
         }
 
-        Boolean value = null;
-
-        synchronized (accessAuditCache) {
-	        value = accessAuditCache.get(request.getResource().getAsString(getServiceDef()));
-        }
+        AuditCacheKey key   = AuditCacheKey.create(request, getServiceDef());
+        Boolean       value = key == null ? null : accessAuditCache.get(key);
 
         if ((value != null)) {
             result.setIsAudited(value);
@@ -184,14 +831,12 @@ public class RangerPolicyRepository {
             LOG.debug("==> RangerPolicyRepository.storeAuditEnabledInCache()");
         }
 
-        if ((ret.getIsAuditedDetermined() == true)) {
-            String strResource = request.getResource().getAsString(getServiceDef());
+        AuditCacheKey key = ret.getIsAuditedDetermined() ? AuditCacheKey.create(request, getServiceDef()) : null;
 
+        if (key != null) {
             Boolean value = ret.getIsAudited() ? Boolean.TRUE : Boolean.FALSE;
 
-            synchronized(accessAuditCache) {
-	            accessAuditCache.put(strResource, value);
-	        }
+            accessAuditCache.put(key, value);
         }
 
         if (LOG.isDebugEnabled()) {
@@ -214,6 +859,14 @@ public class RangerPolicyRepository {
 
         sb.append("serviceName={").append(serviceName).append("} ");
         sb.append("serviceDef={").append(serviceDef).append("} ");
+        sb.append("accessAuditCache={").append(accessAuditCache).append("} ");
+        sb.append("auditEvaluators.count={").append(auditEvaluators == null ? 0 : auditEvaluators.size()).append("} ");
+        sb.append("decisionCache={").append(decisionCache).append("} ");
+        sb.append("idMaps={").append(idMaps).append("} ");
+        sb.append("reusedEvaluatorCount={").append(reusedEvaluatorCount).append("} ");
+        sb.append("evaluatorReorderIntervalMs={").append(evaluatorReorderIntervalMs).append("} ");
+        sb.append("evaluatorReorderCount={").append(evaluatorReorderCount).append("} ");
+        sb.append("lastAvgEvaluationsPerRequest={").append(lastAvgEvaluationsPerRequest).append("} ");
         sb.append("policyEvaluators={");
         if (policyEvaluators != null) {
             for (RangerPolicyEvaluator policyEvaluator : policyEvaluators) {
@@ -235,4 +888,51 @@ public class RangerPolicyRepository {
         return sb;
     }
 
+    /*
+     * Audit of a request depends on its resource and, since only requests for any access match the head of a
+     * policy's resource, on whether the request is for any access
+     */
+    static final class AuditCacheKey {
+        private final RangerAccessResourceKey resourceKey;
+        private final boolean                 isAnyAccess;
+
+        private AuditCacheKey(RangerAccessResourceKey resourceKey, boolean isAnyAccess) {
+            this.resourceKey = resourceKey;
+            this.isAnyAccess = isAnyAccess;
+        }
+
+        /**
+         * @return key for the request; null if the request can't be cached, as its resource has no key
+         */
+        static AuditCacheKey create(RangerAccessRequest request, RangerServiceDef serviceDef) {
+            RangerAccessResourceKey resourceKey = request.getResource() == null ? null : request.getResource().getCacheKey(serviceDef);
+
+            if (resourceKey == null) {
+                return null;
+            }
+
+            return new AuditCacheKey(resourceKey, StringUtils.isEmpty(request.getAccessType()) || StringUtils.equals(request.getAccessType(), RangerPolicyEngine.ANY_ACCESS));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * resourceKey.hashCode() + (isAnyAccess ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof AuditCacheKey)) {
+                return false;
+            }
+
+            AuditCacheKey other = (AuditCacheKey) obj;
+
+            return isAnyAccess == other.isAnyAccess && resourceKey.equals(other.resourceKey);
+        }
+    }
+
 }
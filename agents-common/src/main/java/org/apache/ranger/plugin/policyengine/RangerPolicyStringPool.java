@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+
+/**
+ * Strings of the policies of a repository, held once.
+ *
+ * Policies downloaded from Ranger Admin have a separate String instance for each occurrence of a user, group,
+ * access-type or resource value; compact() replaces these with the instance in the pool, and trims the lists
+ * holding them. Policies in use by a previous repository are only added to the pool with add(), as they can
+ * be read concurrently.
+ *
+ * Sizes are estimates, for a 64-bit JVM with compressed references.
+ */
+final class RangerPolicyStringPool {
+	private final Map<String, String> strings = new HashMap<String, String>();
+
+	private int  policyCount     = 0;
+	private int  policyItemCount = 0;
+	private long stringCount     = 0;
+	private long stringBytes     = 0;
+	private long releasedBytes   = 0;
+
+	void add(RangerPolicy policy) {
+		visit(policy, false);
+	}
+
+	void compact(RangerPolicy policy) {
+		visit(policy, true);
+	}
+
+	int getDistinctStringCount() {
+		return strings.size();
+	}
+
+	long getStringCount() {
+		return stringCount;
+	}
+
+	long getStringBytes() {
+		return stringBytes;
+	}
+
+	long getReleasedBytes() {
+		return releasedBytes;
+	}
+
+	String getReport() {
+		return "policies=" + policyCount + ", policyItems=" + policyItemCount + ", strings=" + stringCount + ", distinctStrings=" + strings.size()
+		       + ", stringBytes~" + stringBytes + ", releasedDuplicateBytes~" + releasedBytes;
+	}
+
+	private void visit(RangerPolicy policy, boolean replace) {
+		if(policy == null) {
+			return;
+		}
+
+		policyCount++;
+
+		String service = intern(policy.getService(), replace);
+
+		if(replace) {
+			policy.setService(service);
+		}
+
+		Map<String, RangerPolicyResource> resources = policy.getResources();
+
+		if(resources != null) {
+			if(replace && !resources.isEmpty()) {
+				List<Map.Entry<String, RangerPolicyResource>> entries = new ArrayList<Map.Entry<String, RangerPolicyResource>>(resources.entrySet());
+
+				resources.clear();
+
+				for(Map.Entry<String, RangerPolicyResource> entry : entries) {
+					resources.put(intern(entry.getKey(), replace), entry.getValue());
+				}
+			} else {
+				for(String resourceName : resources.keySet()) {
+					intern(resourceName, replace);
+				}
+			}
+
+			for(RangerPolicyResource resource : resources.values()) {
+				if(resource != null) {
+					visit(resource.getValues(), replace);
+				}
+			}
+		}
+
+		List<RangerPolicyItem> policyItems = policy.getPolicyItems();
+
+		if(policyItems != null) {
+			trim(policyItems, replace);
+
+			for(RangerPolicyItem policyItem : policyItems) {
+				if(policyItem == null) {
+					continue;
+				}
+
+				policyItemCount++;
+
+				visit(policyItem.getUsers(), replace);
+				visit(policyItem.getGroups(), replace);
+
+				List<RangerPolicyItemAccess> accesses = policyItem.getAccesses();
+
+				if(accesses != null) {
+					trim(accesses, replace);
+
+					for(RangerPolicyItemAccess access : accesses) {
+						if(access != null) {
+							String type = intern(access.getType(), replace);
+
+							if(replace) {
+								access.setType(type);
+							}
+						}
+					}
+				}
+
+				List<RangerPolicyItemCondition> conditions = policyItem.getConditions();
+
+				if(conditions != null) {
+					trim(conditions, replace);
+
+					for(RangerPolicyItemCondition condition : conditions) {
+						if(condition != null) {
+							String type = intern(condition.getType(), replace);
+
+							if(replace) {
+								condition.setType(type);
+							}
+
+							visit(condition.getValues(), replace);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void visit(List<String> values, boolean replace) {
+		if(values == null) {
+			return;
+		}
+
+		trim(values, replace);
+
+		for(ListIterator<String> iter = values.listIterator(); iter.hasNext(); ) {
+			String value = iter.next();
+			String ret   = intern(value, replace);
+
+			if(replace && ret != value) {
+				iter.set(ret);
+			}
+		}
+	}
+
+	private String intern(String value, boolean replace) {
+		if(value == null) {
+			return null;
+		}
+
+		stringCount++;
+
+		String ret = strings.get(value);
+
+		if(ret == null) {
+			ret = value;
+
+			strings.put(value, value);
+
+			stringBytes += getSize(value);
+		} else if(replace && ret != value) {
+			releasedBytes += getSize(value);
+		}
+
+		return ret;
+	}
+
+	private static void trim(List<?> list, boolean replace) {
+		if(replace && list instanceof ArrayList) {
+			((ArrayList<?>)list).trimToSize();
+		}
+	}
+
+	// String object, plus its char array
+	private static long getSize(String value) {
+		return 24 + align(16 + 2L * value.length());
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.ranger.plugin.model.RangerServiceDef;
+
+/**
+ * The most recent access requests evaluated by a policy engine, replayed against newly built policies to warm
+ * their caches before they replace the current ones.
+ *
+ * Recording a request is a store into a ring of fixed size, without locking; the ring can hold repeats of
+ * a request, which are dropped when the requests are read.
+ */
+final class RangerRecentRequests {
+	private final AtomicReferenceArray<RangerAccessRequest> requests;
+	private final AtomicInteger                             next = new AtomicInteger();
+
+	RangerRecentRequests(int size) {
+		requests = new AtomicReferenceArray<RangerAccessRequest>(Math.max(1, size));
+	}
+
+	int getSize() {
+		return requests.length();
+	}
+
+	void add(RangerAccessRequest request) {
+		if(request != null && request.getResource() != null) {
+			int index = (next.getAndIncrement() & Integer.MAX_VALUE) % requests.length();
+
+			requests.set(index, request);
+		}
+	}
+
+	/**
+	 * @return distinct requests, most recent first
+	 */
+	List<RangerAccessRequest> getRequests(RangerServiceDef serviceDef) {
+		int                       size = requests.length();
+		int                       last = next.get() & Integer.MAX_VALUE;
+		List<RangerAccessRequest> ret  = new ArrayList<RangerAccessRequest>();
+		Set<List<Object>>         keys = new HashSet<List<Object>>();
+
+		for(int i = 1; i <= size; i++) {
+			RangerAccessRequest request = requests.get(((last - i) % size + size) % size);
+
+			// requests without a resource key are not deduplicated
+			if(request != null && (request.getResource() == null || request.getResource().getCacheKey(serviceDef) == null || keys.add(getKey(request, serviceDef)))) {
+				ret.add(request);
+			}
+		}
+
+		return ret;
+	}
+
+	private List<Object> getKey(RangerAccessRequest request, RangerServiceDef serviceDef) {
+		return Arrays.<Object>asList(request.getResource().getCacheKey(serviceDef), request.getAccessType(), request.getUser(), request.getUserGroups());
+	}
+}
@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.resourcematcher.RangerAbstractResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerDefaultResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerPathResourceMatcher;
+import org.apache.ranger.plugin.resourcematcher.RangerWildcardMatcher;
+
+/**
+ * Index of policy evaluators for one resource-def, keyed by the literal prefix of each policy value.
+ *
+ * A lookup returns a superset of the evaluators whose matcher could accept the given value, in evaluation
+ * order; the evaluators still perform the complete match.
+ */
+public class RangerResourceTrie {
+	private static final Log LOG = LogFactory.getLog(RangerResourceTrie.class);
+
+	private static final Comparator<RangerPolicyEvaluatorFacade> EVAL_ORDER_COMPARATOR = new Comparator<RangerPolicyEvaluatorFacade>() {
+		@Override
+		public int compare(RangerPolicyEvaluatorFacade me, RangerPolicyEvaluatorFacade other) {
+			return Integer.compare(me.getEvalOrder(), other.getEvalOrder());
+		}
+	};
+
+	private final String   resourceName;
+	private final boolean  optIgnoreCase;
+	private final boolean  optWildCard;
+	private final boolean  isPathMatcher;
+	private final char     pathSeparatorChar;
+	private final TrieNode root;
+
+	// evaluators whose values can't be indexed by prefix: match-any, excludes, or a custom matcher
+	private final List<RangerPolicyEvaluatorFacade> matchAnyEvaluators = new ArrayList<RangerPolicyEvaluatorFacade>();
+
+	private int nodeCount = 1;
+
+	public RangerResourceTrie(RangerResourceDef resourceDef, List<RangerPolicyEvaluatorFacade> evaluators) {
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerResourceTrie(" + resourceDef.getName() + ", evaluators.count=" + evaluators.size() + ")");
+		}
+
+		String              matcherClass = resourceDef.getMatcher();
+		Map<String, String> options      = resourceDef.getMatcherOptions();
+
+		this.resourceName      = resourceDef.getName();
+		this.optIgnoreCase     = getBooleanOption(options, RangerAbstractResourceMatcher.OPTION_IGNORE_CASE, true);
+		this.optWildCard       = getBooleanOption(options, RangerAbstractResourceMatcher.OPTION_WILD_CARD, true);
+		this.isPathMatcher     = StringUtils.equals(matcherClass, RangerPathResourceMatcher.class.getName());
+		this.pathSeparatorChar = getCharOption(options, RangerPathResourceMatcher.OPTION_PATH_SEPERATOR, RangerPathResourceMatcher.DEFAULT_PATH_SEPERATOR_CHAR);
+		this.root              = new TrieNode();
+
+		boolean isIndexable = StringUtils.isEmpty(matcherClass) || isPathMatcher || StringUtils.equals(matcherClass, RangerDefaultResourceMatcher.class.getName());
+
+		for(RangerPolicyEvaluatorFacade evaluator : evaluators) {
+			RangerPolicy         policy         = evaluator.getPolicy();
+			RangerPolicyResource policyResource = policy == null || policy.getResources() == null ? null : policy.getResources().get(resourceName);
+
+			if(policyResource == null) { // policy without this resource can't match a request that has a value for it
+				continue;
+			}
+
+			if(!isIndexable || policyResource.getIsExcludes() || isMatchAny(policyResource)) {
+				addEvaluator(matchAnyEvaluators, evaluator);
+
+				continue;
+			}
+
+			boolean isRecursive = isPathMatcher && policyResource.getIsRecursive();
+
+			for(String policyValue : policyResource.getValues()) {
+				if(StringUtils.isEmpty(policyValue)) {
+					continue;
+				}
+
+				if(optIgnoreCase) {
+					policyValue = RangerWildcardMatcher.foldCase(policyValue);
+				}
+
+				int     prefixLen  = optWildCard ? getWildcardPrefixLength(policyValue) : policyValue.length();
+				boolean isWildcard = isRecursive || prefixLen < policyValue.length();
+
+				insert(policyValue, prefixLen, isWildcard, evaluator);
+			}
+		}
+
+		buildCandidates(root, Collections.unmodifiableList(matchAnyEvaluators));
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerResourceTrie(" + resourceDef.getName() + ", evaluators.count=" + evaluators.size() + "): " + toString());
+		}
+	}
+
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	/**
+	 * @param resource value of this resource in the access request
+	 * @return unmodifiable list of candidate evaluators in evaluation order, shared by lookups; null if this trie can't narrow down the candidates for the value
+	 */
+	public List<RangerPolicyEvaluatorFacade> getEvaluatorsForResource(String resource) {
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("==> RangerResourceTrie.getEvaluatorsForResource(" + resource + ")");
+		}
+
+		List<RangerPolicyEvaluatorFacade> ret = null;
+
+		// the recursive path matcher collapses repeated separators, which breaks the literal-prefix assumption
+		if(resource != null && !(isPathMatcher && hasRepeatedSeparator(resource))) {
+			if(optIgnoreCase) {
+				resource = RangerWildcardMatcher.foldCase(resource);
+			}
+
+			TrieNode node = root;
+
+			for(int i = 0; ; i++) {
+				if(i == resource.length()) {
+					ret = node.candidates;
+
+					break;
+				}
+
+				TrieNode child = node.getChild(resource.charAt(i));
+
+				if(child == null) {
+					ret = node.wildcardCandidates;
+
+					break;
+				}
+
+				node = child;
+			}
+		}
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("<== RangerResourceTrie.getEvaluatorsForResource(" + resource + "): evaluators.count=" + (ret == null ? null : ret.size()));
+		}
+
+		return ret;
+	}
+
+	private void insert(String value, int prefixLen, boolean isWildcard, RangerPolicyEvaluatorFacade evaluator) {
+		TrieNode node = root;
+
+		for(int i = 0; i < prefixLen; i++) {
+			char     c     = value.charAt(i);
+			TrieNode child = node.getChild(c);
+
+			if(child == null) {
+				child = node.addChild(c);
+
+				nodeCount++;
+			}
+
+			node = child;
+		}
+
+		if(isWildcard) {
+			if(node.wildcardEvaluators == null) {
+				node.wildcardEvaluators = new ArrayList<RangerPolicyEvaluatorFacade>();
+			}
+
+			addEvaluator(node.wildcardEvaluators, evaluator);
+		} else {
+			if(node.evaluators == null) {
+				node.evaluators = new ArrayList<RangerPolicyEvaluatorFacade>();
+			}
+
+			addEvaluator(node.evaluators, evaluator);
+		}
+	}
+
+	// merges the evaluators of each node with those of its ancestors once, so that a lookup doesn't copy or sort
+	private static void buildCandidates(TrieNode node, List<RangerPolicyEvaluatorFacade> inheritedCandidates) {
+		node.wildcardCandidates = node.wildcardEvaluators == null ? inheritedCandidates : merge(inheritedCandidates, node.wildcardEvaluators);
+		node.candidates         = node.evaluators == null ? node.wildcardCandidates : merge(node.wildcardCandidates, node.evaluators);
+
+		node.wildcardEvaluators = null;
+		node.evaluators         = null;
+
+		if(node.children != null) {
+			for(TrieNode child : node.children.values()) {
+				buildCandidates(child, node.wildcardCandidates);
+			}
+		}
+	}
+
+	private static List<RangerPolicyEvaluatorFacade> merge(List<RangerPolicyEvaluatorFacade> list1, List<RangerPolicyEvaluatorFacade> list2) {
+		List<RangerPolicyEvaluatorFacade> ret = new ArrayList<RangerPolicyEvaluatorFacade>(list1.size() + list2.size());
+
+		int i = 0, j = 0;
+
+		while(i < list1.size() || j < list2.size()) {
+			RangerPolicyEvaluatorFacade evaluator;
+
+			if(j == list2.size() || (i < list1.size() && EVAL_ORDER_COMPARATOR.compare(list1.get(i), list2.get(j)) <= 0)) {
+				evaluator = list1.get(i++);
+			} else {
+				evaluator = list2.get(j++);
+			}
+
+			addEvaluator(ret, evaluator);
+		}
+
+		return Collections.unmodifiableList(ret);
+	}
+
+	private boolean isMatchAny(RangerPolicyResource policyResource) {
+		boolean ret = true;
+
+		if(policyResource.getValues() != null) {
+			for(String policyValue : policyResource.getValues()) {
+				if(StringUtils.isEmpty(policyValue)) {
+					continue;
+				}
+
+				if(StringUtils.containsOnly(policyValue, RangerAbstractResourceMatcher.WILDCARD_ASTERISK)) {
+					return true;
+				}
+
+				ret = false;
+			}
+		}
+
+		return ret;
+	}
+
+	private boolean hasRepeatedSeparator(String resource) {
+		for(int i = 1; i < resource.length(); i++) {
+			if(resource.charAt(i) == pathSeparatorChar && resource.charAt(i - 1) == pathSeparatorChar) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static int getWildcardPrefixLength(String value) {
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if(c == '*' || c == '?') {
+				return i;
+			}
+		}
+
+		return value.length();
+	}
+
+	// evaluators are added in evaluation order; this only guards against a policy listing several values that land in the same bucket
+	private static void addEvaluator(List<RangerPolicyEvaluatorFacade> evaluators, RangerPolicyEvaluatorFacade evaluator) {
+		if(evaluators.isEmpty() || evaluators.get(evaluators.size() - 1) != evaluator) {
+			evaluators.add(evaluator);
+		}
+	}
+
+	private static boolean getBooleanOption(Map<String, String> options, String name, boolean defaultValue) {
+		String strVal = options == null ? null : options.get(name);
+
+		return StringUtils.isEmpty(strVal) ? defaultValue : Boolean.parseBoolean(strVal);
+	}
+
+	private static char getCharOption(Map<String, String> options, String name, char defaultValue) {
+		String strVal = options == null ? null : options.get(name);
+
+		return StringUtils.isEmpty(strVal) ? defaultValue : strVal.charAt(0);
+	}
+
+	@Override
+	public String toString( ) {
+		StringBuilder sb = new StringBuilder();
+
+		toString(sb);
+
+		return sb.toString();
+	}
+
+	public StringBuilder toString(StringBuilder sb) {
+		sb.append("RangerResourceTrie={");
+
+		sb.append("resourceName={").append(resourceName).append("} ");
+		sb.append("optIgnoreCase={").append(optIgnoreCase).append("} ");
+		sb.append("optWildCard={").append(optWildCard).append("} ");
+		sb.append("isPathMatcher={").append(isPathMatcher).append("} ");
+		sb.append("nodeCount={").append(nodeCount).append("} ");
+		sb.append("matchAnyEvaluators.count={").append(matchAnyEvaluators.size()).append("} ");
+
+		sb.append("}");
+
+		return sb;
+	}
+
+	static class TrieNode {
+		private Map<Character, TrieNode>          children           = null;
+		private List<RangerPolicyEvaluatorFacade> evaluators         = null; // policy value ends at this node
+		private List<RangerPolicyEvaluatorFacade> wildcardEvaluators = null; // policy value matches this node and all its descendants
+		private List<RangerPolicyEvaluatorFacade> candidates         = null; // lookup result for a value that ends at this node
+		private List<RangerPolicyEvaluatorFacade> wildcardCandidates = null; // lookup result for a value that continues past this node
+
+		TrieNode getChild(char c) {
+			return children == null ? null : children.get(c);
+		}
+
+		TrieNode addChild(char c) {
+			if(children == null) {
+				children = new HashMap<Character, TrieNode>();
+			}
+
+			TrieNode child = new TrieNode();
+
+			children.put(c, child);
+
+			return child;
+		}
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyevaluator;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.lang.ObjectUtils;
+
+/**
+ * User and groups of an access request, as ids of a RangerIdMaps. Built once per request and used by
+ * all evaluators, instead of each policy item looking up the user and groups by name.
+ */
+public class RangerAccessPrincipal {
+	private final RangerIdMaps idMaps;
+	private final String       user;
+	private final Set<String>  userGroups;
+	private final int          userId;
+	private final RangerIdSet  groupIds;
+
+	public RangerAccessPrincipal(RangerIdMaps idMaps, String user, Set<String> userGroups) {
+		this.idMaps     = idMaps;
+		this.user       = user;
+		this.userGroups = userGroups == null ? null : new HashSet<String>(userGroups);
+		this.userId     = idMaps.getUserIdMap().getId(user);
+		this.groupIds   = idMaps.getGroupIdMap().getIds(userGroups);
+	}
+
+	public RangerIdMaps getIdMaps() {
+		return idMaps;
+	}
+
+	public String getUser() {
+		return user;
+	}
+
+	public boolean hasUserGroups() {
+		return userGroups != null;
+	}
+
+	/**
+	 * @return id of the user; RangerNameIdMap.UNKNOWN_ID if no policy refers to the user
+	 */
+	public int getUserId() {
+		return userId;
+	}
+
+	/**
+	 * @return ids of the user's groups that are referred to by policies
+	 */
+	public RangerIdSet getGroupIds() {
+		return groupIds;
+	}
+
+	/**
+	 * @return true if this was built for the given user and groups, i.e. it can be reused for a request with them
+	 */
+	public boolean isFor(String user, Set<String> userGroups) {
+		return ObjectUtils.equals(this.user, user) && ObjectUtils.equals(this.userGroups, userGroups);
+	}
+
+	@Override
+	public String toString( ) {
+		StringBuilder sb = new StringBuilder();
+
+		toString(sb);
+
+		return sb.toString();
+	}
+
+	public StringBuilder toString(StringBuilder sb) {
+		sb.append("RangerAccessPrincipal={");
+
+		sb.append("user={").append(user).append("} ");
+		sb.append("userGroups={").append(userGroups).append("} ");
+		sb.append("userId={").append(userId).append("} ");
+		sb.append("groupIds={").append(groupIds).append("} ");
+
+		sb.append("}");
+
+		return sb;
+	}
+}
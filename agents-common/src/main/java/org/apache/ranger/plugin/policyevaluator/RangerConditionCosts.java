@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyevaluator;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time taken by condition evaluators, per evaluator class, measured on a sample of evaluations in the JVM.
+ * Conditions of a policy item are evaluated cheapest first. Policy evaluators sort their conditions again when
+ * the version changes, which it does at the 1st, 2nd, 4th, 8th... measurement of an evaluator class; so early
+ * measurements change the order soon, and sorting becomes rare once the costs are known.
+ */
+final class RangerConditionCosts {
+	private static final int SAMPLE_RATE = 64; // 1 in SAMPLE_RATE evaluations is timed
+
+	private static final ConcurrentMap<Class<?>, Cost> costs   = new ConcurrentHashMap<Class<?>, Cost>();
+	private static final AtomicLong                    version = new AtomicLong();
+
+	private RangerConditionCosts() {
+	}
+
+	static boolean isSampled() {
+		return ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0;
+	}
+
+	static void record(Class<?> evaluatorClass, long elapsedNanos) {
+		Cost cost = costs.get(evaluatorClass);
+
+		if(cost == null) {
+			Cost existing = costs.putIfAbsent(evaluatorClass, cost = new Cost());
+
+			if(existing != null) {
+				cost = existing;
+			}
+		}
+
+		long count = cost.add(elapsedNanos);
+
+		if((count & (count - 1)) == 0) {
+			version.incrementAndGet();
+		}
+	}
+
+	static long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * @return average nanoseconds taken by evaluators of the class; 0 if not measured yet, so that these are evaluated, and measured, early
+	 */
+	static long getAverageNanos(Class<?> evaluatorClass) {
+		Cost cost = costs.get(evaluatorClass);
+
+		return cost == null ? 0 : cost.getAverageNanos();
+	}
+
+	private static final class Cost {
+		private final AtomicLong count      = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+
+		long add(long elapsedNanos) {
+			totalNanos.addAndGet(elapsedNanos);
+
+			return count.incrementAndGet();
+		}
+
+		long getAverageNanos() {
+			long count = this.count.get();
+
+			return count == 0 ? 0 : totalNanos.get() / count;
+		}
+	}
+}
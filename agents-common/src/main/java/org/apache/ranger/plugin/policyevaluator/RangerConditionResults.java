@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyevaluator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.ObjectUtils;
+
+/**
+ * Results of policy-item conditions evaluated for an access request. Created for a request and used by all
+ * evaluators, so that a condition shared by policy items and policies is evaluated once per request.
+ *
+ * Conditions are identified by their name and values; evaluators of a service are created from the condition
+ * definition of the name, so the same name and values give the same result for a request.
+ */
+public final class RangerConditionResults {
+	private Map<Key, Boolean> results = null;
+
+	Boolean getResult(Key key) {
+		return results == null ? null : results.get(key);
+	}
+
+	void setResult(Key key, boolean result) {
+		if(results == null) {
+			results = new HashMap<Key, Boolean>();
+		}
+
+		results.put(key, result);
+	}
+
+	int size() {
+		return results == null ? 0 : results.size();
+	}
+
+	static final class Key {
+		private final String       conditionName;
+		private final List<String> values;
+		private final int          hashCode;
+
+		Key(String conditionName, List<String> values) {
+			this.conditionName = conditionName;
+			this.values        = values;
+			this.hashCode      = 31 * ObjectUtils.hashCode(conditionName) + ObjectUtils.hashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+
+			Key other = (Key) obj;
+
+			return hashCode == other.hashCode &&
+				   ObjectUtils.equals(conditionName, other.conditionName) &&
+				   ObjectUtils.equals(values, other.values);
+		}
+	}
+}
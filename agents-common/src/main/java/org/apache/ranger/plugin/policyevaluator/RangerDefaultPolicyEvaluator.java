@@ -19,11 +19,15 @@
 
 package org.apache.ranger.plugin.policyevaluator;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -32,6 +36,7 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.plugin.conditionevaluator.RangerConditionEvaluator;
+import org.apache.ranger.plugin.conditionevaluator.RangerContextIndependentConditionEvaluator;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
 import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
@@ -57,6 +62,12 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
 
 	private Map<String, RangerResourceMatcher> matchers = null;
 	private Map<String, RangerConditionEvaluator> conditionEvaluators = null;
+	private RangerIdMaps idMaps = null;
+	private List<PolicyItemPrincipals> policyItemPrincipals = null;
+	private volatile List<ItemCondition[]> policyItemConditions = null;
+	private volatile long conditionCostsVersion = -1; // of RangerConditionCosts, when policyItemConditions were sorted
+	private boolean hasConditionsToOrder = false;
+	private boolean isContextDependent = false;
 
 	@Override
 	public void init(RangerPolicy policy, RangerServiceDef serviceDef) {
@@ -87,16 +98,67 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
 			}
 		}
 		
-		conditionEvaluators = initializeConditionEvaluators(policy, serviceDef);
+		conditionEvaluators   = initializeConditionEvaluators(policy, serviceDef);
+		conditionCostsVersion = RangerConditionCosts.getVersion();
+		policyItemConditions  = initializeItemConditions(policy, conditionEvaluators);
+		hasConditionsToOrder  = false;
+		isContextDependent    = false;
+
+		for(ItemCondition[] conditions : policyItemConditions) {
+			if(conditions.length > 1) {
+				hasConditionsToOrder = true;
+
+				break;
+			}
+		}
+
+		for(RangerConditionEvaluator conditionEvaluator : conditionEvaluators.values()) {
+			if(!(conditionEvaluator instanceof RangerContextIndependentConditionEvaluator) || !((RangerContextIndependentConditionEvaluator)conditionEvaluator).isContextIndependent()) {
+				isContextDependent = true;
+
+				break;
+			}
+		}
+
+		if(idMaps == null) {
+			idMaps = new RangerIdMaps();
+		}
+
+		policyItemPrincipals = new ArrayList<PolicyItemPrincipals>();
+
+		if(policy != null && policy.getPolicyItems() != null) {
+			for(RangerPolicyItem policyItem : policy.getPolicyItems()) {
+				policyItemPrincipals.add(new PolicyItemPrincipals(policyItem, idMaps));
+			}
+		}
 
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerDefaultPolicyEvaluator.init()");
 		}
 	}
 
+	/**
+	 * Ids to use for users, groups and access-types of the policy; to be set before init().
+	 * When not set, the evaluator uses ids of its own.
+	 */
+	public void setIdMaps(RangerIdMaps idMaps) {
+		this.idMaps = idMaps;
+	}
+
+	public RangerIdMaps getIdMaps() {
+		return idMaps;
+	}
+
     public Map<String, RangerConditionEvaluator> getConditionEvaluators() {
         return conditionEvaluators;
     }
+
+    /**
+     * @return true if the result of the policy for a request can depend on more than user, groups, access type and resource of the request
+     */
+    public boolean isContextDependent() {
+        return isContextDependent;
+    }
     public int computePolicyEvalOrder() { return 0;}
 
     /**
@@ -156,6 +218,95 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
 		return result;
 	}
 
+	/*
+	 * @return conditions of each policy item that have an evaluator, cheapest first
+	 */
+	private List<ItemCondition[]> initializeItemConditions(RangerPolicy policy, Map<String, RangerConditionEvaluator> evaluators) {
+		List<ItemCondition[]> ret = new ArrayList<ItemCondition[]>();
+
+		if(policy == null || policy.getPolicyItems() == null) {
+			return ret;
+		}
+
+		// an evaluator is initialized with the values of the first condition of its name
+		Map<String, RangerConditionResults.Key> conditionKeys = new HashMap<String, RangerConditionResults.Key>();
+
+		for(RangerPolicyItem policyItem : policy.getPolicyItems()) {
+			List<ItemCondition> itemConditions = new ArrayList<ItemCondition>();
+
+			if(policyItem != null && policyItem.getConditions() != null) {
+				for(RangerPolicyItemCondition condition : policyItem.getConditions()) {
+					if(condition == null || StringUtils.isBlank(condition.getType())) {
+						continue;
+					}
+
+					RangerConditionEvaluator evaluator = evaluators.get(condition.getType());
+
+					if(evaluator == null) {
+						continue;
+					}
+
+					RangerConditionResults.Key key = conditionKeys.get(condition.getType());
+
+					if(key == null) {
+						key = new RangerConditionResults.Key(condition.getType(), condition.getValues());
+
+						conditionKeys.put(condition.getType(), key);
+					}
+
+					itemConditions.add(new ItemCondition(condition.getType(), evaluator, key));
+				}
+			}
+
+			ItemCondition[] conditions = itemConditions.toArray(new ItemCondition[itemConditions.size()]);
+
+			Arrays.sort(conditions, ItemCondition.COST_COMPARATOR); // stable: conditions of the same cost stay in policy order
+
+			ret.add(conditions);
+		}
+
+		return ret;
+	}
+
+	/*
+	 * @return conditions of each policy item, sorted again if costs measured since they were last sorted could change
+	 *         their order. A sorted copy is published; requests in progress keep using the arrays they read.
+	 */
+	private List<ItemCondition[]> getItemConditions() {
+		if(hasConditionsToOrder) {
+			long costsVersion = RangerConditionCosts.getVersion();
+
+			if(costsVersion != conditionCostsVersion) {
+				conditionCostsVersion = costsVersion;
+				policyItemConditions  = sortByCost(policyItemConditions);
+			}
+		}
+
+		return policyItemConditions;
+	}
+
+	private static List<ItemCondition[]> sortByCost(List<ItemCondition[]> itemConditions) {
+		List<ItemCondition[]> ret = new ArrayList<ItemCondition[]>(itemConditions.size());
+
+		for(ItemCondition[] conditions : itemConditions) {
+			if(conditions.length > 1) {
+				ItemCondition[] sorted = new ItemCondition[conditions.length];
+
+				for(int i = 0; i < conditions.length; i++) {
+					sorted[i] = new ItemCondition(conditions[i].conditionName, conditions[i].evaluator, conditions[i].key); // with the current cost
+				}
+
+				Arrays.sort(sorted, ItemCondition.COST_COMPARATOR);
+
+				conditions = sorted;
+			}
+
+			ret.add(conditions);
+		}
+
+		return ret;
+	}
+
 	RangerPolicyConditionDef getConditionDef(RangerServiceDef serviceDef, String conditionName) {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug(String.format("==> RangerDefaultPolicyEvaluator.initializeConditionEvaluators(%s, %s)", serviceDef, conditionName));
@@ -209,6 +360,21 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
 
 	@Override
     public void evaluate(RangerAccessRequest request, RangerAccessResult result) {
+        evaluate(request, result, null);
+    }
+
+    /**
+     * @param principal user and groups of the request, if already computed for the request; can be null
+     */
+    public void evaluate(RangerAccessRequest request, RangerAccessResult result, RangerAccessPrincipal principal) {
+        evaluate(request, result, principal, null);
+    }
+
+    /**
+     * @param principal        user and groups of the request, if already computed for the request; can be null
+     * @param conditionResults results of conditions already evaluated for the request, to be added to; can be null
+     */
+    public void evaluate(RangerAccessRequest request, RangerAccessResult result, RangerAccessPrincipal principal, RangerConditionResults conditionResults) {
         if (LOG.isDebugEnabled()) {
             LOG.debug("==> RangerDefaultPolicyEvaluator.evaluate(" + request + ", " + result + ")");
         }
@@ -267,7 +433,11 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
                 }
                 // Go further to evaluate access only if match or head match was found at this point
                 if (matchResult || headMatchResult) {
-                    evaluatePolicyItemsForAccess(request, result);
+                    if (principal == null || principal.getIdMaps() != idMaps) {
+                        principal = new RangerAccessPrincipal(idMaps, request.getUser(), request.getUserGroups());
+                    }
+
+                    evaluatePolicyItemsForAccess(request, result, principal, conditionResults);
                 }
             }
         }
@@ -277,7 +447,33 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
 		}
 	}
 
-    protected void evaluatePolicyItemsForAccess(RangerAccessRequest request, RangerAccessResult result) {
+    /**
+     * @return true if the policy is audit-enabled and applies to the request, i.e. evaluate() would set isAudited to true
+     */
+    public boolean isAuditMatch(RangerAccessRequest request) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("==> RangerDefaultPolicyEvaluator.isAuditMatch(" + request + ")");
+        }
+
+        boolean      ret    = false;
+        RangerPolicy policy = getPolicy();
+
+        if (policy != null && policy.getIsAuditEnabled() && request != null) {
+            ret = isMatch(request.getResource());
+
+            if (!ret && (StringUtils.isEmpty(request.getAccessType()) || StringUtils.equals(request.getAccessType(), RangerPolicyEngine.ANY_ACCESS))) {
+                ret = matchResourceHead(request.getResource());
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("<== RangerDefaultPolicyEvaluator.isAuditMatch(" + request + "): " + ret);
+        }
+
+        return ret;
+    }
+
+    protected void evaluatePolicyItemsForAccess(RangerAccessRequest request, RangerAccessResult result, RangerAccessPrincipal principal, RangerConditionResults conditionResults) {
         if(LOG.isDebugEnabled()) {
             LOG.debug("==> RangerDefaultPolicyEvaluator.evaluatePolicyItemsForAccess(" + request + ", " + result + ")");
         }
@@ -288,9 +484,14 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
         boolean isAnyAccess = StringUtils.equals(accessType, RangerPolicyEngine.ANY_ACCESS);
         boolean isAdminAccess = StringUtils.equals(accessType, RangerPolicyEngine.ADMIN_ACCESS);
 
-        for (RangerPolicy.RangerPolicyItem policyItem : getPolicy().getPolicyItems()) {
+        List<RangerPolicyItem> policyItems          = getPolicy().getPolicyItems();
+        List<ItemCondition[]>  policyItemConditions = getItemConditions();
+
+        for (int i = 0; i < policyItems.size(); i++) {
+            RangerPolicyItem policyItem = policyItems.get(i);
 
-            boolean isUserGroupMatch = matchUserGroup(policyItem, request.getUser(), request.getUserGroups());
+            boolean isUserGroupMatch = i < policyItemPrincipals.size() ? policyItemPrincipals.get(i).isMatch(principal)
+                                                                      : matchUserGroup(policyItem, request.getUser(), request.getUserGroups());
 
             if (!isUserGroupMatch) {
                 continue;
@@ -330,7 +531,8 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
                 continue;
             }
 
-            boolean isCustomConditionsMatch = matchCustomConditions(policyItem, request, getConditionEvaluators());
+            boolean isCustomConditionsMatch = i < policyItemConditions.size() ? matchConditions(policyItemConditions.get(i), request, conditionResults)
+                                                                              : matchCustomConditions(policyItem, request, getConditionEvaluators());
 
             if (!isCustomConditionsMatch) {
                 continue;
@@ -526,6 +728,34 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
 		return ret;
 	}
 
+	/*
+	 * Same as matchCustomConditions(), with the conditions prepared at init(). Results are looked up in, and added to,
+	 * conditionResults of the request.
+	 */
+	private boolean matchConditions(ItemCondition[] conditions, RangerAccessRequest request, RangerConditionResults conditionResults) {
+		for(ItemCondition condition : conditions) {
+			Boolean matched = conditionResults == null ? null : conditionResults.getResult(condition.key);
+
+			if(matched == null) {
+				matched = condition.isMatched(request);
+
+				if(LOG.isDebugEnabled()) {
+					LOG.debug(String.format("matchConditions: evaluator for condition[%s] returned[%s] for request[%s]", condition.conditionName, matched, request));
+				}
+
+				if(conditionResults != null) {
+					conditionResults.setResult(condition.key, matched);
+				}
+			}
+
+			if(!matched) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
 	// takes map in as argument for testability
 	protected boolean matchCustomConditions(RangerPolicyItem policyItem, RangerAccessRequest request, Map<String, RangerConditionEvaluator> evaluatorMap) {
 		if(LOG.isDebugEnabled()) {
@@ -656,6 +886,66 @@ public class RangerDefaultPolicyEvaluator extends RangerAbstractPolicyEvaluator
 		return sb;
 	}
 
+	/*
+	 * A condition of a policy item, with its evaluator
+	 */
+	static final class ItemCondition {
+		static final Comparator<ItemCondition> COST_COMPARATOR = new Comparator<ItemCondition>() {
+			@Override
+			public int compare(ItemCondition me, ItemCondition other) {
+				return Long.compare(me.cost, other.cost);
+			}
+		};
+
+		final String                     conditionName;
+		final RangerConditionEvaluator   evaluator;
+		final RangerConditionResults.Key key;
+		final long                       cost;
+
+		ItemCondition(String conditionName, RangerConditionEvaluator evaluator, RangerConditionResults.Key key) {
+			this.conditionName = conditionName;
+			this.evaluator     = evaluator;
+			this.key           = key;
+			this.cost          = RangerConditionCosts.getAverageNanos(evaluator.getClass());
+		}
+
+		boolean isMatched(RangerAccessRequest request) {
+			if(!RangerConditionCosts.isSampled()) {
+				return evaluator.isMatched(request);
+			}
+
+			long    startTime = System.nanoTime();
+			boolean ret       = evaluator.isMatched(request);
+
+			RangerConditionCosts.record(evaluator.getClass(), System.nanoTime() - startTime);
+
+			return ret;
+		}
+	}
+
+	/*
+	 * Users and groups of a policy item, as ids
+	 */
+	static final class PolicyItemPrincipals {
+		private final RangerIdSet userIds;
+		private final RangerIdSet groupIds;
+		private final boolean     hasPublicGroup;
+
+		PolicyItemPrincipals(RangerPolicyItem policyItem, RangerIdMaps idMaps) {
+			userIds        = idMaps.getUserIdMap().getOrAddIds(policyItem.getUsers());
+			groupIds       = idMaps.getGroupIdMap().getOrAddIds(policyItem.getGroups());
+			hasPublicGroup = policyItem.getGroups() != null && policyItem.getGroups().contains(RangerPolicyEngine.GROUP_PUBLIC);
+		}
+
+		// same as matchUserGroup()
+		boolean isMatch(RangerAccessPrincipal principal) {
+			int userId = principal.getUserId();
+
+			return userIds.contains(userId) ||
+			       (principal.hasUserGroups() && (hasPublicGroup || groupIds.intersects(principal.getGroupIds())));
+		}
+	}
+
 	private void preprocessPolicy(RangerPolicy policy, RangerServiceDef serviceDef) {
 		if(policy == null || CollectionUtils.isEmpty(policy.getPolicyItems()) || serviceDef == null) {
 			return;
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyevaluator;
+
+/**
+ * User, group and access-type ids shared by the policy evaluators of one policy repository.
+ */
+public class RangerIdMaps {
+	private final RangerNameIdMap userIdMap       = new RangerNameIdMap();
+	private final RangerNameIdMap groupIdMap      = new RangerNameIdMap();
+	private final RangerNameIdMap accessTypeIdMap = new RangerNameIdMap();
+
+	public RangerNameIdMap getUserIdMap() {
+		return userIdMap;
+	}
+
+	public RangerNameIdMap getGroupIdMap() {
+		return groupIdMap;
+	}
+
+	public RangerNameIdMap getAccessTypeIdMap() {
+		return accessTypeIdMap;
+	}
+
+	@Override
+	public String toString( ) {
+		StringBuilder sb = new StringBuilder();
+
+		toString(sb);
+
+		return sb.toString();
+	}
+
+	public StringBuilder toString(StringBuilder sb) {
+		sb.append("RangerIdMaps={");
+
+		sb.append("userIdMap={").append(userIdMap).append("} ");
+		sb.append("groupIdMap={").append(groupIdMap).append("} ");
+		sb.append("accessTypeIdMap={").append(accessTypeIdMap).append("} ");
+
+		sb.append("}");
+
+		return sb;
+	}
+}
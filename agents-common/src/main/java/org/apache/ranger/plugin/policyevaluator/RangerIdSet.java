@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyevaluator;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of ids of a RangerNameIdMap, kept as a sorted array.
+ *
+ * A policy item, or a request, refers to a few of the users and groups known to a repository; a BitSet over
+ * the ids of the repository would take space for all of them, in every policy item.
+ */
+public final class RangerIdSet {
+	public static final RangerIdSet EMPTY = new RangerIdSet(new int[0]);
+
+	private static final int BINARY_SEARCH_MIN_SIZE_RATIO = 8; // intersects() merges sets of closer sizes
+
+	private final int[] ids;
+
+	private RangerIdSet(int[] ids) {
+		this.ids = ids;
+	}
+
+	/**
+	 * @return set of the first count ids of the given array; negative ids, like RangerNameIdMap.UNKNOWN_ID, are skipped
+	 */
+	public static RangerIdSet of(int[] ids, int count) {
+		int[] sorted = Arrays.copyOf(ids, count);
+
+		Arrays.sort(sorted);
+
+		int size = 0;
+
+		for(int id : sorted) {
+			if(id >= 0 && (size == 0 || sorted[size - 1] != id)) {
+				sorted[size++] = id;
+			}
+		}
+
+		return size == 0 ? EMPTY : new RangerIdSet(size == sorted.length ? sorted : Arrays.copyOf(sorted, size));
+	}
+
+	public boolean contains(int id) {
+		return id >= 0 && Arrays.binarySearch(ids, id) >= 0;
+	}
+
+	public boolean intersects(RangerIdSet other) {
+		if(other == null) {
+			return false;
+		}
+
+		int[] smaller = ids.length <= other.ids.length ? ids : other.ids;
+		int[] larger  = smaller == ids ? other.ids : ids;
+
+		if(smaller.length == 0) {
+			return false;
+		}
+
+		if(larger.length / smaller.length >= BINARY_SEARCH_MIN_SIZE_RATIO) {
+			for(int id : smaller) {
+				if(Arrays.binarySearch(larger, id) >= 0) {
+					return true;
+				}
+			}
+		} else {
+			for(int i = 0, j = 0; i < smaller.length && j < larger.length; ) {
+				if(smaller[i] == larger[j]) {
+					return true;
+				} else if(smaller[i] < larger[j]) {
+					i++;
+				} else {
+					j++;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	public boolean isEmpty() {
+		return ids.length == 0;
+	}
+
+	@Override
+	public String toString( ) {
+		return Arrays.toString(ids);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyevaluator;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns dense integer ids to names, so that sets of names can be kept as RangerIdSets, or as BitSets when there
+ * are few names, like access types.
+ *
+ * Ids are added while policies are loaded; lookups during access evaluation don't add names, since a
+ * name that no policy refers to can't match anything.
+ */
+public class RangerNameIdMap {
+	public static final int UNKNOWN_ID = -1;
+
+	private final ConcurrentMap<String, Integer> nameIds = new ConcurrentHashMap<String, Integer>();
+
+	public int getId(String name) {
+		Integer ret = name == null ? null : nameIds.get(name);
+
+		return ret == null ? UNKNOWN_ID : ret;
+	}
+
+	public int getOrAddId(String name) {
+		if(name == null) {
+			return UNKNOWN_ID;
+		}
+
+		Integer ret = nameIds.get(name);
+
+		if(ret == null) {
+			synchronized(this) {
+				ret = nameIds.get(name);
+
+				if(ret == null) {
+					ret = nameIds.size();
+
+					nameIds.put(name, ret);
+				}
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return ids of the given names; names without an id are skipped
+	 */
+	public RangerIdSet getIds(Collection<String> names) {
+		if(names == null || names.isEmpty()) {
+			return RangerIdSet.EMPTY;
+		}
+
+		int[] ids   = new int[names.size()];
+		int   count = 0;
+
+		for(String name : names) {
+			ids[count++] = getId(name);
+		}
+
+		return RangerIdSet.of(ids, count);
+	}
+
+	/**
+	 * @return ids of the given names; names without an id are given one
+	 */
+	public RangerIdSet getOrAddIds(Collection<String> names) {
+		if(names == null || names.isEmpty()) {
+			return RangerIdSet.EMPTY;
+		}
+
+		int[] ids   = new int[names.size()];
+		int   count = 0;
+
+		for(String name : names) {
+			ids[count++] = getOrAddId(name);
+		}
+
+		return RangerIdSet.of(ids, count);
+	}
+
+	public int size() {
+		return nameIds.size();
+	}
+
+	@Override
+	public String toString( ) {
+		StringBuilder sb = new StringBuilder();
+
+		toString(sb);
+
+		return sb.toString();
+	}
+
+	public StringBuilder toString(StringBuilder sb) {
+		sb.append("RangerNameIdMap={");
+
+		sb.append("size={").append(nameIds.size()).append("} ");
+
+		sb.append("}");
+
+		return sb;
+	}
+}
@@ -19,7 +19,6 @@
 
 package org.apache.ranger.plugin.policyevaluator;
 
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -35,12 +34,12 @@ import java.lang.Math;
 public class RangerOptimizedPolicyEvaluator extends RangerDefaultPolicyEvaluator {
     private static final Log LOG = LogFactory.getLog(RangerOptimizedPolicyEvaluator.class);
 
-    private Set<String> groups         = null;
-    private Set<String> users          = null;
-    private Set<String> accessPerms    = null;
-    private boolean     delegateAdmin  = false;
-    private boolean     hasAllPerms    = false;
-    private boolean     hasPublicGroup = false;
+    private RangerIdSet  groups         = null;
+    private RangerIdSet  users          = null;
+    private BitSet       accessPerms    = null;
+    private boolean      delegateAdmin  = false;
+    private boolean      hasAllPerms    = false;
+    private boolean      hasPublicGroup = false;
 
 
     // For computation of priority
@@ -64,9 +63,15 @@ public class RangerOptimizedPolicyEvaluator extends RangerDefaultPolicyEvaluator
 
         super.init(policy, serviceDef);
 
-        accessPerms = new HashSet<String>();
-        groups = new HashSet<String>();
-        users = new HashSet<String>();
+        RangerIdMaps    idMaps          = getIdMaps();
+        RangerNameIdMap accessTypeIdMap = idMaps.getAccessTypeIdMap();
+        RangerNameIdMap groupIdMap      = idMaps.getGroupIdMap();
+        RangerNameIdMap userIdMap       = idMaps.getUserIdMap();
+
+        accessPerms = new BitSet();
+
+        List<String> groupNames = new ArrayList<String>();
+        List<String> userNames  = new ArrayList<String>();
 
         for (RangerPolicy.RangerPolicyItem item : policy.getPolicyItems()) {
             delegateAdmin = delegateAdmin || item.getDelegateAdmin();
@@ -76,26 +81,30 @@ public class RangerOptimizedPolicyEvaluator extends RangerDefaultPolicyEvaluator
 
                 if (policyItemAccess.getIsAllowed()) {
                     String accessType = policyItemAccess.getType();
-                    accessPerms.add(accessType);
+                    accessPerms.set(accessTypeIdMap.getOrAddId(accessType));
                 }
             }
 
-            groups.addAll(item.getGroups());
-            users.addAll(item.getUsers());
-        }
+            groupNames.addAll(item.getGroups());
+            userNames.addAll(item.getUsers());
 
-        hasAllPerms = checkIfHasAllPerms();
-
-        for (String group : groups) {
-            if (group.equalsIgnoreCase(RangerPolicyEngine.GROUP_PUBLIC)) {
-                hasPublicGroup = true;
+            for (String group : item.getGroups()) {
+                if (group.equalsIgnoreCase(RangerPolicyEngine.GROUP_PUBLIC)) {
+                    hasPublicGroup = true;
+                }
             }
         }
+
+        groups = groupIdMap.getOrAddIds(groupNames);
+        users  = userIdMap.getOrAddIds(userNames);
+
+        hasAllPerms = checkIfHasAllPerms();
         if(LOG.isDebugEnabled()) {
             LOG.debug("<== RangerOptimizedPolicyEvaluator.init()");
         }
     }
 
+
     @Override
     public int computePolicyEvalOrder() {
         if(LOG.isDebugEnabled()) {
@@ -191,7 +200,7 @@ public class RangerOptimizedPolicyEvaluator extends RangerDefaultPolicyEvaluator
         }
         priorityLevel -= users.size();
 
-        priorityLevel -= Math.round(((float)RANGER_POLICY_EVAL_ALL_ACCESS_TYPES_PREMIUM * accessPerms.size()) / serviceDef.getAccessTypes().size());
+        priorityLevel -= Math.round(((float)RANGER_POLICY_EVAL_ALL_ACCESS_TYPES_PREMIUM * accessPerms.cardinality()) / serviceDef.getAccessTypes().size());
 
         if(LOG.isDebugEnabled()) {
             LOG.debug("<== RangerOptimizedPolicyEvaluator.computePolicyEvalOrder(), policyName:" + policy.getName() + ", priority:" + priorityLevel);
@@ -199,7 +208,7 @@ public class RangerOptimizedPolicyEvaluator extends RangerDefaultPolicyEvaluator
         return priorityLevel;
     }
     @Override
-    protected void evaluatePolicyItemsForAccess(RangerAccessRequest request, RangerAccessResult result) {
+    protected void evaluatePolicyItemsForAccess(RangerAccessRequest request, RangerAccessResult result, RangerAccessPrincipal principal, RangerConditionResults conditionResults) {
         if(LOG.isDebugEnabled()) {
             LOG.debug("==> RangerOptimizedPolicyEvaluator.evaluatePolicyItemsForAccess()");
         }
@@ -210,12 +219,14 @@ public class RangerOptimizedPolicyEvaluator extends RangerDefaultPolicyEvaluator
         boolean isAnyAccess = StringUtils.equals(accessType, RangerPolicyEngine.ANY_ACCESS);
         boolean isAdminAccess = StringUtils.equals(accessType, RangerPolicyEngine.ADMIN_ACCESS);
 
-        if (hasPublicGroup || users.contains(request.getUser()) || CollectionUtils.containsAny(groups, request.getUserGroups())) {
+        int userId = principal.getUserId();
+
+        if (hasPublicGroup || users.contains(userId) || groups.intersects(principal.getGroupIds())) {
             // No need to reject based on users and groups
 
-            if (isAnyAccess || (isAdminAccess && delegateAdmin) || hasAllPerms || accessPerms.contains(accessType)) {
+            if (isAnyAccess || (isAdminAccess && delegateAdmin) || hasAllPerms || hasId(accessPerms, getIdMaps().getAccessTypeIdMap(), accessType)) {
                 // No need to reject based on aggregated access permissions
-                super.evaluatePolicyItemsForAccess(request, result);
+                super.evaluatePolicyItemsForAccess(request, result, principal, conditionResults);
             }
         }
         if(LOG.isDebugEnabled()) {
@@ -223,6 +234,12 @@ public class RangerOptimizedPolicyEvaluator extends RangerDefaultPolicyEvaluator
         }
 
     }
+    private static boolean hasId(BitSet ids, RangerNameIdMap idMap, String name) {
+        int id = idMap.getId(name);
+
+        return id != RangerNameIdMap.UNKNOWN_ID && ids.get(id);
+    }
+
     private boolean checkIfHasAllPerms() {
         if(LOG.isDebugEnabled()) {
             LOG.debug("==> RangerOptimizedPolicyEvaluator.checkIfHasAllPerms()");
@@ -231,7 +248,7 @@ public class RangerOptimizedPolicyEvaluator extends RangerDefaultPolicyEvaluator
 
         List<RangerServiceDef.RangerAccessTypeDef> serviceAccessTypes = getServiceDef().getAccessTypes();
         for (RangerServiceDef.RangerAccessTypeDef serviceAccessType : serviceAccessTypes) {
-            if(! accessPerms.contains(serviceAccessType.getName())) {
+            if(! hasId(accessPerms, getIdMaps().getAccessTypeIdMap(), serviceAccessType.getName())) {
 		result = false;
                 break;
             }
@@ -19,15 +19,14 @@
 package org.apache.ranger.plugin.policyevaluator;
 
 
-import java.util.Map;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.model.RangerServiceDef;
-import org.apache.ranger.plugin.policyengine.CacheMap;
+import org.apache.ranger.plugin.policyengine.ConcurrentCacheMap;
 import org.apache.ranger.plugin.policyengine.RangerAccessResource;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceKey;
 
 
 public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache {
@@ -39,8 +38,8 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
 
     private RangerServiceDef serviceDef = null;
 
-    private Map<String, String> matchedResourceCache    = null;
-    private Map<String, String> notMatchedResourceCache = null;
+    private ConcurrentCacheMap<RangerAccessResourceKey, Boolean> matchedResourceCache    = null;
+    private ConcurrentCacheMap<RangerAccessResourceKey, Boolean> notMatchedResourceCache = null;
 
     private RangerResourceAccessCacheImpl(RangerServiceDef serviceDef, RangerPolicy policy) {
         if(LOG.isDebugEnabled()) {
@@ -52,8 +51,8 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
 
         this.serviceDef = serviceDef;
 
-        matchedResourceCache    = new CacheMap<String, String>(matchedCacheSize);
-        notMatchedResourceCache = new CacheMap<String, String>(notMatchedCacheSize);
+        matchedResourceCache    = new ConcurrentCacheMap<RangerAccessResourceKey, Boolean>(matchedCacheSize);
+        notMatchedResourceCache = new ConcurrentCacheMap<RangerAccessResourceKey, Boolean>(notMatchedCacheSize);
 
         if(LOG.isDebugEnabled()) {
             LOG.debug("<== RangerResourceAccessCacheImpl.constructor(), policyName:" + policy.getName());
@@ -62,28 +61,28 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
 
     @Override
     public LookupResult lookup(RangerAccessResource resource) {
-        String strResource = resource.getAsString(serviceDef);
+        RangerAccessResourceKey resourceKey = resource.getCacheKey(serviceDef);
 
         if(LOG.isDebugEnabled()) {
-            LOG.debug("==> RangerResourceAccessCacheImpl.lookup(" + strResource + ")");
+            LOG.debug("==> RangerResourceAccessCacheImpl.lookup(" + resourceKey + ")");
         }
 
         LookupResult result = LookupResult.NOT_FOUND;
 
         try {
-        	synchronized(this) {
-	            if (matchedResourceCache.containsKey(strResource)) {
-	                result = LookupResult.IN_MATCHED_CACHE;
-	            } else if(notMatchedResourceCache.containsKey(strResource)) {
-	                result = LookupResult.IN_NOTMATCHED_CACHE;
-	            }
-        	}
+            if (resourceKey == null) {
+                // not cacheable: no resource, or no resource-defs in the service-def
+            } else if (matchedResourceCache.containsKey(resourceKey)) {
+                result = LookupResult.IN_MATCHED_CACHE;
+            } else if(notMatchedResourceCache.containsKey(resourceKey)) {
+                result = LookupResult.IN_NOTMATCHED_CACHE;
+            }
         } catch (Exception exception) {
             result = LookupResult.ERROR;
         }
 
         if(LOG.isDebugEnabled()) {
-            LOG.debug("<== RangerResourceAccessCacheImpl.lookup(" + strResource + "): " + result);
+            LOG.debug("<== RangerResourceAccessCacheImpl.lookup(" + resourceKey + "): " + result);
         }
 
         return result;
@@ -91,28 +90,50 @@ public class RangerResourceAccessCacheImpl implements RangerResourceAccessCache
 
     @Override
     public void add(RangerAccessResource resource, CacheType cacheType) {
-        String strResource = resource.getAsString(serviceDef);
+        RangerAccessResourceKey resourceKey = resource.getCacheKey(serviceDef);
 
         if(LOG.isDebugEnabled()) {
-            LOG.debug("==> RangerResourceAccessCacheImpl.add(" + strResource + ", " + cacheType + ")");
+            LOG.debug("==> RangerResourceAccessCacheImpl.add(" + resourceKey + ", " + cacheType + ")");
         }
 
-        synchronized(this) {
-	        switch (cacheType) {
-	            case MATCHED_CACHE:
-	                matchedResourceCache.put(strResource, strResource);
-	                break;
-	
-	            case NOTMATCHED_CACHE:
-	                notMatchedResourceCache.put(strResource, strResource);
-	                break;
-	            default:
-	                break;
-	        }
+        if (resourceKey == null) {
+            // not cacheable: no resource, or no resource-defs in the service-def
+        } else {
+            switch (cacheType) {
+                case MATCHED_CACHE:
+                    matchedResourceCache.put(resourceKey, Boolean.TRUE);
+                    break;
+
+                case NOTMATCHED_CACHE:
+                    notMatchedResourceCache.put(resourceKey, Boolean.FALSE);
+                    break;
+                default:
+                    break;
+            }
         }
 
         if(LOG.isDebugEnabled()) {
-            LOG.debug("<== RangerResourceAccessCacheImpl.add(" + strResource + ", " + cacheType + ")");
+            LOG.debug("<== RangerResourceAccessCacheImpl.add(" + resourceKey + ", " + cacheType + ")");
         }
     }
+
+    @Override
+    public String toString( ) {
+        StringBuilder sb = new StringBuilder();
+
+        toString(sb);
+
+        return sb.toString();
+    }
+
+    public StringBuilder toString(StringBuilder sb) {
+        sb.append("RangerResourceAccessCacheImpl={");
+
+        sb.append("matchedResourceCache={").append(matchedResourceCache).append("} ");
+        sb.append("notMatchedResourceCache={").append(notMatchedResourceCache).append("} ");
+
+        sb.append("}");
+
+        return sb;
+    }
 }
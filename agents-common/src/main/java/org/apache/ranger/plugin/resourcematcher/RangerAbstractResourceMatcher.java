@@ -52,6 +52,8 @@ public abstract class RangerAbstractResourceMatcher implements RangerResourceMat
 	protected boolean      policyIsExcludes = false;
 	protected boolean      isMatchAny       = false;
 
+	protected List<RangerWildcardMatcher> policyValueMatchers = null;
+
 	@Override
 	public void init(RangerResourceDef resourceDef, RangerPolicyResource policyResource) {
 		if(LOG.isDebugEnabled()) {
@@ -76,7 +78,7 @@ public abstract class RangerAbstractResourceMatcher implements RangerResourceMat
 				}
 
 				if(optIgnoreCase) {
-					policyValue = policyValue.toLowerCase();
+					policyValue = RangerWildcardMatcher.foldCase(policyValue);
 				}
 
 				if(StringUtils.containsOnly(policyValue, WILDCARD_ASTERISK)) {
@@ -91,6 +93,12 @@ public abstract class RangerAbstractResourceMatcher implements RangerResourceMat
 			isMatchAny = true;
 		}
 
+		policyValueMatchers = new ArrayList<RangerWildcardMatcher>(policyValues.size());
+
+		for(String policyValue : policyValues) {
+			policyValueMatchers.add(compileMatcher(policyValue));
+		}
+
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("<== RangerAbstractResourceMatcher.init(" + resourceDef + ", " + policyResource + ")");
 		}
@@ -138,6 +146,13 @@ public abstract class RangerAbstractResourceMatcher implements RangerResourceMat
 	}
 
 
+	/**
+	 * Called once per policy value from init(); subclasses can override to change how values are matched.
+	 */
+	protected RangerWildcardMatcher compileMatcher(String policyValue) {
+		return RangerWildcardMatcher.compile(policyValue, optWildCard, optIgnoreCase);
+	}
+
 	public String getOption(String name) {
 		String ret = null;
 
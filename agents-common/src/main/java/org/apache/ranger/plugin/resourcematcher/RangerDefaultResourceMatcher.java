@@ -20,8 +20,6 @@
 package org.apache.ranger.plugin.resourcematcher;
 
 
-import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -38,12 +36,8 @@ public class RangerDefaultResourceMatcher extends RangerAbstractResourceMatcher
 		boolean ret = false;
 
 		if(resource != null) {
-			if(optIgnoreCase) {
-				resource = resource.toLowerCase();
-			}
-
-			for(String policyValue : policyValues) {
-				ret = optWildCard ? FilenameUtils.wildcardMatch(resource, policyValue) : StringUtils.equals(resource, policyValue);
+			for(RangerWildcardMatcher policyValueMatcher : policyValueMatchers) {
+				ret = policyValueMatcher.isMatch(resource);
 
 				if(ret) {
 					break;
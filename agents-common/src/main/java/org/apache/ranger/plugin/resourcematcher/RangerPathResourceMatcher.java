@@ -20,8 +20,6 @@
 package org.apache.ranger.plugin.resourcematcher;
 
 
-import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.lang.ArrayUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -63,23 +61,11 @@ public class RangerPathResourceMatcher extends RangerAbstractResourceMatcher {
 		boolean ret = false;
 
 		if(resource != null) {
-			if(optIgnoreCase) {
-				resource = resource.toLowerCase();
-			}
-
-			for(String policyValue : policyValues) {
-				if(policyIsRecursive) {
-					if(optWildCard) {
-						ret = isRecursiveWildCardMatch(resource, policyValue, pathSeparatorChar) ;
-					} else {
-						ret = StringUtils.startsWith(resource, policyValue);
-					}
+			for(RangerWildcardMatcher policyValueMatcher : policyValueMatchers) {
+				if(policyIsRecursive && optWildCard) {
+					ret = isRecursiveWildCardMatch(resource, policyValueMatcher, pathSeparatorChar);
 				} else {
-					if(optWildCard) {
-						ret = FilenameUtils.wildcardMatch(resource, policyValue);
-					} else {
-						ret = StringUtils.equals(resource, policyValue);
-					}
+					ret = policyValueMatcher.isMatch(resource);
 				}
 
 				if(ret) {
@@ -101,48 +87,67 @@ public class RangerPathResourceMatcher extends RangerAbstractResourceMatcher {
 		return ret;
 	}
 
-	private boolean isRecursiveWildCardMatch(String pathToCheck, String wildcardPath, char pathSeparatorChar) {
+	@Override
+	protected RangerWildcardMatcher compileMatcher(String policyValue) {
+		// recursive policy without wildcards matches all paths that start with the policy value
+		if(policyIsRecursive && !optWildCard) {
+			return RangerWildcardMatcher.compilePrefix(policyValue, optIgnoreCase);
+		}
+
+		return super.compileMatcher(policyValue);
+	}
+
+	private boolean isRecursiveWildCardMatch(String pathToCheck, RangerWildcardMatcher wildcardPath, char pathSeparatorChar) {
 		if(LOG.isDebugEnabled()) {
-			LOG.debug("==> RangerPathResourceMatcher.isRecursiveWildCardMatch(" + pathToCheck + ", " + wildcardPath + ", " + pathSeparatorChar + ")");
+			LOG.debug("==> RangerPathResourceMatcher.isRecursiveWildCardMatch(" + pathToCheck + ", " + wildcardPath.getPattern() + ", " + pathSeparatorChar + ")");
 		}
 
 		boolean ret = false;
 
 		if (! StringUtils.isEmpty(pathToCheck)) {
-			String[] pathElements = StringUtils.split(pathToCheck, pathSeparatorChar);
-
-			if(! ArrayUtils.isEmpty(pathElements)) {
-				StringBuilder sb = new StringBuilder();
-
-				if(pathToCheck.charAt(0) == pathSeparatorChar) {
-					sb.append(pathSeparatorChar); // preserve the initial pathSeparatorChar
+			boolean onlySeparators     = true;
+			boolean repeatedSeparators = false;
+
+			for(int i = 0; i < pathToCheck.length(); i++) {
+				if(pathToCheck.charAt(i) != pathSeparatorChar) {
+					onlySeparators = false;
+				} else if(i > 0 && pathToCheck.charAt(i - 1) == pathSeparatorChar) {
+					repeatedSeparators = true;
 				}
+			}
 
-				for(String p : pathElements) {
-					sb.append(p);
-
-					ret = FilenameUtils.wildcardMatch(sb.toString(), wildcardPath) ;
-
-					if (ret) {
-						break;
-					}
-
-					sb.append(pathSeparatorChar) ;
+			if(onlySeparators) {
+				ret = wildcardPath.isMatch(pathToCheck) ;
+			} else {
+				if(repeatedSeparators) { // match the path with empty elements removed
+					pathToCheck = removeRepeatedSeparators(pathToCheck, pathSeparatorChar);
 				}
 
-				sb = null;
-			} else { // pathToCheck consists of only pathSeparatorChar
-				ret = FilenameUtils.wildcardMatch(pathToCheck, wildcardPath) ;
+				ret = wildcardPath.isAnyPathPrefixMatch(pathToCheck, pathSeparatorChar);
 			}
 		}
 
 		if(LOG.isDebugEnabled()) {
-			LOG.debug("<== RangerPathResourceMatcher.isRecursiveWildCardMatch(" + pathToCheck + ", " + wildcardPath + ", " + pathSeparatorChar + "): " + ret);
+			LOG.debug("<== RangerPathResourceMatcher.isRecursiveWildCardMatch(" + pathToCheck + ", " + wildcardPath.getPattern() + ", " + pathSeparatorChar + "): " + ret);
 		}
 
 		return ret;
 	}
 
+	private static String removeRepeatedSeparators(String path, char pathSeparatorChar) {
+		StringBuilder sb = new StringBuilder(path.length());
+
+		for(int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+
+			if(c != pathSeparatorChar || i == 0 || path.charAt(i - 1) != pathSeparatorChar) {
+				sb.append(c);
+			}
+		}
+
+		return sb.toString();
+	}
+
 	public StringBuilder toString(StringBuilder sb) {
 		sb.append("RangerPathResourceMatcher={");
 
@@ -0,0 +1,424 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.resourcematcher;
+
+
+/**
+ * Policy value compiled once for matching against resource values, with the semantics of
+ * FilenameUtils.wildcardMatch(): '*' matches any sequence of characters, '?' matches exactly one.
+ *
+ * Matching doesn't allocate. With ignoreCase, the case of the pattern is folded at compile time and that of
+ * each character of the value as it is compared; see foldCase().
+ */
+public abstract class RangerWildcardMatcher {
+	public static final char WILDCARD_ANY    = '*';
+	public static final char WILDCARD_SINGLE = '?';
+
+	protected final String  pattern;
+	protected final boolean ignoreCase;
+
+	protected RangerWildcardMatcher(String pattern, boolean ignoreCase) {
+		this.pattern    = ignoreCase ? foldCase(pattern) : pattern;
+		this.ignoreCase = ignoreCase;
+	}
+
+	/**
+	 * @param pattern    policy value
+	 * @param wildCard   when false, the pattern is matched literally
+	 * @param ignoreCase
+	 */
+	public static RangerWildcardMatcher compile(String pattern, boolean wildCard, boolean ignoreCase) {
+		if(!wildCard) {
+			return new ExactMatcher(pattern, ignoreCase);
+		}
+
+		pattern = removeAnyBeforeSingle(pattern);
+
+		int firstWildcard = -1;
+		int lastWildcard  = -1;
+		int anyCount      = 0;
+		int singleCount   = 0;
+
+		for(int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+
+			if(c == WILDCARD_ANY || c == WILDCARD_SINGLE) {
+				if(firstWildcard == -1) {
+					firstWildcard = i;
+				}
+
+				lastWildcard = i;
+
+				if(c == WILDCARD_ANY) {
+					anyCount++;
+				} else {
+					singleCount++;
+				}
+			}
+		}
+
+		final RangerWildcardMatcher ret;
+
+		if(firstWildcard == -1) {
+			ret = new ExactMatcher(pattern, ignoreCase);
+		} else if(singleCount > 0) {
+			ret = new GlobMatcher(pattern, ignoreCase);
+		} else if(anyCount == pattern.length()) {
+			ret = new AnyMatcher(pattern);
+		} else if(anyCount == 1 && firstWildcard == pattern.length() - 1) {
+			ret = new PrefixMatcher(pattern.substring(0, firstWildcard), ignoreCase);
+		} else if(anyCount == 1 && firstWildcard == 0) {
+			ret = new SuffixMatcher(pattern.substring(1), ignoreCase);
+		} else if(anyCount == 2 && firstWildcard == 0 && lastWildcard == pattern.length() - 1) {
+			ret = new ContainsMatcher(pattern.substring(1, lastWildcard), ignoreCase);
+		} else {
+			ret = new GlobMatcher(pattern, ignoreCase);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return matcher for values that start with the given literal
+	 */
+	public static RangerWildcardMatcher compilePrefix(String prefix, boolean ignoreCase) {
+		return new PrefixMatcher(prefix, ignoreCase);
+	}
+
+	/*
+	 * FilenameUtils.wildcardMatch() ignores a '*' that is immediately followed by '?': "*?" matches exactly
+	 * one character. Drop such '*'s, so that existing policies continue to match the same resources.
+	 */
+	private static String removeAnyBeforeSingle(String pattern) {
+		if(pattern.indexOf("*?") == -1) {
+			return pattern;
+		}
+
+		StringBuilder sb = new StringBuilder(pattern.length());
+
+		for(int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+
+			if(c == WILDCARD_ANY) {
+				int j = i;
+
+				while(j < pattern.length() && pattern.charAt(j) == WILDCARD_ANY) {
+					j++;
+				}
+
+				if(j < pattern.length() && pattern.charAt(j) == WILDCARD_SINGLE) {
+					i = j - 1;
+
+					continue;
+				}
+			}
+
+			sb.append(c);
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Case folding for ignoreCase: characters equal ignoring case, as in String.regionMatches(true, ...), fold to the
+	 * same character. Unlike String.toLowerCase(), it doesn't depend on the default locale and keeps the length.
+	 */
+	public static char foldCase(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * @return the string with each character folded by foldCase(char)
+	 */
+	public static String foldCase(String str) {
+		if(str == null) {
+			return null;
+		}
+
+		char[] chars     = null;
+		int    strLength = str.length();
+
+		for(int i = 0; i < strLength; i++) {
+			char c      = str.charAt(i);
+			char folded = foldCase(c);
+
+			if(folded != c) {
+				if(chars == null) {
+					chars = str.toCharArray();
+				}
+
+				chars[i] = folded;
+			}
+		}
+
+		return chars == null ? str : new String(chars);
+	}
+
+	public String getPattern() {
+		return pattern;
+	}
+
+	public boolean isMatch(CharSequence value) {
+		return value != null && isMatch(value, value.length());
+	}
+
+	/**
+	 * @return true if the first length characters of the value match the pattern
+	 */
+	public abstract boolean isMatch(CharSequence value, int length);
+
+	/**
+	 * Recursive path match: tries each prefix of the value that ends just before a separator, and the whole
+	 * value unless it ends with a separator. The value must not contain repeated separators.
+	 *
+	 * @return true if any of these prefixes matches the pattern
+	 */
+	public boolean isAnyPathPrefixMatch(CharSequence value, char separator) {
+		final int length = value.length();
+
+		for(int i = 1; i < length; i++) {
+			if(value.charAt(i) == separator && isMatch(value, i)) {
+				return true;
+			}
+		}
+
+		return length > 0 && value.charAt(length - 1) != separator && isMatch(value, length);
+	}
+
+	protected final boolean charEquals(char valueChar, char patternChar) {
+		return valueChar == patternChar || (ignoreCase && foldCase(valueChar) == patternChar);
+	}
+
+	protected final boolean regionMatches(CharSequence value, int offset, String literal) {
+		for(int i = 0; i < literal.length(); i++) {
+			if(!charEquals(value.charAt(offset + i), literal.charAt(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public String toString( ) {
+		StringBuilder sb = new StringBuilder();
+
+		toString(sb);
+
+		return sb.toString();
+	}
+
+	public StringBuilder toString(StringBuilder sb) {
+		sb.append(getClass().getSimpleName()).append("={");
+
+		sb.append("pattern={").append(pattern).append("} ");
+		sb.append("ignoreCase={").append(ignoreCase).append("} ");
+
+		sb.append("}");
+
+		return sb;
+	}
+
+	static final class AnyMatcher extends RangerWildcardMatcher {
+		AnyMatcher(String pattern) {
+			super(pattern, false);
+		}
+
+		@Override
+		public boolean isMatch(CharSequence value, int length) {
+			return true;
+		}
+	}
+
+	static final class ExactMatcher extends RangerWildcardMatcher {
+		ExactMatcher(String literal, boolean ignoreCase) {
+			super(literal, ignoreCase);
+		}
+
+		@Override
+		public boolean isMatch(CharSequence value, int length) {
+			return length == pattern.length() && regionMatches(value, 0, pattern);
+		}
+
+		@Override
+		public boolean isAnyPathPrefixMatch(CharSequence value, char separator) {
+			final int patternLen = pattern.length();
+
+			if(patternLen == 0 || pattern.charAt(patternLen - 1) == separator) {
+				return super.isAnyPathPrefixMatch(value, separator);
+			}
+
+			// literal directory: the value is the directory itself or something under it
+			return value.length() >= patternLen && regionMatches(value, 0, pattern) &&
+				   (value.length() == patternLen || value.charAt(patternLen) == separator);
+		}
+	}
+
+	static final class PrefixMatcher extends RangerWildcardMatcher {
+		PrefixMatcher(String prefix, boolean ignoreCase) {
+			super(prefix, ignoreCase);
+		}
+
+		@Override
+		public boolean isMatch(CharSequence value, int length) {
+			return length >= pattern.length() && regionMatches(value, 0, pattern);
+		}
+
+		@Override
+		public boolean isAnyPathPrefixMatch(CharSequence value, char separator) {
+			final int patternLen = pattern.length();
+
+			if(patternLen == 0) {
+				return super.isAnyPathPrefixMatch(value, separator);
+			}
+
+			if(value.length() < patternLen || !regionMatches(value, 0, pattern)) {
+				return false;
+			}
+
+			// some path prefix at least as long as the pattern exists, unless the pattern ("/dir/*") covers the whole value
+			return pattern.charAt(patternLen - 1) != separator || value.length() > patternLen;
+		}
+	}
+
+	static final class SuffixMatcher extends RangerWildcardMatcher {
+		SuffixMatcher(String suffix, boolean ignoreCase) {
+			super(suffix, ignoreCase);
+		}
+
+		@Override
+		public boolean isMatch(CharSequence value, int length) {
+			return length >= pattern.length() && regionMatches(value, length - pattern.length(), pattern);
+		}
+	}
+
+	static final class ContainsMatcher extends RangerWildcardMatcher {
+		ContainsMatcher(String literal, boolean ignoreCase) {
+			super(literal, ignoreCase);
+		}
+
+		@Override
+		public boolean isMatch(CharSequence value, int length) {
+			for(int i = 0; i + pattern.length() <= length; i++) {
+				if(regionMatches(value, i, pattern)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * Any combination of '*' and '?'. Matches greedily, backtracking only to the most recent '*';
+	 * this is sufficient since a later '*' can absorb anything an earlier one could.
+	 */
+	static final class GlobMatcher extends RangerWildcardMatcher {
+		private final String literalHead; // pattern up to the first wildcard
+		private final int    minLength;
+		private final int    maxLength;
+
+		GlobMatcher(String pattern, boolean ignoreCase) {
+			super(pattern, ignoreCase);
+
+			int firstWildcard = 0;
+			int anyCount      = 0;
+
+			while(firstWildcard < this.pattern.length() && this.pattern.charAt(firstWildcard) != WILDCARD_ANY && this.pattern.charAt(firstWildcard) != WILDCARD_SINGLE) {
+				firstWildcard++;
+			}
+
+			for(int i = 0; i < this.pattern.length(); i++) {
+				if(this.pattern.charAt(i) == WILDCARD_ANY) {
+					anyCount++;
+				}
+			}
+
+			this.literalHead = this.pattern.substring(0, firstWildcard);
+			this.minLength   = this.pattern.length() - anyCount;
+			this.maxLength   = anyCount == 0 ? this.pattern.length() : Integer.MAX_VALUE;
+		}
+
+		@Override
+		public boolean isAnyPathPrefixMatch(CharSequence value, char separator) {
+			final int length = value.length();
+
+			// every candidate prefix must start with the literal head; check it once
+			if(length < literalHead.length() || !regionMatches(value, 0, literalHead)) {
+				return false;
+			}
+
+			// only prefixes with length in [minLength, maxLength] can match
+			final int lastBoundary = Math.min(length - 1, maxLength);
+
+			for(int i = Math.max(1, minLength); i <= lastBoundary; i++) {
+				if(value.charAt(i) == separator && isMatch(value, i)) {
+					return true;
+				}
+			}
+
+			return length >= minLength && length <= maxLength && value.charAt(length - 1) != separator && isMatch(value, length);
+		}
+
+		@Override
+		public boolean isMatch(CharSequence value, int length) {
+			final int patternLen = pattern.length();
+
+			int v         = 0;
+			int p         = 0;
+			int starP     = -1;
+			int starMatch = 0;
+
+			while(v < length) {
+				if(p < patternLen) {
+					char pc = pattern.charAt(p);
+
+					if(pc == WILDCARD_ANY) {
+						starP     = p++;
+						starMatch = v;
+
+						continue;
+					}
+
+					if(pc == WILDCARD_SINGLE || charEquals(value.charAt(v), pc)) {
+						p++;
+						v++;
+
+						continue;
+					}
+				}
+
+				if(starP == -1) {
+					return false;
+				}
+
+				// let the last '*' absorb one more character and retry
+				p = starP + 1;
+				v = ++starMatch;
+			}
+
+			while(p < patternLen && pattern.charAt(p) == WILDCARD_ANY) {
+				p++;
+			}
+
+			return p == patternLen;
+		}
+	}
+}
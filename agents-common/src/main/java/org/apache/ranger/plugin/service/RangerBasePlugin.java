@@ -45,11 +45,13 @@ import org.apache.ranger.plugin.util.PolicyRefresher;
 public class RangerBasePlugin {
 	private static final Log LOG = LogFactory.getLog(RangerBasePlugin.class);
 
-	private String             serviceType  = null;
-	private String             appId        = null;
-	private String             serviceName  = null;
-	private PolicyRefresher    refresher    = null;
-	private RangerPolicyEngine policyEngine = null;
+	private String             serviceType         = null;
+	private String             appId               = null;
+	private String             serviceName         = null;
+	private PolicyRefresher    refresher           = null;
+	private RangerPolicyEngine policyEngine        = null;
+	private boolean            isSharedEngine      = false;
+	private RangerAuditHandler defaultAuditHandler = null;
 
 
 	public RangerBasePlugin(String serviceType, String appId) {
@@ -81,10 +83,28 @@ public class RangerBasePlugin {
 		return serviceName;
 	}
 
+	/**
+	 * Initializes with the policy engine of the service shared by plugin instances in this JVM; unless
+	 * ranger.plugin.&lt;serviceType&gt;.policyengine.shared is false, in which case the plugin gets its own engine.
+	 */
 	public void init() {
-		RangerPolicyEngine policyEngine = new RangerPolicyEngineImpl();
-		
-		init(policyEngine);
+		cleanup();
+
+		RangerConfiguration.getInstance().addResourcesForServiceType(serviceType);
+
+		if(RangerConfiguration.getInstance().getBoolean("ranger.plugin." + serviceType + ".policyengine.shared", true)) {
+			RangerConfiguration.getInstance().initAudit(appId);
+
+			serviceName = RangerConfiguration.getInstance().get("ranger.plugin." + serviceType + ".service.name");
+
+			PolicyRefresher refresher = RangerPolicyEngineRegistry.getInstance().acquire(this);
+
+			this.refresher      = refresher;
+			this.policyEngine   = refresher.getPolicyEngine();
+			this.isSharedEngine = true;
+		} else {
+			init(new RangerPolicyEngineImpl());
+		}
 	}
 
 	public void init(RangerPolicyEngine policyEngine) {
@@ -93,72 +113,67 @@ public class RangerBasePlugin {
 		RangerConfiguration.getInstance().addResourcesForServiceType(serviceType);
 		RangerConfiguration.getInstance().initAudit(appId);
 
-		String propertyPrefix    = "ranger.plugin." + serviceType;
-		long   pollingIntervalMs = RangerConfiguration.getInstance().getLong(propertyPrefix + ".policy.pollIntervalMs", 30 * 1000);
-		String cacheDir          = RangerConfiguration.getInstance().get(propertyPrefix + ".policy.cache.dir");
-
-		serviceName = RangerConfiguration.getInstance().get(propertyPrefix + ".service.name");
+		serviceName = RangerConfiguration.getInstance().get("ranger.plugin." + serviceType + ".service.name");
 
-		RangerAdminClient admin = createAdminClient(propertyPrefix);
-
-		refresher = new PolicyRefresher(policyEngine, serviceType, appId, serviceName, admin, pollingIntervalMs, cacheDir);
+		refresher = createRefresher(policyEngine);
 		refresher.startRefresher();
 		this.policyEngine = policyEngine;
 	}
 
 	public void cleanup() {
-		PolicyRefresher refresher = this.refresher;
+		PolicyRefresher refresher      = this.refresher;
+		String          serviceName    = this.serviceName;
+		boolean         isSharedEngine = this.isSharedEngine;
 
-		this.serviceName  = null;
-		this.policyEngine = null;
-		this.refresher    = null;
+		this.serviceName    = null;
+		this.policyEngine   = null;
+		this.refresher      = null;
+		this.isSharedEngine = false;
 
 		if(refresher != null) {
-			refresher.stopRefresher();
+			if(isSharedEngine) {
+				RangerPolicyEngineRegistry.getInstance().release(serviceType, serviceName, refresher);
+			} else {
+				refresher.stopRefresher();
+			}
 		}
 	}
 
-	public void setDefaultAuditHandler(RangerAuditHandler auditHandler) {
-		RangerPolicyEngine policyEngine = this.policyEngine;
-
-		if(policyEngine != null) {
-			policyEngine.setDefaultAuditHandler(auditHandler);
-		}
+	RangerPolicyEngine getPolicyEngine() {
+		return policyEngine;
 	}
 
-	public RangerAuditHandler getDefaultAuditHandler() {
-		RangerPolicyEngine policyEngine = this.policyEngine;
-
-		if(policyEngine != null) {
-			return policyEngine.getDefaultAuditHandler();
-		}
-
-		return null;
-	}
+	PolicyRefresher createRefresher(RangerPolicyEngine policyEngine) {
+		String propertyPrefix    = "ranger.plugin." + serviceType;
+		long   pollingIntervalMs = RangerConfiguration.getInstance().getLong(propertyPrefix + ".policy.pollIntervalMs", 30 * 1000);
+		String cacheDir          = RangerConfiguration.getInstance().get(propertyPrefix + ".policy.cache.dir");
+		String cacheFormat       = RangerConfiguration.getInstance().get(propertyPrefix + ".policy.cache.format", "binary");
 
-	public RangerAccessResult isAccessAllowed(RangerAccessRequest request) {
-		RangerPolicyEngine policyEngine = this.policyEngine;
+		RangerAdminClient admin = createAdminClient(propertyPrefix);
 
-		if(policyEngine != null) {
-			enrichRequest(request);
+		PolicyRefresher ret = new PolicyRefresher(policyEngine, serviceType, appId, serviceName, admin, pollingIntervalMs, cacheDir);
 
-			return policyEngine.isAccessAllowed(request);
-		}
+		ret.setUseBinaryCache(!"json".equalsIgnoreCase(cacheFormat));
 
-		return null;
+		return ret;
 	}
 
+	// the audit handler is of this plugin instance, not of the policy engine, which could be shared with other instances
+	public void setDefaultAuditHandler(RangerAuditHandler auditHandler) {
+		this.defaultAuditHandler = auditHandler;
+	}
 
-	public Collection<RangerAccessResult> isAccessAllowed(Collection<RangerAccessRequest> requests) {
-		RangerPolicyEngine policyEngine = this.policyEngine;
+	public RangerAuditHandler getDefaultAuditHandler() {
+		return defaultAuditHandler;
+	}
 
-		if(policyEngine != null) {
-			enrichRequests(requests);
+	public RangerAccessResult isAccessAllowed(RangerAccessRequest request) {
+		return isAccessAllowed(request, defaultAuditHandler);
+	}
 
-			return policyEngine.isAccessAllowed(requests);
-		}
 
-		return null;
+	public Collection<RangerAccessResult> isAccessAllowed(Collection<RangerAccessRequest> requests) {
+		return isAccessAllowed(requests, defaultAuditHandler);
 	}
 
 
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.policyengine.RangerPolicyEngineImpl;
+import org.apache.ranger.plugin.util.PolicyRefresher;
+
+/**
+ * Policy engines of the JVM, one per service, shared by the RangerBasePlugin instances of the service.
+ *
+ * The engine of a service and its PolicyRefresher are created by the first plugin instance that initializes
+ * for the service, and stopped when the last one is cleaned up; in between, policies of the service are
+ * downloaded and held once.
+ */
+final class RangerPolicyEngineRegistry {
+	private static final Log LOG = LogFactory.getLog(RangerPolicyEngineRegistry.class);
+
+	private static final RangerPolicyEngineRegistry instance = new RangerPolicyEngineRegistry();
+
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	static RangerPolicyEngineRegistry getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @return refresher of the shared engine of the service; created, with its engine, by the given plugin if there is none
+	 */
+	synchronized PolicyRefresher acquire(RangerBasePlugin plugin) {
+		String key   = getKey(plugin.getServiceType(), plugin.getServiceName());
+		Entry  entry = entries.get(key);
+
+		if(entry == null) {
+			PolicyRefresher refresher = plugin.createRefresher(new RangerPolicyEngineImpl());
+
+			refresher.startRefresher();
+
+			entry = new Entry(refresher);
+
+			entries.put(key, entry);
+
+			LOG.info("RangerPolicyEngineRegistry: created policy engine for service " + key);
+		}
+
+		entry.refCount++;
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("RangerPolicyEngineRegistry.acquire(" + key + "): refCount=" + entry.refCount);
+		}
+
+		return entry.refresher;
+	}
+
+	void release(String serviceType, String serviceName, PolicyRefresher refresher) {
+		String          key    = getKey(serviceType, serviceName);
+		PolicyRefresher toStop = null;
+
+		synchronized(this) {
+			Entry entry = entries.get(key);
+
+			if(entry != null && entry.refresher == refresher) {
+				entry.refCount--;
+
+				if(LOG.isDebugEnabled()) {
+					LOG.debug("RangerPolicyEngineRegistry.release(" + key + "): refCount=" + entry.refCount);
+				}
+
+				if(entry.refCount <= 0) {
+					entries.remove(key);
+
+					toStop = refresher;
+				}
+			}
+		}
+
+		if(toStop != null) {
+			LOG.info("RangerPolicyEngineRegistry: stopping policy engine for service " + key);
+
+			toStop.stopRefresher();
+		}
+	}
+
+	synchronized int getRefCount(String serviceType, String serviceName) {
+		Entry entry = entries.get(getKey(serviceType, serviceName));
+
+		return entry == null ? 0 : entry.refCount;
+	}
+
+	private static String getKey(String serviceType, String serviceName) {
+		return serviceType + "/" + serviceName;
+	}
+
+	private static final class Entry {
+		final PolicyRefresher refresher;
+		int                   refCount = 0;
+
+		Entry(PolicyRefresher refresher) {
+			this.refresher = refresher;
+		}
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Policy cache file of plugins, written so that a crash while saving leaves the previous file intact.
+ *
+ * Content is written to a temporary file in the same directory, synced to disk and renamed over the cache
+ * file. A header with the length and the CRC-32 of the content lets a truncated or corrupted file be detected
+ * on load, instead of loading whatever policies it has. Files are read through a memory-mapping.
+ *
+ * Layout: MAGIC, format-version (int), content length (long), content CRC-32 (long), content. Files without
+ * MAGIC are taken to be from a version that wrote the content alone, and are read without a check.
+ */
+final class PolicyCacheFile {
+	private static final Log LOG = LogFactory.getLog(PolicyCacheFile.class);
+
+	private static final byte[] MAGIC          = { 'R', 'G', 'R', 'C' };
+	private static final int    FORMAT_VERSION = 1;
+	private static final int    HEADER_LENGTH  = MAGIC.length + 4 + 8 + 8;
+
+	// writes the content to the given stream, without closing it
+	interface Content {
+		void write(OutputStream out) throws IOException;
+	}
+
+	private PolicyCacheFile() {
+	}
+
+	static void write(File file, Content content) throws IOException {
+		File        dir     = file.getAbsoluteFile().getParentFile();
+		File        tmpFile = File.createTempFile(file.getName() + ".", ".tmp", dir);
+		boolean     isDone  = false;
+		FileChannel channel = null;
+
+		try {
+			channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.WRITE);
+
+			channel.position(HEADER_LENGTH);
+
+			CRC32        crc = new CRC32();
+			OutputStream out = new BufferedOutputStream(new CheckedOutputStream(Channels.newOutputStream(channel), crc), 64 * 1024);
+
+			content.write(out);
+
+			out.flush();
+
+			long       length = channel.position() - HEADER_LENGTH;
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+
+			header.put(MAGIC).putInt(FORMAT_VERSION).putLong(length).putLong(crc.getValue()).flip();
+
+			while(header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+
+			channel.force(true);
+			channel.close();
+			channel = null;
+
+			try {
+				Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch(AtomicMoveNotSupportedException excp) {
+				Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			isDone = true;
+
+			syncDirectory(dir);
+		} finally {
+			if(channel != null) {
+				try {
+					channel.close();
+				} catch(IOException excp) {
+					LOG.warn("error while closing temporary cache file '" + tmpFile.getAbsolutePath() + "'", excp);
+				}
+			}
+
+			if(!isDone && !tmpFile.delete()) {
+				LOG.warn("failed to delete temporary cache file '" + tmpFile.getAbsolutePath() + "'");
+			}
+		}
+	}
+
+	/**
+	 * @return content of the file, memory-mapped
+	 * @throws IOException if the file can't be read, or its content doesn't match the length or checksum in its header
+	 */
+	static ByteBuffer read(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try {
+			long       size   = channel.size();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+
+			while(header.hasRemaining() && channel.read(header, header.position()) > 0) {
+				// read till the header is full or the file ends
+			}
+
+			header.flip();
+
+			if(!hasMagic(header)) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
+
+			if(header.remaining() < HEADER_LENGTH) {
+				throw new IOException("truncated header");
+			}
+
+			header.position(MAGIC.length);
+
+			int  formatVersion = header.getInt();
+			long length        = header.getLong();
+			long checksum      = header.getLong();
+
+			if(formatVersion != FORMAT_VERSION) {
+				throw new IOException("unsupported format version " + formatVersion);
+			}
+
+			if(length != size - HEADER_LENGTH) {
+				throw new IOException("content length " + (size - HEADER_LENGTH) + " doesn't match length " + length + " in header");
+			}
+
+			ByteBuffer ret = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, length);
+
+			if(getChecksum(ret.duplicate()) != checksum) {
+				throw new IOException("content doesn't match checksum in header");
+			}
+
+			return ret;
+		} finally {
+			channel.close(); // the mapping stays valid after the channel is closed
+		}
+	}
+
+	static InputStream newInputStream(final ByteBuffer buffer) {
+		return new InputStream() {
+			@Override
+			public int read() {
+				return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if(len == 0) {
+					return 0;
+				}
+
+				if(!buffer.hasRemaining()) {
+					return -1;
+				}
+
+				int ret = Math.min(len, buffer.remaining());
+
+				buffer.get(b, off, ret);
+
+				return ret;
+			}
+
+			@Override
+			public int available() {
+				return buffer.remaining();
+			}
+		};
+	}
+
+	private static boolean hasMagic(ByteBuffer header) {
+		if(header.remaining() < MAGIC.length) {
+			return false;
+		}
+
+		for(int i = 0; i < MAGIC.length; i++) {
+			if(header.get(i) != MAGIC[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static long getChecksum(ByteBuffer buffer) {
+		CRC32  crc   = new CRC32();
+		byte[] chunk = new byte[64 * 1024];
+
+		while(buffer.hasRemaining()) {
+			int len = Math.min(chunk.length, buffer.remaining());
+
+			buffer.get(chunk, 0, len);
+			crc.update(chunk, 0, len);
+		}
+
+		return crc.getValue();
+	}
+
+	// makes the rename durable; not supported on all platforms
+	private static void syncDirectory(File dir) {
+		FileChannel channel = null;
+
+		try {
+			channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ);
+
+			channel.force(true);
+		} catch(IOException excp) {
+			if(LOG.isDebugEnabled()) {
+				LOG.debug("PolicyCacheFile.syncDirectory(" + dir + "): not supported", excp);
+			}
+		} finally {
+			if(channel != null) {
+				try {
+					channel.close();
+				} catch(IOException excp) {
+					// ignore
+				}
+			}
+		}
+	}
+}
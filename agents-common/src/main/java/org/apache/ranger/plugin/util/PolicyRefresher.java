@@ -20,15 +20,25 @@
 package org.apache.ranger.plugin.util;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.Reader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.admin.client.RangerAdminClient;
+import org.apache.ranger.plugin.model.RangerPolicy;
 import org.apache.ranger.plugin.policyengine.RangerPolicyEngine;
 
 import com.google.gson.Gson;
@@ -38,15 +48,25 @@ import com.google.gson.GsonBuilder;
 public class PolicyRefresher extends Thread {
 	private static final Log LOG = LogFactory.getLog(PolicyRefresher.class);
 
+	private static final Charset UTF8                     = Charset.forName("UTF-8");
+	private static final long    CACHE_WRITE_WAIT_SECONDS = 30;
+	private static final long    THREAD_EXIT_WAIT_MS      = 10 * 1000;
+
 	private RangerPolicyEngine policyEngine      = null;
 	private String             serviceType       = null;
 	private String             serviceName       = null;
 	private RangerAdminClient  rangerAdmin       = null;
 	private long               pollingIntervalMs = 30 * 1000;
 	private String             cacheFile         = null;
+	private String             binaryCacheFile   = null;
+	private boolean            useBinaryCache    = false;
+
+	private long            lastKnownVersion  = -1;
+	private ServicePolicies lastKnownPolicies = null;
+	private Gson            gson              = null;
 
-	private long    lastKnownVersion = -1;
-	private Gson    gson             = null;
+	private final AtomicReference<ServicePolicies> policiesToSave = new AtomicReference<ServicePolicies>();
+	private ExecutorService                        cacheWriter    = null;
 
 
 
@@ -65,11 +85,25 @@ public class PolicyRefresher extends Thread {
 			appId = serviceType;
 		}
 
-		String cacheFilename = String.format("%s_%s.json", appId, serviceName);
+		String cacheFilename = String.format("%s_%s", appId, serviceName);
 		cacheFilename = cacheFilename.replace(File.separatorChar,  '_');
 		cacheFilename = cacheFilename.replace(File.pathSeparatorChar,  '_');
 
-		this.cacheFile = cacheDir == null ? null : (cacheDir + File.separator + cacheFilename);
+		this.cacheFile       = cacheDir == null ? null : (cacheDir + File.separator + cacheFilename + ".json");
+		this.binaryCacheFile = cacheDir == null ? null : (cacheDir + File.separator + cacheFilename + ".bin");
+
+		if(cacheDir != null) {
+			this.cacheWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread ret = new Thread(r, "PolicyCacheWriter-" + PolicyRefresher.this.serviceName);
+
+					ret.setDaemon(true);
+
+					return ret;
+				}
+			});
+		}
 
         try {
         	this.gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").setPrettyPrinting().create();
@@ -124,6 +158,20 @@ public class PolicyRefresher extends Thread {
 		this.pollingIntervalMs = pollingIntervalMilliSeconds;
 	}
 
+	/**
+	 * @return true if policies are cached in the binary format of ServicePoliciesBinaryFormat, false if in JSON
+	 */
+	public boolean getUseBinaryCache() {
+		return useBinaryCache;
+	}
+
+	/**
+	 * @param useBinaryCache true to cache policies in the binary format of ServicePoliciesBinaryFormat, false in JSON
+	 */
+	public void setUseBinaryCache(boolean useBinaryCache) {
+		this.useBinaryCache = useBinaryCache;
+	}
+
 
 	public void startRefresher() {
 		loadFromCache();
@@ -134,11 +182,33 @@ public class PolicyRefresher extends Thread {
 	public void stopRefresher() {
 		super.interrupt();
 
-	    try {
-	        super.join();
-	      } catch (InterruptedException excp) {
-	        LOG.warn("PolicyRefresher(serviceName=" + serviceName + "): error while waiting for thread to exit", excp);
-	      }
+		// interrupt() doesn't end a blocking read of a policy download; the thread exits once the read completes or times out
+		try {
+			super.join(THREAD_EXIT_WAIT_MS);
+		} catch (InterruptedException excp) {
+			LOG.warn("PolicyRefresher(serviceName=" + serviceName + "): error while waiting for thread to exit", excp);
+
+			Thread.currentThread().interrupt();
+		}
+
+		if(super.isAlive()) {
+			LOG.warn("PolicyRefresher(serviceName=" + serviceName + "): thread did not exit in " + THREAD_EXIT_WAIT_MS + "ms; continuing to stop");
+		}
+
+		ExecutorService cacheWriter = this.cacheWriter;
+
+		if(cacheWriter != null) {
+			// let a pending save complete, so that the cache file has the last known policies
+			cacheWriter.shutdown();
+
+			try {
+				if(!cacheWriter.awaitTermination(CACHE_WRITE_WAIT_SECONDS, TimeUnit.SECONDS)) {
+					LOG.warn("PolicyRefresher(serviceName=" + serviceName + "): timed out while saving policies to cache file");
+				}
+			} catch(InterruptedException excp) {
+				Thread.currentThread().interrupt();
+			}
+		}
 	}
 
 	public void run() {
@@ -147,7 +217,11 @@ public class PolicyRefresher extends Thread {
 		}
 
 		while(true) {
+			long startTimeMs = System.currentTimeMillis();
+			long sleepMs     = pollingIntervalMs;
+
 			try {
+				// with Ranger Admin that supports it, this waits for policies to change (long-poll)
 				ServicePolicies svcPolicies = rangerAdmin.getServicePoliciesIfUpdated(lastKnownVersion);
 
 				boolean isUpdated = svcPolicies != null;
@@ -163,22 +237,46 @@ public class PolicyRefresher extends Thread {
 						LOG.debug("PolicyRefresher(serviceName=" + serviceName + "): found updated version. lastKnownVersion=" + lastKnownVersion + "; newVersion=" + newVersion);
 					}
 
-					saveToCache(svcPolicies);
+					if(Boolean.TRUE.equals(svcPolicies.getIsDelta())) {
+						svcPolicies = lastKnownPolicies == null ? null : lastKnownPolicies.applyDelta(svcPolicies);
+					}
+
+					if(svcPolicies != null) {
+						// the engine reuses the evaluators of policies whose id and version are unchanged
+						policyEngine.setPolicies(serviceName, svcPolicies.getServiceDef(), svcPolicies.getPolicies());
 
-		        	lastKnownVersion = svcPolicies.getPolicyVersion() == null ? -1 : svcPolicies.getPolicyVersion().longValue();
+						// advance only once the engine has the policies; on failure, the next poll starts from the same version
+						lastKnownVersion  = svcPolicies.getPolicyVersion() == null ? -1 : svcPolicies.getPolicyVersion().longValue();
+						lastKnownPolicies = svcPolicies;
 
-					policyEngine.setPolicies(serviceName, svcPolicies.getServiceDef(), svcPolicies.getPolicies());
+						keepEnginePolicies(svcPolicies);
+						saveToCache(svcPolicies);
+					} else {
+						LOG.warn("PolicyRefresher(serviceName=" + serviceName + "): received policy changes, but there are no known policies to apply them to. Will download all policies");
+
+						lastKnownVersion = -1;
+					}
+
+					// look for further changes right away
+					sleepMs = 0;
 				} else {
 					if(LOG.isDebugEnabled()) {
 						LOG.debug("PolicyRefresher(serviceName=" + serviceName + ").run(): no update found. lastKnownVersion=" + lastKnownVersion);
 					}
+
+					// a long-poll has already waited; don't poll more often than pollingIntervalMs otherwise
+					sleepMs = pollingIntervalMs - (System.currentTimeMillis() - startTimeMs);
 				}
 			} catch(Exception excp) {
 				LOG.error("PolicyRefresher(serviceName=" + serviceName + "): failed to refresh policies. Will continue to use last known version of policies (" + lastKnownVersion + ")", excp);
 			}
 
 			try {
-				Thread.sleep(pollingIntervalMs);
+				if(sleepMs > 0) {
+					Thread.sleep(sleepMs);
+				} else if(Thread.interrupted()) {
+					throw new InterruptedException();
+				}
 			} catch(InterruptedException excp) {
 				LOG.info("PolicyRefresher(serviceName=" + serviceName + ").run(): interrupted! Exiting thread", excp);
 
@@ -199,38 +297,24 @@ public class PolicyRefresher extends Thread {
 		RangerPolicyEngine policyEngine = this.policyEngine;
 
 		if(policyEngine != null) {
-	    	File cacheFile = StringUtils.isEmpty(this.cacheFile) ? null : new File(this.cacheFile);
-
-	    	if(cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
-	    		Reader reader = null;
-
-	    		try {
-		        	reader = new FileReader(cacheFile);
-
-			        ServicePolicies policies = gson.fromJson(reader, ServicePolicies.class);
-
-			        if(policies != null) {
-			        	if(!StringUtils.equals(serviceName, policies.getServiceName())) {
-			        		LOG.warn("ignoring unexpected serviceName '" + policies.getServiceName() + "' in cache file '" + cacheFile.getAbsolutePath() + "'");
-			        	}
-
-			        	lastKnownVersion = policies.getPolicyVersion() == null ? -1 : policies.getPolicyVersion().longValue();
-
-			        	policyEngine.setPolicies(serviceName, policies.getServiceDef(), policies.getPolicies());
-			        }
-		        } catch (Exception excp) {
-		        	LOG.error("failed to load policies from cache file " + cacheFile.getAbsolutePath(), excp);
-		        } finally {
-		        	if(reader != null) {
-		        		try {
-		        			reader.close();
-		        		} catch(Exception excp) {
-		        			LOG.error("error while closing opened cache file " + cacheFile.getAbsolutePath(), excp);
-		        		}
-		        	}
-		        }
-			} else {
-				LOG.warn("cache file does not exist or not readble '" + (cacheFile == null ? null : cacheFile.getAbsolutePath()) + "'");
+			// the cache file in the configured format is preferred; the other one is from before a change in the format
+			ServicePolicies policies = readCacheFile(useBinaryCache);
+
+			if(policies == null) {
+				policies = readCacheFile(!useBinaryCache);
+			}
+
+			if(policies != null) {
+				if(!StringUtils.equals(serviceName, policies.getServiceName())) {
+					LOG.warn("ignoring unexpected serviceName '" + policies.getServiceName() + "' in cache file");
+				}
+
+				policyEngine.setPolicies(serviceName, policies.getServiceDef(), policies.getPolicies());
+
+				lastKnownVersion  = policies.getPolicyVersion() == null ? -1 : policies.getPolicyVersion().longValue();
+				lastKnownPolicies = policies;
+
+				keepEnginePolicies(policies);
 			}
 		} else {
 			LOG.warn("policyEngine is null");
@@ -241,33 +325,69 @@ public class PolicyRefresher extends Thread {
 		}
 	}
 
+	/*
+	 * The engine keeps its instances of unchanged policies and drops the downloaded copies. lastKnownPolicies
+	 * holds the engine's list, so that the downloaded copies are not kept in the heap by the refresher.
+	 */
+	private void keepEnginePolicies(ServicePolicies policies) {
+		List<RangerPolicy> enginePolicies = policyEngine.getPolicies();
+
+		if(enginePolicies != null && StringUtils.equals(serviceName, policyEngine.getServiceName())) {
+			policies.setPolicies(enginePolicies);
+		}
+	}
+
+	private ServicePolicies readCacheFile(boolean isBinary) {
+		ServicePolicies ret = null;
+
+		String fileName  = isBinary ? this.binaryCacheFile : this.cacheFile;
+		File   cacheFile = StringUtils.isEmpty(fileName) ? null : new File(fileName);
+
+		if(cacheFile != null && cacheFile.isFile() && cacheFile.canRead()) {
+			try {
+				ByteBuffer content = PolicyCacheFile.read(cacheFile);
+
+				if(isBinary) {
+					ret = ServicePoliciesBinaryFormat.read(PolicyCacheFile.newInputStream(content));
+				} else {
+					ret = gson.fromJson(new InputStreamReader(PolicyCacheFile.newInputStream(content), UTF8), ServicePolicies.class);
+				}
+			} catch (Exception excp) {
+				LOG.error("failed to load policies from cache file " + cacheFile.getAbsolutePath(), excp);
+			}
+		} else if(isBinary == useBinaryCache) {
+			LOG.warn("cache file does not exist or not readble '" + (cacheFile == null ? null : cacheFile.getAbsolutePath()) + "'");
+		}
+
+		return ret;
+	}
+
+	/*
+	 * Saves policies from the thread of cacheWriter, after they are in use by the policy engine. Only the latest
+	 * of the policies that arrive while a save is in progress is saved.
+	 */
 	private void saveToCache(ServicePolicies policies) {
 		if(LOG.isDebugEnabled()) {
 			LOG.debug("==> PolicyRefresher(serviceName=" + serviceName + ").saveToCache()");
 		}
 
 		if(policies != null) {
-	    	File cacheFile = StringUtils.isEmpty(this.cacheFile) ? null : new File(this.cacheFile);
+			ExecutorService cacheWriter = this.cacheWriter;
 
-	    	if(cacheFile != null) {
-				Writer writer = null;
-	
+			if(cacheWriter != null && policiesToSave.getAndSet(policies) == null) {
 				try {
-					writer = new FileWriter(cacheFile);
-	
-			        gson.toJson(policies, writer);
-		        } catch (Exception excp) {
-		        	LOG.error("failed to save policies to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-		        } finally {
-		        	if(writer != null) {
-		        		try {
-		        			writer.close();
-		        		} catch(Exception excp) {
-		        			LOG.error("error while closing opened cache file '" + cacheFile.getAbsolutePath() + "'", excp);
-		        		}
-		        	}
-		        }
-	    	}
+					cacheWriter.execute(new Runnable() {
+						@Override
+						public void run() {
+							writeCacheFile(policiesToSave.getAndSet(null));
+						}
+					});
+				} catch(Exception excp) {
+					policiesToSave.set(null);
+
+					LOG.error("PolicyRefresher(serviceName=" + serviceName + "): failed to schedule save of policies to cache file", excp);
+				}
+			}
 		} else {
 			LOG.info("policies is null. Nothing to save in cache");
 		}
@@ -276,4 +396,54 @@ public class PolicyRefresher extends Thread {
 			LOG.debug("<== PolicyRefresher(serviceName=" + serviceName + ").saveToCache()");
 		}
 	}
+
+	private void writeCacheFile(final ServicePolicies policies) {
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("==> PolicyRefresher(serviceName=" + serviceName + ").writeCacheFile()");
+		}
+
+		String fileName  = useBinaryCache ? this.binaryCacheFile : this.cacheFile;
+		File   cacheFile = StringUtils.isEmpty(fileName) ? null : new File(fileName);
+
+		if(policies != null && cacheFile != null) {
+			final boolean isBinary = useBinaryCache;
+			boolean       isSaved  = false;
+
+			try {
+				PolicyCacheFile.write(cacheFile, new PolicyCacheFile.Content() {
+					@Override
+					public void write(OutputStream out) throws IOException {
+						if(isBinary) {
+							ServicePoliciesBinaryFormat.write(policies, out);
+						} else {
+							Writer writer = new OutputStreamWriter(out, UTF8);
+
+							gson.toJson(policies, writer);
+
+							writer.flush();
+						}
+					}
+				});
+
+				isSaved = true;
+			} catch (Exception excp) {
+				LOG.error("failed to save policies to cache file '" + cacheFile.getAbsolutePath() + "'", excp);
+			}
+
+			// the cache file in the other format is now stale; don't let loadFromCache() fall back to it
+			String otherFileName = isBinary ? this.cacheFile : this.binaryCacheFile;
+
+			if(isSaved && !StringUtils.isEmpty(otherFileName)) {
+				File otherFile = new File(otherFileName);
+
+				if(otherFile.exists() && !otherFile.delete()) {
+					LOG.warn("failed to delete stale cache file '" + otherFile.getAbsolutePath() + "'");
+				}
+			}
+		}
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("<== PolicyRefresher(serviceName=" + serviceName + ").writeCacheFile()");
+		}
+	}
 }
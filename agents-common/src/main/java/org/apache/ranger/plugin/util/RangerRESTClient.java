@@ -55,6 +55,7 @@ import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
+import com.sun.jersey.api.client.filter.GZIPContentEncodingFilter;
 import com.sun.jersey.api.client.filter.HTTPBasicAuthFilter;
 import com.sun.jersey.client.urlconnection.HTTPSProperties;
 
@@ -89,6 +90,7 @@ public class RangerRESTClient {
 	private String  mUsername          = null;
 	private String  mPassword          = null;
 	private boolean mIsSSL             = false;
+	private int     mReadTimeoutMs     = 0;
 
 	private String mKeyStoreURL     = null;
 	private String mKeyStoreAlias   = null;
@@ -135,6 +137,23 @@ public class RangerRESTClient {
 		mPassword = password;
 	}
 
+	public int getReadTimeoutMs() {
+		return mReadTimeoutMs;
+	}
+
+	/**
+	 * @param readTimeoutMs time to wait for data from the server, after a connection is established; 0 to wait without a limit
+	 */
+	public void setReadTimeoutMs(int readTimeoutMs) {
+		mReadTimeoutMs = readTimeoutMs;
+
+		Client client = this.client;
+
+		if(client != null) {
+			client.setReadTimeout(readTimeoutMs > 0 ? readTimeoutMs : null);
+		}
+	}
+
 	public WebResource getResource(String relativeUrl) {
 		WebResource ret = getClient().resource(getUrl() + relativeUrl);
 		
@@ -194,6 +213,13 @@ public class RangerRESTClient {
 			client = Client.create(config);
 		}
 
+		if(mReadTimeoutMs > 0) {
+			client.setReadTimeout(mReadTimeoutMs);
+		}
+
+		// sends Accept-Encoding: gzip, and decompresses gzip-encoded responses; requests are not compressed
+		client.addFilter(new GZIPContentEncodingFilter(false));
+
 		// TODO: for testing only
 		if(!StringUtils.isEmpty(mUsername) || !StringUtils.isEmpty(mPassword)) {
 			client.addFilter(new HTTPBasicAuthFilter(mUsername, mPassword)); 
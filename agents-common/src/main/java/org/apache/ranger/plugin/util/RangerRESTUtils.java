@@ -45,6 +45,8 @@ public class RangerRESTUtils {
 
 	public static final String REST_PARAM_LAST_KNOWN_POLICY_VERSION = "lastKnownVersion";
 	public static final String REST_PARAM_PLUGIN_ID                 = "pluginId";
+	public static final String REST_PARAM_SUPPORTS_POLICY_DELTAS    = "supportsPolicyDeltas";
+	public static final String REST_PARAM_WAIT_FOR_POLICY_UPDATE_MS = "waitForPolicyUpdateMs";
 
 	private static final int MAX_PLUGIN_ID_LEN = 255 ;
 
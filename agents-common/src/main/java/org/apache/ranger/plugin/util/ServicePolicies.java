@@ -20,8 +20,12 @@
 package org.apache.ranger.plugin.util;
 
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -50,6 +54,8 @@ public class ServicePolicies implements java.io.Serializable {
 	private Date               policyUpdateTime;
 	private List<RangerPolicy> policies;
 	private RangerServiceDef   serviceDef;
+	private Boolean            isDelta;
+	private List<Long>         deletedPolicyIds;
 
 
 	/**
@@ -124,6 +130,90 @@ public class ServicePolicies implements java.io.Serializable {
 	public void setServiceDef(RangerServiceDef serviceDef) {
 		this.serviceDef = serviceDef;
 	}
+	/**
+	 * @return true if policies has only the policies added or updated since the version known to the caller
+	 */
+	public Boolean getIsDelta() {
+		return isDelta;
+	}
+	/**
+	 * @param isDelta the isDelta to set
+	 */
+	public void setIsDelta(Boolean isDelta) {
+		this.isDelta = isDelta;
+	}
+	/**
+	 * @return ids of policies deleted since the version known to the caller; only in a delta
+	 */
+	public List<Long> getDeletedPolicyIds() {
+		return deletedPolicyIds;
+	}
+	/**
+	 * @param deletedPolicyIds the deletedPolicyIds to set
+	 */
+	public void setDeletedPolicyIds(List<Long> deletedPolicyIds) {
+		this.deletedPolicyIds = deletedPolicyIds;
+	}
+
+	/**
+	 * @return the given delta applied to this full set of policies
+	 */
+	public ServicePolicies applyDelta(ServicePolicies delta) {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceName(delta.getServiceName());
+		ret.setServiceId(delta.getServiceId());
+		ret.setPolicyVersion(delta.getPolicyVersion());
+		ret.setPolicyUpdateTime(delta.getPolicyUpdateTime());
+		ret.setServiceDef(delta.getServiceDef() != null ? delta.getServiceDef() : serviceDef);
+		ret.setPolicies(applyPolicyDeltas(policies, delta.getPolicies(), delta.getDeletedPolicyIds()));
+
+		return ret;
+	}
+
+	/**
+	 * Updated policies keep their position in the list and new ones are added at the end; so the result
+	 * has the same order as a full download, which returns policies in the order of their ids.
+	 *
+	 * @return policies with the given changes applied; the given lists are not modified
+	 */
+	public static List<RangerPolicy> applyPolicyDeltas(List<RangerPolicy> policies, List<RangerPolicy> changedPolicies, Collection<Long> deletedPolicyIds) {
+		Map<Long, RangerPolicy> policiesById = new LinkedHashMap<Long, RangerPolicy>();
+		List<RangerPolicy>      withoutId    = new ArrayList<RangerPolicy>();
+
+		if(policies != null) {
+			for(RangerPolicy policy : policies) {
+				if(policy.getId() == null) {
+					withoutId.add(policy);
+				} else {
+					policiesById.put(policy.getId(), policy);
+				}
+			}
+		}
+
+		if(deletedPolicyIds != null) {
+			for(Long policyId : deletedPolicyIds) {
+				policiesById.remove(policyId);
+			}
+		}
+
+		if(changedPolicies != null) {
+			for(RangerPolicy policy : changedPolicies) {
+				if(policy.getId() == null) {
+					withoutId.add(policy);
+				} else {
+					policiesById.put(policy.getId(), policy);
+				}
+			}
+		}
+
+		List<RangerPolicy> ret = new ArrayList<RangerPolicy>(policiesById.size() + withoutId.size());
+
+		ret.addAll(policiesById.values());
+		ret.addAll(withoutId);
+
+		return ret;
+	}
 	
 	@Override
 	public String toString() {
@@ -134,6 +224,8 @@ public class ServicePolicies implements java.io.Serializable {
 			.add("policyUpdateTime", policyUpdateTime)
 			.add("policies", policies)
 			.add("serviceDef", serviceDef)
+			.add("isDelta", isDelta)
+			.add("deletedPolicyIds", deletedPolicyIds)
 			.toString();
 	}
 }
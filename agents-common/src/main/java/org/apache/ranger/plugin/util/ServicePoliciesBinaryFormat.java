@@ -0,0 +1,542 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Compact binary encoding of ServicePolicies, for the policy cache file of plugins and for policy download.
+ *
+ * Numbers are written as variable-length integers. Each distinct string is written once; later occurrences,
+ * like names of users, groups, resources and access-types repeated across policies, refer to it by its index.
+ * Decoding reads the stream once, creating policies as it goes, without an intermediate document. The
+ * service-def, which is small compared to policies, is embedded as JSON.
+ *
+ * Layout: MAGIC, format-version, serviceName, serviceId, policyVersion, policyUpdateTime, isDelta,
+ * serviceDef (JSON), deletedPolicyIds, policies.
+ */
+public class ServicePoliciesBinaryFormat {
+	public static final String MIME_TYPE = "application/x-ranger-service-policies";
+
+	private static final byte[]  MAGIC          = { 'R', 'G', 'R', 'P' };
+	private static final int     FORMAT_VERSION = 1;
+	private static final Charset UTF8           = Charset.forName("UTF-8");
+
+	private static final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+
+	private ServicePoliciesBinaryFormat() {
+	}
+
+	/**
+	 * @return true if the data starts like the binary encoding of ServicePolicies
+	 */
+	public static boolean isBinaryFormat(byte[] data, int length) {
+		if(data == null || length < MAGIC.length) {
+			return false;
+		}
+
+		for(int i = 0; i < MAGIC.length; i++) {
+			if(data[i] != MAGIC[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public static void write(ServicePolicies policies, OutputStream out) throws IOException {
+		Encoder encoder = new Encoder(out);
+
+		encoder.writeServicePolicies(policies);
+		encoder.flush();
+	}
+
+	public static ServicePolicies read(InputStream in) throws IOException {
+		return new Decoder(in).readServicePolicies();
+	}
+
+	static final class Encoder {
+		private final OutputStream         out;
+		private final Map<String, Integer> stringIndex = new HashMap<String, Integer>();
+
+		Encoder(OutputStream out) {
+			this.out = out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out, 64 * 1024);
+		}
+
+		void flush() throws IOException {
+			out.flush();
+		}
+
+		void writeServicePolicies(ServicePolicies policies) throws IOException {
+			out.write(MAGIC);
+			writeVarLong(FORMAT_VERSION);
+
+			writeString(policies.getServiceName());
+			writeLong(policies.getServiceId());
+			writeLong(policies.getPolicyVersion());
+			writeDate(policies.getPolicyUpdateTime());
+			writeBoolean(policies.getIsDelta());
+			writeString(policies.getServiceDef() == null ? null : gson.toJson(policies.getServiceDef()));
+
+			List<Long> deletedPolicyIds = policies.getDeletedPolicyIds();
+
+			writeCount(deletedPolicyIds);
+
+			if(deletedPolicyIds != null) {
+				for(Long policyId : deletedPolicyIds) {
+					writeLong(policyId);
+				}
+			}
+
+			List<RangerPolicy> policyList = policies.getPolicies();
+
+			writeCount(policyList);
+
+			if(policyList != null) {
+				for(RangerPolicy policy : policyList) {
+					writePolicy(policy);
+				}
+			}
+		}
+
+		void writePolicy(RangerPolicy policy) throws IOException {
+			writeLong(policy.getId());
+			writeString(policy.getGuid());
+			writeBoolean(policy.getIsEnabled());
+			writeString(policy.getCreatedBy());
+			writeString(policy.getUpdatedBy());
+			writeDate(policy.getCreateTime());
+			writeDate(policy.getUpdateTime());
+			writeLong(policy.getVersion());
+			writeString(policy.getService());
+			writeString(policy.getName());
+			writeLong(policy.getPolicyType() == null ? null : Long.valueOf(policy.getPolicyType().longValue()));
+			writeString(policy.getDescription());
+			writeBoolean(policy.getIsAuditEnabled());
+
+			Map<String, RangerPolicyResource> resources = policy.getResources();
+
+			writeCount(resources == null ? null : resources.keySet());
+
+			if(resources != null) {
+				for(Map.Entry<String, RangerPolicyResource> entry : resources.entrySet()) {
+					RangerPolicyResource resource = entry.getValue();
+
+					writeString(entry.getKey());
+					writeStrings(resource.getValues());
+					writeBoolean(resource.getIsExcludes());
+					writeBoolean(resource.getIsRecursive());
+				}
+			}
+
+			List<RangerPolicyItem> policyItems = policy.getPolicyItems();
+
+			writeCount(policyItems);
+
+			if(policyItems != null) {
+				for(RangerPolicyItem policyItem : policyItems) {
+					writePolicyItem(policyItem);
+				}
+			}
+		}
+
+		void writePolicyItem(RangerPolicyItem policyItem) throws IOException {
+			List<RangerPolicyItemAccess>    accesses   = policyItem.getAccesses();
+			List<RangerPolicyItemCondition> conditions = policyItem.getConditions();
+
+			writeCount(accesses);
+
+			if(accesses != null) {
+				for(RangerPolicyItemAccess access : accesses) {
+					writeString(access.getType());
+					writeBoolean(access.getIsAllowed());
+				}
+			}
+
+			writeStrings(policyItem.getUsers());
+			writeStrings(policyItem.getGroups());
+
+			writeCount(conditions);
+
+			if(conditions != null) {
+				for(RangerPolicyItemCondition condition : conditions) {
+					writeString(condition.getType());
+					writeStrings(condition.getValues());
+				}
+			}
+
+			writeBoolean(policyItem.getDelegateAdmin());
+		}
+
+		// 0: null; 1: string follows; n: string at index n - 2 of the strings written so far
+		void writeString(String value) throws IOException {
+			if(value == null) {
+				writeVarLong(0);
+			} else {
+				Integer index = stringIndex.get(value);
+
+				if(index != null) {
+					writeVarLong(index.longValue() + 2);
+				} else {
+					byte[] bytes = value.getBytes(UTF8);
+
+					stringIndex.put(value, stringIndex.size());
+
+					writeVarLong(1);
+					writeVarLong(bytes.length);
+					out.write(bytes);
+				}
+			}
+		}
+
+		void writeStrings(List<String> values) throws IOException {
+			writeCount(values);
+
+			if(values != null) {
+				for(String value : values) {
+					writeString(value);
+				}
+			}
+		}
+
+		// 0: null; n: a collection of n - 1 elements
+		void writeCount(java.util.Collection<?> values) throws IOException {
+			writeVarLong(values == null ? 0 : (values.size() + 1));
+		}
+
+		void writeBoolean(Boolean value) throws IOException {
+			out.write(value == null ? 0 : (value.booleanValue() ? 2 : 1));
+		}
+
+		void writeDate(Date value) throws IOException {
+			writeLong(value == null ? null : Long.valueOf(value.getTime()));
+		}
+
+		void writeLong(Long value) throws IOException {
+			if(value == null) {
+				out.write(0);
+			} else {
+				long v = value.longValue();
+
+				out.write(1);
+				writeVarLong((v << 1) ^ (v >> 63)); // zig-zag: small negative numbers are short as well
+			}
+		}
+
+		void writeVarLong(long value) throws IOException {
+			while((value & ~0x7FL) != 0) {
+				out.write((int) ((value & 0x7F) | 0x80));
+
+				value >>>= 7;
+			}
+
+			out.write((int) value);
+		}
+	}
+
+	static final class Decoder {
+		private final InputStream  in;
+		private final List<String> strings = new ArrayList<String>();
+
+		Decoder(InputStream in) {
+			this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in, 64 * 1024);
+		}
+
+		ServicePolicies readServicePolicies() throws IOException {
+			byte[] magic = new byte[MAGIC.length];
+
+			readFully(magic);
+
+			if(!isBinaryFormat(magic, magic.length)) {
+				throw new IOException("not a binary encoding of ServicePolicies");
+			}
+
+			long formatVersion = readVarLong();
+
+			if(formatVersion != FORMAT_VERSION) {
+				throw new IOException("unsupported format version " + formatVersion + " of ServicePolicies");
+			}
+
+			ServicePolicies ret = new ServicePolicies();
+
+			ret.setServiceName(readString());
+			ret.setServiceId(readLong());
+			ret.setPolicyVersion(readLong());
+			ret.setPolicyUpdateTime(readDate());
+			ret.setIsDelta(readBoolean());
+
+			String serviceDefJson = readString();
+
+			ret.setServiceDef(serviceDefJson == null ? null : gson.fromJson(serviceDefJson, RangerServiceDef.class));
+
+			int deletedPolicyIdsCount = readCount();
+
+			if(deletedPolicyIdsCount >= 0) {
+				List<Long> deletedPolicyIds = new ArrayList<Long>(deletedPolicyIdsCount);
+
+				for(int i = 0; i < deletedPolicyIdsCount; i++) {
+					deletedPolicyIds.add(readLong());
+				}
+
+				ret.setDeletedPolicyIds(deletedPolicyIds);
+			}
+
+			int policyCount = readCount();
+
+			if(policyCount >= 0) {
+				List<RangerPolicy> policies = new ArrayList<RangerPolicy>(policyCount);
+
+				for(int i = 0; i < policyCount; i++) {
+					policies.add(readPolicy());
+				}
+
+				ret.setPolicies(policies);
+			}
+
+			return ret;
+		}
+
+		RangerPolicy readPolicy() throws IOException {
+			RangerPolicy ret = new RangerPolicy();
+
+			ret.setId(readLong());
+			ret.setGuid(readString());
+			ret.setIsEnabled(readBoolean());
+			ret.setCreatedBy(readString());
+			ret.setUpdatedBy(readString());
+			ret.setCreateTime(readDate());
+			ret.setUpdateTime(readDate());
+			ret.setVersion(readLong());
+			ret.setService(readString());
+			ret.setName(readString());
+
+			Long policyType = readLong();
+
+			ret.setPolicyType(policyType == null ? null : Integer.valueOf(policyType.intValue()));
+			ret.setDescription(readString());
+			ret.setIsAuditEnabled(readBoolean());
+
+			int resourceCount = readCount();
+
+			if(resourceCount >= 0) {
+				Map<String, RangerPolicyResource> resources = new HashMap<String, RangerPolicyResource>();
+
+				for(int i = 0; i < resourceCount; i++) {
+					String       resourceName = readString();
+					List<String> values       = readStrings();
+					Boolean      isExcludes   = readBoolean();
+					Boolean      isRecursive  = readBoolean();
+
+					resources.put(resourceName, new RangerPolicyResource(values, isExcludes, isRecursive));
+				}
+
+				ret.setResources(resources);
+			}
+
+			int policyItemCount = readCount();
+
+			if(policyItemCount >= 0) {
+				List<RangerPolicyItem> policyItems = new ArrayList<RangerPolicyItem>(policyItemCount);
+
+				for(int i = 0; i < policyItemCount; i++) {
+					policyItems.add(readPolicyItem());
+				}
+
+				ret.setPolicyItems(policyItems);
+			}
+
+			return ret;
+		}
+
+		RangerPolicyItem readPolicyItem() throws IOException {
+			List<RangerPolicyItemAccess>    accesses    = null;
+			List<RangerPolicyItemCondition> conditions  = null;
+			int                             accessCount = readCount();
+
+			if(accessCount >= 0) {
+				accesses = new ArrayList<RangerPolicyItemAccess>(accessCount);
+
+				for(int i = 0; i < accessCount; i++) {
+					String  type      = readString();
+					Boolean isAllowed = readBoolean();
+
+					accesses.add(new RangerPolicyItemAccess(type, isAllowed));
+				}
+			}
+
+			List<String> users          = readStrings();
+			List<String> groups         = readStrings();
+			int          conditionCount = readCount();
+
+			if(conditionCount >= 0) {
+				conditions = new ArrayList<RangerPolicyItemCondition>(conditionCount);
+
+				for(int i = 0; i < conditionCount; i++) {
+					String       type   = readString();
+					List<String> values = readStrings();
+
+					conditions.add(new RangerPolicyItemCondition(type, values));
+				}
+			}
+
+			Boolean delegateAdmin = readBoolean();
+
+			return new RangerPolicyItem(accesses, users, groups, conditions, delegateAdmin);
+		}
+
+		String readString() throws IOException {
+			long tag = readVarLong();
+
+			if(tag == 0) {
+				return null;
+			}
+
+			if(tag == 1) {
+				byte[] bytes = new byte[readLength()];
+
+				readFully(bytes);
+
+				String ret = new String(bytes, UTF8);
+
+				strings.add(ret);
+
+				return ret;
+			}
+
+			if(tag - 2 >= strings.size()) {
+				throw new IOException("invalid string reference " + (tag - 2) + "; only " + strings.size() + " strings read");
+			}
+
+			return strings.get((int) (tag - 2));
+		}
+
+		List<String> readStrings() throws IOException {
+			int count = readCount();
+
+			if(count < 0) {
+				return null;
+			}
+
+			List<String> ret = new ArrayList<String>(count);
+
+			for(int i = 0; i < count; i++) {
+				ret.add(readString());
+			}
+
+			return ret;
+		}
+
+		// -1 for null
+		int readCount() throws IOException {
+			return readLength() - 1;
+		}
+
+		Boolean readBoolean() throws IOException {
+			int value = readByte();
+
+			return value == 0 ? null : Boolean.valueOf(value == 2);
+		}
+
+		Date readDate() throws IOException {
+			Long value = readLong();
+
+			return value == null ? null : new Date(value.longValue());
+		}
+
+		Long readLong() throws IOException {
+			if(readByte() == 0) {
+				return null;
+			}
+
+			long v = readVarLong();
+
+			return Long.valueOf((v >>> 1) ^ -(v & 1));
+		}
+
+		long readVarLong() throws IOException {
+			long ret = 0;
+
+			for(int shift = 0; shift < 64; shift += 7) {
+				int b = readByte();
+
+				ret |= (long) (b & 0x7F) << shift;
+
+				if((b & 0x80) == 0) {
+					return ret;
+				}
+			}
+
+			throw new IOException("malformed variable-length integer");
+		}
+
+		private int readLength() throws IOException {
+			long ret = readVarLong();
+
+			if(ret < 0 || ret > Integer.MAX_VALUE) {
+				throw new IOException("invalid length " + ret);
+			}
+
+			return (int) ret;
+		}
+
+		private int readByte() throws IOException {
+			int ret = in.read();
+
+			if(ret < 0) {
+				throw new EOFException();
+			}
+
+			return ret;
+		}
+
+		private void readFully(byte[] bytes) throws IOException {
+			for(int offset = 0; offset < bytes.length; ) {
+				int len = in.read(bytes, offset, bytes.length - offset);
+
+				if(len < 0) {
+					throw new EOFException();
+				}
+
+				offset += len;
+			}
+		}
+	}
+}
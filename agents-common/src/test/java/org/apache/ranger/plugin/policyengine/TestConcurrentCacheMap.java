@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestConcurrentCacheMap {
+
+	@Test
+	public void testBoundedSize() {
+		ConcurrentCacheMap<String, String> cache = new ConcurrentCacheMap<String, String>(64);
+
+		for (int i = 0; i < 1000; i++) {
+			cache.put(String.valueOf(i), String.valueOf(i));
+
+			assertTrue("size exceeds capacity: " + cache.size(), cache.size() <= 64);
+		}
+
+		assertEquals(1000 - cache.size(), cache.getEvictionCount());
+	}
+
+	@Test
+	public void testReferencedEntriesSurvive() {
+		ConcurrentCacheMap<String, String> cache = new ConcurrentCacheMap<String, String>(16, 1);
+
+		for (int i = 0; i < 16; i++) {
+			cache.put(String.valueOf(i), String.valueOf(i));
+		}
+
+		assertEquals("0", cache.get("0"));
+
+		cache.put("16", "16");
+
+		assertTrue(cache.containsKey("0"));
+		assertFalse(cache.containsKey("1"));
+		assertEquals(16, cache.size());
+	}
+
+	@Test
+	public void testCounters() {
+		ConcurrentCacheMap<String, Boolean> cache = new ConcurrentCacheMap<String, Boolean>(8);
+
+		cache.put("a", Boolean.TRUE);
+
+		assertEquals(Boolean.TRUE, cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNull(cache.get(null));
+
+		cache.put(null, Boolean.TRUE);
+
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		assertEquals(Boolean.TRUE, cache.remove("a"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		final ConcurrentCacheMap<Integer, Integer> cache  = new ConcurrentCacheMap<Integer, Integer>(128);
+		final AtomicInteger                        errors = new AtomicInteger();
+		List<Thread>                               threads = new ArrayList<Thread>();
+
+		for (int t = 0; t < 8; t++) {
+			final int seed = t;
+
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						Integer key   = (i * 31 + seed) % 512;
+						Integer value = cache.get(key);
+
+						if (value == null) {
+							cache.put(key, key);
+						} else if (!value.equals(key)) {
+							errors.incrementAndGet();
+						}
+					}
+				}
+			};
+
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(0, errors.get());
+		assertTrue(cache.size() <= 128);
+	}
+}
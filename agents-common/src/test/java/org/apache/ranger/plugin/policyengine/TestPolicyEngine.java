@@ -24,10 +24,20 @@ import static org.junit.Assert.*;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
 import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
 import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.policyevaluator.RangerIdMaps;
 import org.apache.ranger.plugin.policyengine.TestPolicyEngine.PolicyEngineTestCase.TestData;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -81,6 +91,325 @@ public class TestPolicyEngine {
 		runTestsFromResourceFiles(hbaseTestResourceFiles);
 	}
 
+	@Test
+	public void testPolicyDeltas_hdfs() {
+		InputStream          inStream = this.getClass().getResourceAsStream("/policyengine/test_policyengine_hdfs.json");
+		PolicyEngineTestCase testCase = gsonBuilder.fromJson(new InputStreamReader(inStream), PolicyEngineTestCase.class);
+
+		testCase.serviceDef.setVersion(1L);
+
+		for(RangerPolicy policy : testCase.policies) {
+			policy.setVersion(1L);
+		}
+
+		RangerPolicyEngineImpl engine      = new RangerPolicyEngineImpl();
+		List<RangerPolicy>     allPolicies = testCase.policies;
+		RangerPolicy           lastPolicy  = allPolicies.get(allPolicies.size() - 1);
+
+		assertFalse(engine.applyPolicyDeltas(testCase.serviceName, testCase.serviceDef, allPolicies, null));
+
+		// start with a stale copy of the first policy, and without the last one
+		RangerPolicy       stalePolicy     = gsonBuilder.fromJson(gsonBuilder.toJson(allPolicies.get(0)), RangerPolicy.class);
+		List<RangerPolicy> initialPolicies = new ArrayList<RangerPolicy>(allPolicies.subList(0, allPolicies.size() - 1));
+
+		stalePolicy.setVersion(0L);
+		stalePolicy.setIsEnabled(false);
+		initialPolicies.set(0, stalePolicy);
+
+		engine.setPolicies(testCase.serviceName, testCase.serviceDef, initialPolicies);
+
+		assertTrue(engine.applyPolicyDeltas(testCase.serviceName, testCase.serviceDef, Arrays.asList(allPolicies.get(0), lastPolicy), null));
+		assertEquals(allPolicies.size() - 2, engine.getPolicyRepository().getReusedEvaluatorCount());
+		assertEquals(allPolicies.size(), engine.getPolicyRepository().getPolicies().size());
+
+		for(TestData test : testCase.tests) {
+			RangerAccessResult result = engine.isAccessAllowed(test.request, null);
+
+			assertEquals("isAllowed mismatched! - " + test.name, test.result.getIsAllowed(), result.getIsAllowed());
+			assertEquals("isAudited mismatched! - " + test.name, test.result.getIsAudited(), result.getIsAudited());
+			assertEquals("policyId mismatched! - " + test.name, test.result.getPolicyId(), result.getPolicyId());
+		}
+
+		// delete and re-add the last policy: nothing else is re-initialized
+		assertTrue(engine.applyPolicyDeltas(testCase.serviceName, testCase.serviceDef, null, Arrays.asList(lastPolicy.getId())));
+		assertEquals(allPolicies.size() - 1, engine.getPolicyRepository().getReusedEvaluatorCount());
+
+		assertTrue(engine.applyPolicyDeltas(testCase.serviceName, testCase.serviceDef, Collections.singletonList(lastPolicy), null));
+		assertEquals(allPolicies.size() - 1, engine.getPolicyRepository().getReusedEvaluatorCount());
+		assertEquals(lastPolicy.getId(), engine.getPolicyRepository().getPolicies().get(allPolicies.size() - 1).getId());
+	}
+
+	@Test
+	public void testBulkRequests_hive() {
+		InputStream            inStream = this.getClass().getResourceAsStream("/policyengine/test_policyengine_hive.json");
+		PolicyEngineTestCase   testCase = gsonBuilder.fromJson(new InputStreamReader(inStream), PolicyEngineTestCase.class);
+		RangerPolicyEngineImpl engine   = new RangerPolicyEngineImpl();
+
+		engine.setPolicies(testCase.serviceName, testCase.serviceDef, testCase.policies);
+
+		// enough requests to be evaluated in parallel
+		List<RangerAccessRequest> requests = new ArrayList<RangerAccessRequest>();
+		List<TestData>            tests    = new ArrayList<TestData>();
+
+		while(requests.size() < 5000) {
+			for(TestData test : testCase.tests) {
+				requests.add(test.request);
+				tests.add(test);
+			}
+		}
+
+		List<RangerAccessResult> results = new ArrayList<RangerAccessResult>(engine.isAccessAllowed(requests, null));
+
+		assertEquals(requests.size(), results.size());
+
+		for(int i = 0; i < results.size(); i++) {
+			TestData           test   = tests.get(i);
+			RangerAccessResult result = results.get(i);
+
+			assertSame("result out of order! - " + test.name, test.request, result.getAccessRequest());
+			assertEquals("isAllowed mismatched! - " + test.name, test.result.getIsAllowed(), result.getIsAllowed());
+			assertEquals("isAudited mismatched! - " + test.name, test.result.getIsAudited(), result.getIsAudited());
+			assertEquals("policyId mismatched! - " + test.name, test.result.getPolicyId(), result.getPolicyId());
+		}
+	}
+
+	@Test
+	public void testAuditCache_anyAccess_hive() {
+		InputStream                       inStream  = this.getClass().getResourceAsStream("/policyengine/test_policyengine_hive.json");
+		PolicyEngineTestCase              testCase  = gsonBuilder.fromJson(new InputStreamReader(inStream), PolicyEngineTestCase.class);
+		RangerPolicyEngineImpl            engine    = new RangerPolicyEngineImpl();
+		Map<String, RangerPolicyResource> resources = new HashMap<String, RangerPolicyResource>();
+
+		resources.put("database", new RangerPolicyResource("audit_db"));
+		resources.put("table", new RangerPolicyResource("audit_tbl"));
+
+		RangerPolicyItem item   = new RangerPolicyItem(Arrays.asList(new RangerPolicyItemAccess("select")), Arrays.asList("user1"), null, null, Boolean.FALSE);
+		RangerPolicy     policy = new RangerPolicy(testCase.serviceName, "audit_tbl", 0, null, resources, Arrays.asList(item));
+
+		policy.setId(1000L);
+		policy.setVersion(1L);
+		policy.setIsEnabled(Boolean.TRUE);
+		policy.setIsAuditEnabled(Boolean.TRUE);
+
+		engine.setPolicies(testCase.serviceName, testCase.serviceDef, Collections.singletonList(policy));
+
+		// a table policy doesn't audit a specific access to its database, but audits any access to it
+		RangerAccessResult selectResult = engine.isAccessAllowed(createDatabaseRequest("audit_db", "select"), null);
+		RangerAccessResult anyResult    = engine.isAccessAllowed(createDatabaseRequest("audit_db", RangerPolicyEngine.ANY_ACCESS), null);
+
+		assertFalse(selectResult.getIsAudited());
+		assertTrue(anyResult.getIsAudited());
+
+		// and the other way round, from the cache
+		assertTrue(engine.isAccessAllowed(createDatabaseRequest("audit_db", RangerPolicyEngine.ANY_ACCESS), null).getIsAudited());
+		assertFalse(engine.isAccessAllowed(createDatabaseRequest("audit_db", "select"), null).getIsAudited());
+	}
+
+	@Test
+	public void testGetPolicies_unchangedPolicies_hive() {
+		InputStream            inStream = this.getClass().getResourceAsStream("/policyengine/test_policyengine_hive.json");
+		PolicyEngineTestCase   testCase = gsonBuilder.fromJson(new InputStreamReader(inStream), PolicyEngineTestCase.class);
+		RangerPolicyEngineImpl engine   = new RangerPolicyEngineImpl();
+		List<RangerPolicy>     first    = copyPolicies(testCase.policies);
+		List<RangerPolicy>     second   = copyPolicies(testCase.policies);
+
+		engine.setPolicies(testCase.serviceName, testCase.serviceDef, first);
+		engine.setPolicies(testCase.serviceName, testCase.serviceDef, second);
+
+		// the engine keeps the instances it has of unchanged policies, not the copies given last
+		List<RangerPolicy> policies = engine.getPolicies();
+
+		assertEquals(second.size(), policies.size());
+
+		for(int i = 0; i < policies.size(); i++) {
+			if(first.get(i).getIsEnabled()) {
+				assertSame(first.get(i), policies.get(i));
+			} else {
+				assertSame(second.get(i), policies.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void testIdMapsReplacedWhenMostlyUnused_hive() {
+		InputStream            inStream = this.getClass().getResourceAsStream("/policyengine/test_policyengine_hive.json");
+		PolicyEngineTestCase   testCase = gsonBuilder.fromJson(new InputStreamReader(inStream), PolicyEngineTestCase.class);
+		RangerPolicyEngineImpl engine   = new RangerPolicyEngineImpl();
+		List<String>           users    = new ArrayList<String>();
+
+		for(int i = 0; i < 3000; i++) {
+			users.add("bulk_user" + i);
+		}
+
+		RangerPolicy bulkPolicy = createTablePolicy(testCase.serviceName, 1000L, "bulk_tbl", users);
+		RangerPolicy userPolicy = createTablePolicy(testCase.serviceName, 1001L, "user_tbl", Arrays.asList("user1"));
+
+		engine.setPolicies(testCase.serviceName, testCase.serviceDef, Arrays.asList(bulkPolicy, userPolicy));
+
+		RangerIdMaps idMaps = engine.getPolicyRepository().getIdMaps();
+
+		assertEquals(3001, idMaps.getUserIdMap().size());
+
+		// a few unused ids are kept, with the evaluators that refer to them
+		users.subList(0, 100).clear();
+
+		RangerPolicy updatedBulkPolicy = createTablePolicy(testCase.serviceName, 1000L, "bulk_tbl", users);
+
+		updatedBulkPolicy.setVersion(2L);
+
+		engine.setPolicies(testCase.serviceName, testCase.serviceDef, Arrays.asList(updatedBulkPolicy, userPolicy));
+
+		assertSame(idMaps, engine.getPolicyRepository().getIdMaps());
+
+		// once most ids are unused, the maps are started afresh
+		engine.setPolicies(testCase.serviceName, testCase.serviceDef, Arrays.asList(userPolicy));
+
+		assertNotSame(idMaps, engine.getPolicyRepository().getIdMaps());
+		assertEquals(1, engine.getPolicyRepository().getIdMaps().getUserIdMap().size());
+		assertTrue(engine.isAccessAllowed(createTableRequest("default", "user_tbl", "user1"), null).getIsAllowed());
+		assertFalse(engine.isAccessAllowed(createTableRequest("default", "user_tbl", "bulk_user2000"), null).getIsAllowed());
+	}
+
+	private static RangerPolicy createTablePolicy(String serviceName, Long id, String table, List<String> users) {
+		Map<String, RangerPolicyResource> resources = new HashMap<String, RangerPolicyResource>();
+
+		resources.put("database", new RangerPolicyResource("default"));
+		resources.put("table", new RangerPolicyResource(table));
+
+		RangerPolicyItem item   = new RangerPolicyItem(Arrays.asList(new RangerPolicyItemAccess("select")), new ArrayList<String>(users), null, null, Boolean.FALSE);
+		RangerPolicy     policy = new RangerPolicy(serviceName, table, 0, null, resources, Arrays.asList(item));
+
+		policy.setId(id);
+		policy.setVersion(1L);
+		policy.setIsEnabled(Boolean.TRUE);
+
+		return policy;
+	}
+
+	private static RangerAccessRequest createTableRequest(String database, String table, String user) {
+		Map<String, String> elements = new HashMap<String, String>();
+
+		elements.put("database", database);
+		elements.put("table", table);
+
+		return new RangerAccessRequestImpl(new RangerAccessResourceImpl(elements), "select", user, Collections.<String>emptySet());
+	}
+
+	private List<RangerPolicy> copyPolicies(List<RangerPolicy> policies) {
+		List<RangerPolicy> ret = new ArrayList<RangerPolicy>();
+
+		for(RangerPolicy policy : policies) {
+			RangerPolicy copy = gsonBuilder.fromJson(gsonBuilder.toJson(policy), RangerPolicy.class);
+
+			copy.setVersion(1L);
+			ret.add(copy);
+		}
+
+		return ret;
+	}
+
+	private static RangerAccessRequest createDatabaseRequest(String database, String accessType) {
+		Map<String, String> elements = new HashMap<String, String>();
+
+		elements.put("database", database);
+
+		return new RangerAccessRequestImpl(new RangerAccessResourceImpl(elements), accessType, "user2", Collections.<String>emptySet());
+	}
+
+	@Test
+	public void testParallelInit_hive() {
+		InputStream          inStream = this.getClass().getResourceAsStream("/policyengine/test_policyengine_hive.json");
+		PolicyEngineTestCase testCase = gsonBuilder.fromJson(new InputStreamReader(inStream), PolicyEngineTestCase.class);
+		List<RangerPolicy>   policies = new ArrayList<RangerPolicy>();
+
+		// enough policies to be built in parallel
+		for(long id = 1; policies.size() < 1000; id++) {
+			RangerPolicy policy = gsonBuilder.fromJson(gsonBuilder.toJson(testCase.policies.get((int) (id % testCase.policies.size()))), RangerPolicy.class);
+
+			policy.setId(id);
+			policies.add(policy);
+		}
+
+		RangerConfiguration config = RangerConfiguration.getInstance();
+
+		config.set("ranger.policyengine.init.parallel.threshold", "0");
+
+		RangerPolicyRepository sequential = new RangerPolicyRepository(testCase.serviceName);
+
+		sequential.init(testCase.serviceDef, policies);
+
+		config.set("ranger.policyengine.init.parallel.threshold", "1");
+
+		RangerPolicyRepository parallel = new RangerPolicyRepository(testCase.serviceName);
+
+		parallel.init(testCase.serviceDef, policies);
+
+		config.unset("ranger.policyengine.init.parallel.threshold");
+
+		List<RangerPolicyEvaluatorFacade> expected = sequential.getPolicyEvaluators();
+		List<RangerPolicyEvaluatorFacade> actual   = parallel.getPolicyEvaluators();
+
+		assertEquals(expected.size(), actual.size());
+
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals("evaluation order mismatched! - " + i, expected.get(i).getPolicy().getId(), actual.get(i).getPolicy().getId());
+			assertEquals(i, actual.get(i).getEvalOrder());
+		}
+	}
+
+	@Test
+	public void testWarmup_hdfs() {
+		InputStream          inStream = this.getClass().getResourceAsStream("/policyengine/test_policyengine_hdfs.json");
+		PolicyEngineTestCase testCase = gsonBuilder.fromJson(new InputStreamReader(inStream), PolicyEngineTestCase.class);
+		RangerPolicyEngineImpl engine = new RangerPolicyEngineImpl();
+		RangerConfiguration    config = RangerConfiguration.getInstance();
+		String                 prefix = "ranger.plugin." + testCase.serviceName + ".policyengine.";
+
+		// sampling is on, with no reorder during the test
+		config.set(prefix + "evaluator.reorder.interval.ms", Long.toString(Long.MAX_VALUE / 2));
+
+		try {
+			engine.setWarmupRequestCount(100);
+			engine.setPolicies(testCase.serviceName, testCase.serviceDef, testCase.policies);
+
+			for(int i = 0; i < 100; i += testCase.tests.size()) {
+				for(TestData test : testCase.tests) {
+					engine.isAccessAllowed(test.request, null);
+				}
+			}
+
+			RangerPolicyRepository previous = engine.getPolicyRepository();
+
+			// new policies are evaluated against the recorded requests before replacing the current ones
+			engine.setPolicies(testCase.serviceName, testCase.serviceDef, testCase.policies);
+
+			RangerPolicyRepository warmed = engine.getPolicyRepository();
+
+			assertNotSame(previous, warmed);
+			assertEquals("warmup requests counted in evaluation statistics", 0, warmed.getSampledRequestCount());
+
+			// the decision cache of a new repository is empty until requests are evaluated
+			config.set(prefix + "decisioncache.size", "1000");
+
+			engine.setPolicies(testCase.serviceName, testCase.serviceDef, testCase.policies);
+
+			warmed = engine.getPolicyRepository();
+
+			assertTrue("decision cache not populated by warmup", warmed.getDecisionCache().size() > 0);
+		} finally {
+			config.unset(prefix + "decisioncache.size");
+			config.unset(prefix + "evaluator.reorder.interval.ms");
+		}
+
+		for(TestData test : testCase.tests) {
+			RangerAccessResult result = engine.isAccessAllowed(test.request, null);
+
+			assertEquals("isAllowed mismatched! - " + test.name, test.result.getIsAllowed(), result.getIsAllowed());
+			assertEquals("isAudited mismatched! - " + test.name, test.result.getIsAudited(), result.getIsAudited());
+			assertEquals("policyId mismatched! - " + test.name, test.result.getPolicyId(), result.getPolicyId());
+		}
+	}
+
 	private void runTestsFromResourceFiles(String[] resourceNames) {
 		for(String resourceName : resourceNames) {
 			InputStream       inStream = this.getClass().getResourceAsStream(resourceName);
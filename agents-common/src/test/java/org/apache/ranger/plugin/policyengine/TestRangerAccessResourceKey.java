@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.policyevaluator.RangerResourceAccessCache;
+import org.apache.ranger.plugin.policyevaluator.RangerResourceAccessCacheImpl;
+import org.junit.Test;
+
+
+public class TestRangerAccessResourceKey {
+	@Test
+	public void testEquals() {
+		RangerServiceDef serviceDef = createServiceDef();
+
+		RangerAccessResourceKey key1 = createResource("db1", "tbl1").getCacheKey(serviceDef);
+		RangerAccessResourceKey key2 = createResource("db1", "tbl1").getCacheKey(serviceDef);
+		RangerAccessResourceKey key3 = createResource("db1", null).getCacheKey(serviceDef);
+		RangerAccessResourceKey key4 = createResource("db1/tbl1", null).getCacheKey(serviceDef);
+
+		assertEquals(key1, key2);
+		assertEquals(key1.hashCode(), key2.hashCode());
+		assertFalse(key1.equals(key3));
+		assertFalse(key1.equals(key4)); // same string, different resources
+
+		assertEquals(createResource("db1", "tbl1").getAsString(serviceDef), key1.toString());
+	}
+
+	@Test
+	public void testMutableResource() {
+		RangerServiceDef        serviceDef = createServiceDef();
+		RangerMutableResource   resource   = createResource("db1", "tbl1");
+		RangerAccessResourceKey key        = resource.getCacheKey(serviceDef);
+
+		assertSame(key, resource.getCacheKey(serviceDef));
+
+		resource.setValue("table", "tbl2");
+
+		assertEquals(createResource("db1", "tbl2").getCacheKey(serviceDef), resource.getCacheKey(serviceDef));
+		assertFalse(key.equals(resource.getCacheKey(serviceDef)));
+
+		assertTrue(key.hasOnlyServiceDefKeys());
+
+		resource.setValue("column", "col1");
+
+		assertFalse(resource.getCacheKey(serviceDef).hasOnlyServiceDefKeys());
+	}
+
+	@Test
+	public void testNoKeyNotCached() {
+		RangerMutableResource     resource = createResource("db1", "tbl1");
+		RangerResourceAccessCache cache    = RangerResourceAccessCacheImpl.getInstance(null, new RangerPolicy());
+
+		assertNull(resource.getCacheKey(null));
+
+		cache.add(resource, RangerResourceAccessCache.CacheType.MATCHED_CACHE);
+
+		assertEquals(RangerResourceAccessCache.LookupResult.NOT_FOUND, cache.lookup(resource));
+	}
+
+	private static RangerServiceDef createServiceDef() {
+		RangerResourceDef database = new RangerResourceDef();
+		RangerResourceDef table    = new RangerResourceDef();
+
+		database.setName("database");
+		database.setLevel(1);
+		table.setName("table");
+		table.setLevel(2);
+
+		RangerServiceDef ret = new RangerServiceDef();
+
+		ret.setType("hive");
+		ret.setResources(Arrays.asList(database, table));
+
+		return ret;
+	}
+
+	private static RangerMutableResource createResource(String database, String table) {
+		Map<String, String> elements = new HashMap<String, String>();
+
+		elements.put("database", database);
+
+		if(table != null) {
+			elements.put("table", table);
+		}
+
+		return new RangerAccessResourceImpl(elements);
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.junit.Test;
+
+
+public class TestRangerDecisionCache {
+	@Test
+	public void testCachedDecision() {
+		RangerServiceDef    serviceDef = createServiceDef();
+		RangerDecisionCache cache      = new RangerDecisionCache(serviceDef, 100, 0);
+		Set<String>         groups     = new HashSet<String>(Arrays.asList("finance"));
+		RangerAccessRequest request    = new RangerAccessRequestImpl(createResource("db1", "tbl1"), "select", "user1", groups);
+
+		RangerDecisionCache.CacheKey key = cache.getKey(request);
+
+		assertNotNull(key);
+		assertFalse(cache.getDecision(key, new RangerAccessResult("hivedev", serviceDef, request)));
+
+		RangerAccessResult result = new RangerAccessResult("hivedev", serviceDef, request);
+
+		result.setIsAllowed(true);
+		result.setIsAudited(true);
+		result.setPolicyId(5L);
+
+		cache.putDecision(key, result);
+
+		groups.add("hr"); // caller changing the group set must not affect the cached entry
+
+		RangerAccessResult cachedResult = new RangerAccessResult("hivedev", serviceDef, request);
+		RangerAccessRequest sameRequest = new RangerAccessRequestImpl(createResource("db1", "tbl1"), "select", "user1", new HashSet<String>(Arrays.asList("finance")));
+
+		assertTrue(cache.getDecision(cache.getKey(sameRequest), cachedResult));
+		assertTrue(cachedResult.getIsAllowed());
+		assertTrue(cachedResult.getIsAudited());
+		assertEquals(5L, cachedResult.getPolicyId());
+
+		assertFalse(cache.getDecision(cache.getKey(request), new RangerAccessResult("hivedev", serviceDef, request)));
+
+		RangerAccessRequest otherResource = new RangerAccessRequestImpl(createResource("db1tbl1", null), "select", "user1", new HashSet<String>(Arrays.asList("finance")));
+
+		assertFalse(cache.getDecision(cache.getKey(otherResource), new RangerAccessResult("hivedev", serviceDef, otherResource)));
+	}
+
+	@Test
+	public void testUnknownResourceNotCached() {
+		RangerServiceDef     serviceDef = createServiceDef();
+		RangerDecisionCache  cache      = new RangerDecisionCache(serviceDef, 100, 0);
+		Map<String, String>  elements   = new HashMap<String, String>();
+
+		elements.put("database", "db1");
+		elements.put("udf", "fn1");
+
+		RangerAccessRequest request = new RangerAccessRequestImpl(new RangerAccessResourceImpl(elements), "select", "user1", null);
+
+		assertNull(cache.getKey(request));
+	}
+
+	@Test
+	public void testExpiredDecision() throws Exception {
+		RangerServiceDef    serviceDef = createServiceDef();
+		RangerDecisionCache cache      = new RangerDecisionCache(serviceDef, 100, 1);
+		RangerAccessRequest request    = new RangerAccessRequestImpl(createResource("db1", null), "", "user1", null);
+
+		RangerDecisionCache.CacheKey key = cache.getKey(request);
+
+		cache.putDecision(key, new RangerAccessResult("hivedev", serviceDef, request));
+
+		Thread.sleep(10);
+
+		assertFalse(cache.getDecision(key, new RangerAccessResult("hivedev", serviceDef, request)));
+	}
+
+	private static RangerServiceDef createServiceDef() {
+		RangerResourceDef database = new RangerResourceDef();
+		RangerResourceDef table    = new RangerResourceDef();
+
+		database.setName("database");
+		database.setLevel(1);
+		table.setName("table");
+		table.setLevel(2);
+
+		RangerServiceDef ret = new RangerServiceDef();
+
+		ret.setType("hive");
+		ret.setResources(Arrays.asList(database, table));
+
+		return ret;
+	}
+
+	private static RangerAccessResource createResource(String database, String table) {
+		Map<String, String> elements = new HashMap<String, String>();
+
+		elements.put("database", database);
+
+		if(table != null) {
+			elements.put("table", table);
+		}
+
+		return new RangerAccessResourceImpl(elements);
+	}
+}
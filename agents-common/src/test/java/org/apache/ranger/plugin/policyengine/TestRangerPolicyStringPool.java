@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.junit.Test;
+
+
+public class TestRangerPolicyStringPool {
+	@Test
+	public void testCompact() {
+		RangerPolicy           policy1 = createPolicy(1);
+		RangerPolicy           policy2 = createPolicy(2);
+		RangerPolicyStringPool pool    = new RangerPolicyStringPool();
+
+		pool.compact(policy1);
+		pool.compact(policy2);
+
+		RangerPolicyItem item1 = policy1.getPolicyItems().get(0);
+		RangerPolicyItem item2 = policy2.getPolicyItems().get(0);
+
+		assertSame(item1.getUsers().get(0), item2.getUsers().get(0));
+		assertSame(item1.getGroups().get(0), item2.getGroups().get(0));
+		assertSame(item1.getAccesses().get(0).getType(), item2.getAccesses().get(0).getType());
+		assertSame(policy1.getResources().get("database").getValues().get(0), policy2.getResources().get("database").getValues().get(0));
+		assertNotSame(policy1.getResources().get("table").getValues().get(0), policy2.getResources().get("table").getValues().get(0));
+		assertEquals("tbl2", policy2.getResources().get("table").getValues().get(0));
+
+		assertEquals(16, pool.getStringCount());
+		assertEquals(9, pool.getDistinctStringCount());
+		assertTrue(pool.getReleasedBytes() > 0);
+		assertTrue(pool.getStringBytes() > pool.getReleasedBytes());
+	}
+
+	@Test
+	public void testAdd() {
+		RangerPolicy           policy1 = createPolicy(1);
+		RangerPolicy           policy2 = createPolicy(2);
+		RangerPolicyStringPool pool    = new RangerPolicyStringPool();
+
+		// strings of added policies are shared with policies compacted later, but not replaced
+		pool.add(policy1);
+		pool.add(policy2);
+
+		assertNotSame(policy1.getPolicyItems().get(0).getUsers().get(0), policy2.getPolicyItems().get(0).getUsers().get(0));
+		assertEquals(0, pool.getReleasedBytes());
+
+		RangerPolicy policy3 = createPolicy(3);
+
+		pool.compact(policy3);
+
+		assertSame(policy1.getPolicyItems().get(0).getUsers().get(0), policy3.getPolicyItems().get(0).getUsers().get(0));
+		assertTrue(pool.getReleasedBytes() > 0);
+	}
+
+	private RangerPolicy createPolicy(long id) {
+		Map<String, RangerPolicyResource> resources = new HashMap<String, RangerPolicyResource>();
+
+		// new String() for each, as when read from JSON
+		resources.put(new String("database"), new RangerPolicyResource(new String("finance")));
+		resources.put(new String("table"), new RangerPolicyResource(new String("tbl" + id)));
+
+		RangerPolicyItem item   = new RangerPolicyItem(Arrays.asList(new RangerPolicyItemAccess(new String("select"))), Arrays.asList(new String("user1")), Arrays.asList(new String("analysts")), null, Boolean.FALSE);
+		RangerPolicy     policy = new RangerPolicy(new String("hivedev"), "policy-" + id, 0, null, resources, Arrays.asList(item));
+
+		policy.setId(id);
+
+		return policy;
+	}
+}
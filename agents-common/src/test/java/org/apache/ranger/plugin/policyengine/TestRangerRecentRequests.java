@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.junit.Test;
+
+
+public class TestRangerRecentRequests {
+	@Test
+	public void testMostRecentDistinct() {
+		RangerServiceDef     serviceDef     = createServiceDef();
+		RangerRecentRequests recentRequests = new RangerRecentRequests(3);
+
+		assertTrue(recentRequests.getRequests(serviceDef).isEmpty());
+
+		RangerAccessRequest r1 = createRequest("/a", "user1");
+		RangerAccessRequest r2 = createRequest("/b", "user1");
+		RangerAccessRequest r3 = createRequest("/a", "user2");
+
+		recentRequests.add(r1);
+		recentRequests.add(r2);
+		recentRequests.add(r3);
+		recentRequests.add(createRequest("/b", "user1")); // repeats r2, replaces r1
+
+		List<RangerAccessRequest> requests = recentRequests.getRequests(serviceDef);
+
+		assertEquals(2, requests.size());
+		assertEquals("/b", requests.get(0).getResource().getValue("path"));
+		assertSame(r3, requests.get(1));
+	}
+
+	private RangerAccessRequest createRequest(String path, String user) {
+		RangerAccessResourceImpl resource = new RangerAccessResourceImpl();
+
+		resource.setValue("path", path);
+
+		return new RangerAccessRequestImpl(resource, "read", user, new HashSet<String>(Arrays.asList("users")));
+	}
+
+	private RangerServiceDef createServiceDef() {
+		RangerResourceDef resourceDef = new RangerResourceDef();
+
+		resourceDef.setName("path");
+		resourceDef.setLevel(1);
+
+		RangerServiceDef ret = new RangerServiceDef();
+
+		ret.setType("hdfs");
+		ret.setResources(Arrays.asList(resourceDef));
+
+		return ret;
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyengine;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerAccessTypeDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.resourcematcher.RangerPathResourceMatcher;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+public class TestRangerResourceTrie {
+	static RangerResourceDef                 resourceDef = null;
+	static RangerServiceDef                  serviceDef  = null;
+	static List<RangerPolicyEvaluatorFacade> evaluators  = null;
+	static RangerResourceTrie                trie        = null;
+
+	static final String[] TEST_PATHS = { "/", "/finance", "/finance/restricted", "/finance/restricted/sales.db", "/Finance/Restricted/hr",
+	                                     "/public", "/public/", "/public/blogs.db", "/tmp", "/tmp/x", "/user/u1", "//finance/restricted",
+	                                     "/finance//restricted/x", "finance/restricted" };
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		Map<String, String> matcherOptions = new HashMap<String, String>();
+
+		matcherOptions.put("wildCard", "true");
+		matcherOptions.put("ignoreCase", "true");
+
+		resourceDef = new RangerResourceDef();
+
+		resourceDef.setName("path");
+		resourceDef.setLevel(1);
+		resourceDef.setMatcher(RangerPathResourceMatcher.class.getName());
+		resourceDef.setMatcherOptions(matcherOptions);
+
+		serviceDef = new RangerServiceDef();
+
+		serviceDef.setType("hdfs");
+		serviceDef.setResources(Arrays.asList(resourceDef));
+		serviceDef.setAccessTypes(Arrays.asList(new RangerAccessTypeDef(1L, "read", "read", null, null)));
+
+		evaluators = new ArrayList<RangerPolicyEvaluatorFacade>();
+
+		evaluators.add(createEvaluator(1L, new RangerPolicyResource("/finance/restricted", false, true)));
+		evaluators.add(createEvaluator(2L, new RangerPolicyResource("/public/*", false, true)));
+		evaluators.add(createEvaluator(3L, new RangerPolicyResource("/tmp", false, false)));
+		evaluators.add(createEvaluator(4L, new RangerPolicyResource("/tmp?", false, false)));
+		evaluators.add(createEvaluator(5L, new RangerPolicyResource("*", false, false)));
+		evaluators.add(createEvaluator(6L, new RangerPolicyResource("/user/*", true, false)));
+		evaluators.add(createEvaluator(7L, new RangerPolicyResource(Arrays.asList("/FINANCE", "/finance*"), false, false)));
+
+		Collections.sort(evaluators);
+
+		for(int i = 0; i < evaluators.size(); i++) {
+			evaluators.get(i).setEvalOrder(i);
+		}
+
+		trie = new RangerResourceTrie(resourceDef, evaluators);
+	}
+
+	@Test
+	public void testCandidatesIncludeAllMatches() {
+		for(String path : TEST_PATHS) {
+			RangerAccessResource              resource   = createResource(path);
+			List<RangerPolicyEvaluatorFacade> candidates = trie.getEvaluatorsForResource(path);
+
+			if(candidates == null) {
+				continue;
+			}
+
+			for(RangerPolicyEvaluatorFacade evaluator : evaluators) {
+				if(evaluator.isMatch(resource)) {
+					assertTrue("matching policy " + evaluator.getPolicy().getId() + " missing from candidates for " + path, candidates.contains(evaluator));
+				}
+			}
+
+			for(int i = 1; i < candidates.size(); i++) {
+				assertTrue("candidates not in evaluation order for " + path, candidates.get(i - 1).getEvalOrder() < candidates.get(i).getEvalOrder());
+			}
+		}
+	}
+
+	@Test
+	public void testCandidatesAreNarrowed() {
+		assertEquals(Arrays.asList(5L, 6L), getPolicyIds(trie.getEvaluatorsForResource("/operations/visitors.db")));
+		assertEquals(Arrays.asList(1L, 5L, 6L, 7L), getPolicyIds(trie.getEvaluatorsForResource("/finance/restricted/sales.db")));
+		assertEquals(Arrays.asList(3L, 4L, 5L, 6L), getPolicyIds(trie.getEvaluatorsForResource("/tmp")));
+		assertNull(trie.getEvaluatorsForResource("/finance//restricted"));
+	}
+
+	@Test
+	public void testIgnoreCaseInTurkishLocale() {
+		Locale defaultLocale = Locale.getDefault();
+
+		try {
+			Locale.setDefault(new Locale("tr"));
+
+			RangerPolicyEvaluatorFacade evaluator = createEvaluator(1L, new RangerPolicyResource("/FINANCE/RESTRICTED", false, true));
+
+			evaluator.setEvalOrder(0);
+
+			RangerResourceTrie trTrie = new RangerResourceTrie(resourceDef, Arrays.asList(evaluator));
+
+			for(String path : new String[] { "/finance/restricted", "/Finance/Restricted/hr", "/FINANCE/RESTRICTED/HR" }) {
+				assertTrue("policy does not match " + path, evaluator.isMatch(createResource(path)));
+				assertEquals(Arrays.asList(1L), getPolicyIds(trTrie.getEvaluatorsForResource(path)));
+			}
+		} finally {
+			Locale.setDefault(defaultLocale);
+		}
+	}
+
+	private static List<Long> getPolicyIds(List<RangerPolicyEvaluatorFacade> evaluators) {
+		List<Long> ret = new ArrayList<Long>();
+
+		for(RangerPolicyEvaluatorFacade evaluator : evaluators) {
+			ret.add(evaluator.getPolicy().getId());
+		}
+
+		Collections.sort(ret);
+
+		return ret;
+	}
+
+	private static RangerAccessResource createResource(String path) {
+		Map<String, String> elements = new HashMap<String, String>();
+
+		elements.put("path", path);
+
+		return new RangerAccessResourceImpl(elements);
+	}
+
+	private static RangerPolicyEvaluatorFacade createEvaluator(Long id, RangerPolicyResource policyResource) {
+		Map<String, RangerPolicyResource> resources = new HashMap<String, RangerPolicyResource>();
+
+		resources.put("path", policyResource);
+
+		List<RangerPolicyItemAccess> accesses = new ArrayList<RangerPolicyItemAccess>(Arrays.asList(new RangerPolicyItemAccess("read", true)));
+		RangerPolicyItem             item     = new RangerPolicyItem(accesses, null, Arrays.asList("public"), null, false);
+		RangerPolicy                 policy   = new RangerPolicy("hdfsdev", "policy-" + id, 0, null, resources, Arrays.asList(item));
+
+		policy.setId(id);
+
+		RangerPolicyEvaluatorFacade ret = new RangerPolicyEvaluatorFacade();
+
+		ret.init(policy, serviceDef);
+
+		return ret;
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyevaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ranger.plugin.conditionevaluator.RangerConditionEvaluator;
+import org.apache.ranger.plugin.conditionevaluator.RangerContextIndependentConditionEvaluator;
+import org.apache.ranger.plugin.conditionevaluator.RangerIpMatcher;
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerAccessTypeDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerPolicyConditionDef;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequest;
+import org.apache.ranger.plugin.policyengine.RangerAccessRequestImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResourceImpl;
+import org.apache.ranger.plugin.policyengine.RangerAccessResult;
+import org.junit.Test;
+
+
+public class TestRangerConditionResults {
+	@Test
+	public void testConditionEvaluatedOncePerRequest() {
+		RangerServiceDef             serviceDef = createServiceDef();
+		RangerDefaultPolicyEvaluator evaluator  = new RangerDefaultPolicyEvaluator();
+
+		evaluator.init(createPolicy(1L, "user1", "user2"), serviceDef);
+
+		assertFalse(evaluator.isContextDependent());
+
+		RangerAccessRequest request = createRequest("user1");
+
+		// both items match the user; the condition, shared by the items, doesn't match
+		CountingMatcher.count.set(0);
+		evaluator.evaluate(request, new RangerAccessResult("dev", serviceDef, request), null, null);
+		assertEquals(2, CountingMatcher.count.get());
+
+		RangerConditionResults conditionResults = new RangerConditionResults();
+
+		CountingMatcher.count.set(0);
+		evaluator.evaluate(request, new RangerAccessResult("dev", serviceDef, request), null, conditionResults);
+		assertEquals(1, CountingMatcher.count.get());
+		assertEquals(1, conditionResults.size());
+
+		// another policy with the same condition uses the result
+		RangerDefaultPolicyEvaluator other  = new RangerDefaultPolicyEvaluator();
+		RangerAccessResult           result = new RangerAccessResult("dev", serviceDef, request);
+
+		other.init(createPolicy(2L, "user1"), serviceDef);
+		other.evaluate(request, result, null, conditionResults);
+
+		assertEquals(1, CountingMatcher.count.get());
+		assertFalse(result.getIsAllowed());
+	}
+
+	@Test
+	public void testContextDependent() {
+		RangerServiceDef serviceDef = createServiceDef();
+
+		serviceDef.getPolicyConditions().get(0).setEvaluator(RangerIpMatcher.class.getName());
+
+		RangerDefaultPolicyEvaluator evaluator = new RangerDefaultPolicyEvaluator();
+
+		evaluator.init(createPolicy(1L, "user1"), serviceDef);
+
+		assertTrue(evaluator.isContextDependent());
+	}
+
+	@Test
+	public void testConditionsOrderedByCost() {
+		RangerServiceDef serviceDef = createServiceDef();
+
+		serviceDef.setPolicyConditions(Arrays.asList(new RangerPolicyConditionDef(1L, "expensive", ExpensiveMatcher.class.getName(), null),
+		                                             new RangerPolicyConditionDef(2L, "cheap", CheapMatcher.class.getName(), null)));
+
+		RangerPolicy     policy = createPolicy(1L, "user1");
+		RangerPolicyItem item   = policy.getPolicyItems().get(0);
+
+		item.setConditions(Arrays.asList(new RangerPolicyItemCondition("expensive", Arrays.asList("x")),
+		                                 new RangerPolicyItemCondition("cheap", Arrays.asList("y"))));
+		policy.getPolicyItems().retainAll(Arrays.asList(item));
+
+		RangerDefaultPolicyEvaluator evaluator = new RangerDefaultPolicyEvaluator();
+
+		evaluator.init(policy, serviceDef);
+
+		RangerAccessRequest request = createRequest("user1");
+
+		// costs not known yet: in policy order
+		OrderRecordingMatcher.evaluated.clear();
+		evaluator.evaluate(request, new RangerAccessResult("dev", serviceDef, request), null, null);
+		assertEquals(Arrays.asList("expensive", "cheap"), OrderRecordingMatcher.evaluated);
+
+		RangerConditionCosts.record(ExpensiveMatcher.class, 1000L * 1000 * 1000);
+		RangerConditionCosts.record(CheapMatcher.class, 1);
+
+		// the same evaluator, initialized before the costs were known, evaluates the cheap condition first
+		OrderRecordingMatcher.evaluated.clear();
+		evaluator.evaluate(request, new RangerAccessResult("dev", serviceDef, request), null, null);
+		assertEquals(Arrays.asList("cheap", "expensive"), OrderRecordingMatcher.evaluated);
+	}
+
+	public static class OrderRecordingMatcher implements RangerConditionEvaluator {
+		static final List<String> evaluated = Collections.synchronizedList(new ArrayList<String>());
+
+		private String name;
+
+		@Override
+		public void init(RangerPolicyConditionDef conditionDef, RangerPolicyItemCondition condition) {
+			name = conditionDef.getName();
+		}
+
+		@Override
+		public boolean isMatched(RangerAccessRequest request) {
+			evaluated.add(name);
+
+			return true;
+		}
+	}
+
+	public static class ExpensiveMatcher extends OrderRecordingMatcher {
+	}
+
+	public static class CheapMatcher extends OrderRecordingMatcher {
+	}
+
+	public static class CountingMatcher implements RangerContextIndependentConditionEvaluator {
+		static final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public void init(RangerPolicyConditionDef conditionDef, RangerPolicyItemCondition condition) {
+		}
+
+		@Override
+		public boolean isMatched(RangerAccessRequest request) {
+			count.incrementAndGet();
+
+			return false;
+		}
+
+		@Override
+		public boolean isContextIndependent() {
+			return true;
+		}
+	}
+
+	private static RangerServiceDef createServiceDef() {
+		RangerResourceDef        database  = new RangerResourceDef();
+		RangerAccessTypeDef      select    = new RangerAccessTypeDef();
+		RangerPolicyConditionDef condition = new RangerPolicyConditionDef(1L, "env", CountingMatcher.class.getName(), null);
+
+		database.setName("database");
+		database.setLevel(1);
+		select.setName("select");
+
+		RangerServiceDef ret = new RangerServiceDef();
+
+		ret.setType("hive");
+		ret.setResources(Arrays.asList(database));
+		ret.setAccessTypes(Arrays.asList(select));
+		ret.setPolicyConditions(Arrays.asList(condition));
+
+		return ret;
+	}
+
+	private static RangerPolicy createPolicy(Long id, String... users) {
+		Map<String, RangerPolicyResource> resources = new HashMap<String, RangerPolicyResource>();
+
+		resources.put("database", new RangerPolicyResource("db1"));
+
+		RangerPolicy policy = new RangerPolicy("dev", "policy-" + id, 0, null, resources, null);
+
+		for(String user : users) {
+			RangerPolicyItemCondition condition = new RangerPolicyItemCondition("env", Arrays.asList("prod"));
+			RangerPolicyItem          item      = new RangerPolicyItem(Arrays.asList(new RangerPolicyItemAccess("select")), Arrays.asList(user, "user1"), null, Arrays.asList(condition), Boolean.FALSE);
+
+			policy.getPolicyItems().add(item);
+		}
+
+		policy.setId(id);
+
+		return policy;
+	}
+
+	private static RangerAccessRequest createRequest(String user) {
+		Map<String, String> elements = new HashMap<String, String>();
+
+		elements.put("database", "db1");
+
+		return new RangerAccessRequestImpl(new RangerAccessResourceImpl(elements), "select", user, Collections.<String>emptySet());
+	}
+}
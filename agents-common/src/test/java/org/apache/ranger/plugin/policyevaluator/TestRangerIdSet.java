@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.policyevaluator;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+
+public class TestRangerIdSet {
+	@Test
+	public void testOf() {
+		RangerIdSet ids = RangerIdSet.of(new int[] { 7, 3, RangerNameIdMap.UNKNOWN_ID, 3, 1000000, 0, 42 }, 6);
+
+		assertEquals(4, ids.size());
+		assertEquals("[0, 3, 7, 1000000]", ids.toString());
+		assertTrue(ids.contains(1000000));
+		assertFalse(ids.contains(42)); // beyond count
+		assertFalse(ids.contains(RangerNameIdMap.UNKNOWN_ID));
+
+		assertSame(RangerIdSet.EMPTY, RangerIdSet.of(new int[] { RangerNameIdMap.UNKNOWN_ID }, 1));
+	}
+
+	@Test
+	public void testIntersects() {
+		RangerIdSet small = RangerIdSet.of(new int[] { 5, 90 }, 2);
+		RangerIdSet close = RangerIdSet.of(new int[] { 1, 2, 90 }, 3);
+		RangerIdSet large = RangerIdSet.of(new int[] { 0, 1, 2, 3, 4, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 90 }, 17);
+		RangerIdSet other = RangerIdSet.of(new int[] { 6, 7 }, 2);
+
+		assertTrue(small.intersects(close));  // merged
+		assertTrue(close.intersects(small));
+		assertTrue(small.intersects(large));  // searched
+		assertTrue(large.intersects(small));
+		assertFalse(small.intersects(other));
+		assertFalse(small.intersects(RangerIdSet.EMPTY));
+		assertFalse(RangerIdSet.EMPTY.intersects(large));
+		assertFalse(small.intersects(null));
+	}
+
+	@Test
+	public void testNameIdMap() {
+		RangerNameIdMap idMap = new RangerNameIdMap();
+		RangerIdSet     added = idMap.getOrAddIds(Arrays.asList("user1", "user2", null, "user1"));
+
+		assertEquals(2, added.size());
+		assertEquals(2, idMap.size());
+
+		RangerIdSet found = idMap.getIds(Arrays.asList("user2", "user3"));
+
+		assertEquals(1, found.size());
+		assertTrue(found.contains(idMap.getId("user2")));
+		assertTrue(found.intersects(added));
+		assertEquals(2, idMap.size()); // lookups don't add ids
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.resourcematcher;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef.RangerResourceDef;
+import org.junit.Test;
+
+
+public class TestRangerPathResourceMatcher {
+	static final String[] POLICY_VALUES = { "/", "*", "/*", "/data", "/data/", "/data/*", "/data*", "/Data/Warehouse", "*/warehouse", "/data/*/sales",
+	                                        "/data/?", "/d?ta", "/data/*.db", "*warehouse*", "data", "/data/warehouse/sales.db" };
+	static final String[] PATHS         = { "", "/", "//", "/data", "/data/", "/datax", "/data/warehouse", "/DATA/Warehouse/x", "/data//warehouse/",
+	                                        "//data/warehouse", "/data/x/sales/q1", "/data/a", "/dbta/x", "/data/sales.db/t1", "data/x", "/a/b/c/d/e/f/g/h/i/j/k/l/m/n/o/p" };
+
+	@Test
+	public void testRecursiveMatch() {
+		for(boolean ignoreCase : new boolean[] { true, false }) {
+			for(String policyValue : POLICY_VALUES) {
+				RangerPathResourceMatcher matcher = createMatcher(policyValue, ignoreCase);
+
+				for(String path : PATHS) {
+					String pattern = ignoreCase ? policyValue.toLowerCase() : policyValue;
+					String value   = ignoreCase ? path.toLowerCase() : path;
+
+					assertEquals(policyValue + "(ignoreCase=" + ignoreCase + ") on " + path, isRecursiveWildCardMatch(value, pattern, '/'), matcher.isMatch(path));
+				}
+			}
+		}
+	}
+
+	private static RangerPathResourceMatcher createMatcher(String policyValue, boolean ignoreCase) {
+		Map<String, String> matcherOptions = new HashMap<String, String>();
+
+		matcherOptions.put(RangerAbstractResourceMatcher.OPTION_IGNORE_CASE, Boolean.toString(ignoreCase));
+
+		RangerResourceDef resourceDef = new RangerResourceDef();
+
+		resourceDef.setName("path");
+		resourceDef.setMatcherOptions(matcherOptions);
+
+		RangerPathResourceMatcher ret = new RangerPathResourceMatcher();
+
+		ret.init(resourceDef, new RangerPolicyResource(policyValue, false, true));
+
+		return ret;
+	}
+
+	// matching of recursive policies as done before compiled matchers; used as the reference
+	private static boolean isRecursiveWildCardMatch(String pathToCheck, String wildcardPath, char pathSeparatorChar) {
+		boolean ret = false;
+
+		if (! StringUtils.isEmpty(pathToCheck)) {
+			String[] pathElements = StringUtils.split(pathToCheck, pathSeparatorChar);
+
+			if(pathElements.length > 0) {
+				StringBuilder sb = new StringBuilder();
+
+				if(pathToCheck.charAt(0) == pathSeparatorChar) {
+					sb.append(pathSeparatorChar);
+				}
+
+				for(String p : pathElements) {
+					sb.append(p);
+
+					ret = FilenameUtils.wildcardMatch(sb.toString(), wildcardPath) ;
+
+					if (ret) {
+						break;
+					}
+
+					sb.append(pathSeparatorChar) ;
+				}
+			} else {
+				ret = FilenameUtils.wildcardMatch(pathToCheck, wildcardPath) ;
+			}
+		}
+
+		return ret;
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.resourcematcher;
+
+import static org.junit.Assert.*;
+
+import java.util.Locale;
+
+import org.apache.commons.io.FilenameUtils;
+import org.junit.Test;
+
+
+public class TestRangerWildcardMatcher {
+	static final String[] PATTERNS = { "*", "**", "abc", "abc*", "*abc", "*abc*", "a*c", "a?c", "?", "*?", "a*b*c", "*a*a*", "ab?*", "*.db", "/tmp/*", "a*?c", "*?*", "a**?", "?*?", "" };
+	static final String[] VALUES   = { "", "a", "abc", "ABC", "abcabc", "xabcx", "ac", "abbc", "aac", "aaa", "ab", "abc.db", ".db", "/tmp/", "/tmp/x/y", "/TMP/x" };
+
+	@Test
+	public void testMatchesFilenameUtils() {
+		for(String pattern : PATTERNS) {
+			RangerWildcardMatcher matcher           = RangerWildcardMatcher.compile(pattern, true, false);
+			RangerWildcardMatcher ignoreCaseMatcher = RangerWildcardMatcher.compile(pattern, true, true);
+
+			for(String value : VALUES) {
+				assertEquals(matcher + " on " + value, FilenameUtils.wildcardMatch(value, pattern), matcher.isMatch(value));
+				assertEquals(ignoreCaseMatcher + " on " + value, FilenameUtils.wildcardMatch(value.toLowerCase(), pattern.toLowerCase()), ignoreCaseMatcher.isMatch(value));
+			}
+		}
+	}
+
+	@Test
+	public void testSpecializedMatchers() {
+		assertTrue(RangerWildcardMatcher.compile("abc", true, false) instanceof RangerWildcardMatcher.ExactMatcher);
+		assertTrue(RangerWildcardMatcher.compile("abc*", true, false) instanceof RangerWildcardMatcher.PrefixMatcher);
+		assertTrue(RangerWildcardMatcher.compile("*abc", true, false) instanceof RangerWildcardMatcher.SuffixMatcher);
+		assertTrue(RangerWildcardMatcher.compile("*abc*", true, false) instanceof RangerWildcardMatcher.ContainsMatcher);
+		assertTrue(RangerWildcardMatcher.compile("***", true, false) instanceof RangerWildcardMatcher.AnyMatcher);
+		assertTrue(RangerWildcardMatcher.compile("a*c", true, false) instanceof RangerWildcardMatcher.GlobMatcher);
+		assertTrue(RangerWildcardMatcher.compile("a*c", false, false) instanceof RangerWildcardMatcher.ExactMatcher);
+	}
+
+	@Test
+	public void testLiteralAndRegionMatch() {
+		RangerWildcardMatcher literal = RangerWildcardMatcher.compile("a*c", false, true);
+
+		assertTrue(literal.isMatch("A*C"));
+		assertFalse(literal.isMatch("abc"));
+
+		RangerWildcardMatcher glob = RangerWildcardMatcher.compile("/finance/*/sales", true, false);
+
+		assertTrue(glob.isMatch("/finance/2015/sales/q1.csv", "/finance/2015/sales".length()));
+		assertFalse(glob.isMatch("/finance/2015/sales/q1.csv"));
+	}
+
+	@Test
+	public void testIgnoreCaseInTurkishLocale() {
+		Locale defaultLocale = Locale.getDefault();
+
+		try {
+			// in Turkish, "I".toLowerCase() is the dotless i
+			Locale.setDefault(new Locale("tr"));
+
+			String[] patterns = { "ADMIN", "ADM*", "*MIN", "*DMI*", "A?MIN", "A*I?" };
+
+			for(String pattern : patterns) {
+				RangerWildcardMatcher matcher = RangerWildcardMatcher.compile(pattern, true, true);
+
+				assertTrue(matcher + " on ADMIN", matcher.isMatch("ADMIN"));
+				assertTrue(matcher + " on admin", matcher.isMatch("admin"));
+				assertTrue(matcher + " on " + pattern, matcher.isMatch(pattern));
+				assertFalse(matcher + " on user", matcher.isMatch("user"));
+			}
+
+			assertTrue(RangerWildcardMatcher.compile("adm\u0130n", false, true).isMatch("ADMIN")); // dotted capital I; keeps the length of the pattern
+			assertTrue(RangerWildcardMatcher.compile("ADMIN", false, true).isMatch("adm\u0131n"));  // dotless i, as FilenameUtils with IOCase.INSENSITIVE
+		} finally {
+			Locale.setDefault(defaultLocale);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.service;
+
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+
+import org.apache.ranger.admin.client.RangerAdminClient;
+import org.apache.ranger.authorization.hadoop.config.RangerConfiguration;
+import org.apache.ranger.plugin.audit.RangerAuditHandler;
+import org.apache.ranger.plugin.policyengine.RangerAccessResult;
+import org.apache.ranger.plugin.util.GrantRevokeRequest;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+public class TestRangerPolicyEngineRegistry {
+	private static final String SERVICE_TYPE = "registrytest";
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		RangerConfiguration.getInstance().set("ranger.plugin." + SERVICE_TYPE + ".service.name", "registrytest_svc");
+		RangerConfiguration.getInstance().set("ranger.plugin." + SERVICE_TYPE + ".policy.source.impl", NoPoliciesAdminClient.class.getName());
+	}
+
+	@Test
+	public void testSharedEngine() {
+		RangerPolicyEngineRegistry registry = RangerPolicyEngineRegistry.getInstance();
+		RangerBasePlugin           plugin1  = new RangerBasePlugin(SERVICE_TYPE, "app1");
+		RangerBasePlugin           plugin2  = new RangerBasePlugin(SERVICE_TYPE, "app2");
+
+		plugin1.init();
+		plugin2.init();
+
+		assertEquals(2, registry.getRefCount(SERVICE_TYPE, "registrytest_svc"));
+		assertSame(plugin1.getPolicyEngine(), plugin2.getPolicyEngine());
+
+		// audit handlers remain of each plugin instance
+		plugin1.setDefaultAuditHandler(new NoOpAuditHandler());
+
+		assertNull(plugin2.getDefaultAuditHandler());
+
+		plugin1.cleanup();
+
+		assertEquals(1, registry.getRefCount(SERVICE_TYPE, "registrytest_svc"));
+		assertNotNull(plugin2.getPolicyEngine());
+
+		plugin1.cleanup(); // repeated cleanup doesn't release again
+
+		assertEquals(1, registry.getRefCount(SERVICE_TYPE, "registrytest_svc"));
+
+		plugin2.cleanup();
+
+		assertEquals(0, registry.getRefCount(SERVICE_TYPE, "registrytest_svc"));
+	}
+
+	@Test
+	public void testUnsharedEngine() {
+		RangerConfiguration.getInstance().set("ranger.plugin." + SERVICE_TYPE + ".policyengine.shared", "false");
+
+		try {
+			RangerBasePlugin plugin1 = new RangerBasePlugin(SERVICE_TYPE, "app1");
+			RangerBasePlugin plugin2 = new RangerBasePlugin(SERVICE_TYPE, "app2");
+
+			plugin1.init();
+			plugin2.init();
+
+			assertEquals(0, RangerPolicyEngineRegistry.getInstance().getRefCount(SERVICE_TYPE, "registrytest_svc"));
+			assertNotSame(plugin1.getPolicyEngine(), plugin2.getPolicyEngine());
+
+			plugin1.cleanup();
+			plugin2.cleanup();
+		} finally {
+			RangerConfiguration.getInstance().set("ranger.plugin." + SERVICE_TYPE + ".policyengine.shared", "true");
+		}
+	}
+
+	static class NoOpAuditHandler implements RangerAuditHandler {
+		@Override
+		public void logAudit(RangerAccessResult result) {
+		}
+
+		@Override
+		public void logAudit(Collection<RangerAccessResult> results) {
+		}
+	}
+
+	public static class NoPoliciesAdminClient implements RangerAdminClient {
+		@Override
+		public void init(String serviceName, String appId, String configPropertyPrefix) {
+		}
+
+		@Override
+		public ServicePolicies getServicePoliciesIfUpdated(long lastKnownVersion) throws Exception {
+			return null;
+		}
+
+		@Override
+		public void grantAccess(GrantRevokeRequest request) throws Exception {
+		}
+
+		@Override
+		public void revokeAccess(GrantRevokeRequest request) throws Exception {
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TestPolicyCacheFile {
+	private File dir  = null;
+	private File file = null;
+
+	@Before
+	public void setup() throws Exception {
+		dir  = Files.createTempDirectory("policycache").toFile();
+		file = new File(dir, "hive_hivedev.json");
+	}
+
+	@After
+	public void cleanup() {
+		for(File f : dir.listFiles()) {
+			f.delete();
+		}
+
+		dir.delete();
+	}
+
+	@Test
+	public void testWriteRead() throws Exception {
+		PolicyCacheFile.write(file, content("{\"policyVersion\":1}"));
+
+		assertEquals("{\"policyVersion\":1}", read(file));
+
+		PolicyCacheFile.write(file, content("{\"policyVersion\":2}"));
+
+		assertEquals("{\"policyVersion\":2}", read(file));
+		assertEquals(1, dir.listFiles().length);
+	}
+
+	@Test
+	public void testFailedWrite() throws Exception {
+		PolicyCacheFile.write(file, content("{\"policyVersion\":1}"));
+
+		try {
+			PolicyCacheFile.write(file, new PolicyCacheFile.Content() {
+				@Override
+				public void write(OutputStream out) throws IOException {
+					out.write("{\"policyVer".getBytes("UTF-8"));
+
+					throw new IOException("failed");
+				}
+			});
+
+			fail("expected IOException");
+		} catch(IOException excp) {
+			// expected
+		}
+
+		// the previous file is intact, and the temporary file is removed
+		assertEquals("{\"policyVersion\":1}", read(file));
+		assertEquals(1, dir.listFiles().length);
+	}
+
+	@Test
+	public void testCorruptFile() throws Exception {
+		PolicyCacheFile.write(file, content("{\"policyVersion\":1}"));
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+
+		raf.seek(raf.length() - 2);
+		raf.write('2');
+		raf.close();
+
+		assertCorrupt(file);
+
+		raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 2);
+		raf.close();
+
+		assertCorrupt(file);
+	}
+
+	@Test
+	public void testFileWithoutHeader() throws Exception {
+		Files.write(file.toPath(), "{\"policyVersion\":1}".getBytes("UTF-8"));
+
+		assertEquals("{\"policyVersion\":1}", read(file));
+	}
+
+	private void assertCorrupt(File file) {
+		try {
+			read(file);
+
+			fail("expected IOException");
+		} catch(IOException excp) {
+			// expected
+		}
+	}
+
+	private PolicyCacheFile.Content content(final String str) {
+		return new PolicyCacheFile.Content() {
+			@Override
+			public void write(OutputStream out) throws IOException {
+				out.write(str.getBytes("UTF-8"));
+			}
+		};
+	}
+
+	private String read(File file) throws IOException {
+		ByteBuffer content = PolicyCacheFile.read(file);
+		byte[]     bytes   = new byte[content.remaining()];
+
+		content.get(bytes);
+
+		return new String(bytes, "UTF-8");
+	}
+}
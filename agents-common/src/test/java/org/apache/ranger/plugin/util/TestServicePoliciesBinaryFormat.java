@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.plugin.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.plugin.model.RangerPolicy;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+import org.apache.ranger.plugin.model.RangerServiceDef;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+
+public class TestServicePoliciesBinaryFormat {
+	private final Gson gson = new GsonBuilder().setDateFormat("yyyyMMdd-HH:mm:ss.SSS-Z").create();
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		ServicePolicies policies = createPolicies(50);
+		byte[]          data     = write(policies);
+
+		assertTrue(ServicePoliciesBinaryFormat.isBinaryFormat(data, data.length));
+
+		ServicePolicies copy = ServicePoliciesBinaryFormat.read(new ByteArrayInputStream(data));
+
+		assertEquals(gson.toJson(policies), gson.toJson(copy));
+
+		// names repeated across policies are written once
+		assertTrue(data.length < gson.toJson(policies).length() / 3);
+	}
+
+	@Test
+	public void testDelta() throws Exception {
+		ServicePolicies delta = createPolicies(1);
+
+		delta.setIsDelta(Boolean.TRUE);
+		delta.setDeletedPolicyIds(Arrays.asList(3L, 4L));
+		delta.setServiceDef(null);
+
+		ServicePolicies copy = ServicePoliciesBinaryFormat.read(new ByteArrayInputStream(write(delta)));
+
+		assertEquals(gson.toJson(delta), gson.toJson(copy));
+	}
+
+	@Test
+	public void testInvalidData() throws Exception {
+		byte[] json = gson.toJson(createPolicies(1)).getBytes("UTF-8");
+
+		assertFalse(ServicePoliciesBinaryFormat.isBinaryFormat(json, json.length));
+
+		try {
+			ServicePoliciesBinaryFormat.read(new ByteArrayInputStream(json));
+
+			fail("expected IOException");
+		} catch(IOException excp) {
+			// expected
+		}
+
+		byte[] data = write(createPolicies(10));
+
+		try {
+			ServicePoliciesBinaryFormat.read(new ByteArrayInputStream(data, 0, data.length / 2));
+
+			fail("expected IOException");
+		} catch(IOException excp) {
+			// expected
+		}
+	}
+
+	private byte[] write(ServicePolicies policies) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		ServicePoliciesBinaryFormat.write(policies, out);
+
+		return out.toByteArray();
+	}
+
+	private ServicePolicies createPolicies(int count) {
+		ServicePolicies  ret        = new ServicePolicies();
+		RangerServiceDef serviceDef = new RangerServiceDef();
+
+		serviceDef.setId(1L);
+		serviceDef.setType("hive");
+		serviceDef.setVersion(3L);
+
+		ret.setServiceName("hivedev");
+		ret.setServiceId(2L);
+		ret.setPolicyVersion(-1L + count * 100);
+		ret.setPolicyUpdateTime(new Date());
+		ret.setServiceDef(serviceDef);
+
+		List<RangerPolicy> policies = new ArrayList<RangerPolicy>();
+
+		for(int i = 0; i < count; i++) {
+			Map<String, RangerPolicyResource> resources = new HashMap<String, RangerPolicyResource>();
+
+			resources.put("database", new RangerPolicyResource("db" + (i % 5)));
+			resources.put("table", new RangerPolicyResource(Arrays.asList("tbl" + i, "tmp_*"), Boolean.FALSE, null));
+
+			List<RangerPolicyItemAccess>    accesses   = Arrays.asList(new RangerPolicyItemAccess("select"), new RangerPolicyItemAccess("update", Boolean.FALSE));
+			List<RangerPolicyItemCondition> conditions = Arrays.asList(new RangerPolicyItemCondition("ip-range", Arrays.asList("10.0.0.0/8")));
+			RangerPolicyItem                item1      = new RangerPolicyItem(accesses, Arrays.asList("user1", "user" + i), Arrays.asList("finance"), conditions, Boolean.FALSE);
+			RangerPolicyItem                item2      = new RangerPolicyItem(accesses, null, Arrays.asList("admins"), null, Boolean.TRUE);
+			RangerPolicy                    policy     = new RangerPolicy("hivedev", "policy-" + i, 0, i % 2 == 0 ? null : "policy for tbl" + i, resources, Arrays.asList(item1, item2));
+
+			policy.setId((long) i);
+			policy.setGuid("guid-" + i);
+			policy.setIsEnabled(Boolean.TRUE);
+			policy.setCreatedBy("admin");
+			policy.setCreateTime(new Date(1000L * i));
+			policy.setVersion((long) i);
+
+			policies.add(policy);
+		}
+
+		ret.setPolicies(policies);
+
+		return ret;
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Ids of the policies changed in each policy-version of services, for the most recent versions only.
+ * Used to send plugins only the policies that changed since the version they have.
+ *
+ * The log is kept in memory: it doesn't have changes made before a restart, or through another Ranger
+ * Admin instance. Such a change shows up as a version missing from the log, and the caller must then
+ * send all policies.
+ */
+public class RangerPolicyChangeLog {
+	private final int                           maxChangesPerService;
+	private final Map<Long, ArrayDeque<Change>> changesByService = new HashMap<Long, ArrayDeque<Change>>();
+
+	public RangerPolicyChangeLog(int maxChangesPerService) {
+		this.maxChangesPerService = maxChangesPerService;
+	}
+
+	/**
+	 * Records a committed policy change. Must not be called before the change is committed: the version of a
+	 * rolled back change can be committed by another Ranger Admin instance with changes to other policies.
+	 */
+	public synchronized void policyChanged(Long serviceId, Long policyVersion, Long policyId) {
+		if(serviceId == null || policyVersion == null || policyId == null || maxChangesPerService <= 0) {
+			return;
+		}
+
+		ArrayDeque<Change> changes = changesByService.get(serviceId);
+
+		if(changes == null) {
+			changes = new ArrayDeque<Change>();
+
+			changesByService.put(serviceId, changes);
+		}
+
+		changes.addLast(new Change(policyVersion, policyId));
+
+		while(changes.size() > maxChangesPerService) {
+			changes.removeFirst();
+		}
+	}
+
+	public synchronized void serviceDeleted(Long serviceId) {
+		changesByService.remove(serviceId);
+	}
+
+	/**
+	 * @return ids, in ascending order, of policies changed in versions after fromVersion up to toVersion; null if some version in this range is not in the log
+	 */
+	public synchronized Set<Long> getChangedPolicyIds(Long serviceId, long fromVersion, long toVersion) {
+		ArrayDeque<Change> changes = changesByService.get(serviceId);
+
+		if(changes == null || fromVersion >= toVersion || toVersion - fromVersion > changes.size()) {
+			return null;
+		}
+
+		Set<Long> ret           = new TreeSet<Long>();
+		BitSet    foundVersions = new BitSet((int) (toVersion - fromVersion));
+
+		for(Change change : changes) {
+			if(change.policyVersion > fromVersion && change.policyVersion <= toVersion) {
+				ret.add(change.policyId);
+
+				foundVersions.set((int) (change.policyVersion - fromVersion - 1));
+			}
+		}
+
+		return foundVersions.cardinality() == (int) (toVersion - fromVersion) ? ret : null;
+	}
+
+	static final class Change {
+		final long policyVersion;
+		final long policyId;
+
+		Change(long policyVersion, long policyId) {
+			this.policyVersion = policyVersion;
+			this.policyId      = policyId;
+		}
+	}
+}
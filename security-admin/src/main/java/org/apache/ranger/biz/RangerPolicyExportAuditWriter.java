@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.common.PropertiesUtil;
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.XXPolicyExportAudit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Writes audits of policy downloads by plugins from a background thread, many audits per transaction,
+ * so that plugin polls don't wait for a database insert.
+ *
+ * Audits of repeated "not modified" polls by a plugin for the same version, queued within a batch, are
+ * written as a single row.
+ */
+@Component
+@Scope("singleton")
+public class RangerPolicyExportAuditWriter {
+	private static final Log LOG = LogFactory.getLog(RangerPolicyExportAuditWriter.class);
+
+	private static final int  DEFAULT_QUEUE_SIZE        = 10000;
+	private static final int  DEFAULT_BATCH_SIZE        = 100;
+	private static final long DEFAULT_FLUSH_INTERVAL_MS = 1000;
+
+	@Autowired
+	RangerDaoManager daoMgr;
+
+	@Autowired
+	@Qualifier(value = "transactionManager")
+	PlatformTransactionManager txManager;
+
+	private boolean                            isAsync             = true;
+	private boolean                            logNotModified      = false;
+	private boolean                            coalesceNotModified = true;
+	private int                                batchSize           = DEFAULT_BATCH_SIZE;
+	private long                               flushIntervalMs     = DEFAULT_FLUSH_INTERVAL_MS;
+	private BlockingQueue<XXPolicyExportAudit> queue               = null;
+	private Thread                             writerThread        = null;
+	private final AtomicLong                   droppedCount        = new AtomicLong();
+	private final AtomicLong                   coalescedCount      = new AtomicLong();
+
+	@PostConstruct
+	public void init() {
+		isAsync             = PropertiesUtil.getBooleanProperty("ranger.admin.policy.download.audit.async", true);
+		logNotModified      = PropertiesUtil.getBooleanProperty("xa.log.SC_NOT_MODIFIED", false);
+		coalesceNotModified = PropertiesUtil.getBooleanProperty("ranger.admin.policy.download.audit.coalesce.not.modified", true);
+		batchSize           = Math.max(1, PropertiesUtil.getIntProperty("ranger.admin.policy.download.audit.batch.size", DEFAULT_BATCH_SIZE));
+		flushIntervalMs     = Math.max(1, PropertiesUtil.getIntProperty("ranger.admin.policy.download.audit.flush.interval.ms", (int) DEFAULT_FLUSH_INTERVAL_MS));
+
+		if(isAsync) {
+			queue        = new ArrayBlockingQueue<XXPolicyExportAudit>(Math.max(1, PropertiesUtil.getIntProperty("ranger.admin.policy.download.audit.queue.size", DEFAULT_QUEUE_SIZE)));
+			writerThread = new Thread("PolicyExportAuditWriter") {
+				@Override
+				public void run() {
+					writeAudits();
+				}
+			};
+
+			writerThread.setDaemon(true);
+			writerThread.start();
+		}
+
+		LOG.info("RangerPolicyExportAuditWriter: async=" + isAsync + ", batchSize=" + batchSize + ", flushIntervalMs=" + flushIntervalMs + ", coalesceNotModified=" + coalesceNotModified);
+	}
+
+	@PreDestroy
+	public void cleanup() {
+		Thread thread = writerThread;
+
+		if(thread != null) {
+			writerThread = null;
+
+			thread.interrupt();
+
+			try {
+				thread.join(flushIntervalMs * 2);
+			} catch(InterruptedException excp) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	public void addAudit(XXPolicyExportAudit audit) {
+		if(audit.getHttpRetCode() == HttpServletResponse.SC_NOT_MODIFIED && !logNotModified) {
+			return;
+		}
+
+		if(queue == null) {
+			createAudits(Collections.singletonList(audit));
+		} else if(!queue.offer(audit)) {
+			long count = droppedCount.incrementAndGet();
+
+			if(count == 1 || (count % 1000) == 0) {
+				LOG.warn("RangerPolicyExportAuditWriter: queue is full; dropped " + count + " policy download audits so far");
+			}
+		}
+	}
+
+	/**
+	 * @return number of audits not written because the queue was full
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * @return number of 'not modified' audits not written because a later one, by the same plugin for the same version, was written instead
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	private void writeAudits() {
+		List<XXPolicyExportAudit> batch = new ArrayList<XXPolicyExportAudit>(batchSize);
+
+		while(true) {
+			boolean isInterrupted = false;
+
+			try {
+				XXPolicyExportAudit audit = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+
+				if(audit != null) {
+					batch.add(audit);
+
+					queue.drainTo(batch, batchSize - batch.size());
+				}
+			} catch(InterruptedException excp) {
+				isInterrupted = true;
+			}
+
+			if(isInterrupted) {
+				queue.drainTo(batch);
+			}
+
+			if(!batch.isEmpty()) {
+				writeBatch(batch);
+
+				batch.clear();
+			}
+
+			if(isInterrupted) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Writes the given audits in one transaction; if that fails, writes them one per transaction, so that
+	 * a bad audit doesn't lose the others.
+	 */
+	void writeBatch(List<XXPolicyExportAudit> batch) {
+		List<XXPolicyExportAudit> audits = coalesceNotModified ? coalesce(batch) : batch;
+
+		if(audits.size() < batch.size()) {
+			long count = coalescedCount.addAndGet(batch.size() - audits.size());
+
+			if(LOG.isDebugEnabled()) {
+				LOG.debug("RangerPolicyExportAuditWriter: coalesced " + (batch.size() - audits.size()) + " 'not modified' policy download audits; " + count + " so far");
+			}
+		}
+
+		try {
+			createAudits(audits);
+		} catch(Throwable excp) {
+			if(audits.size() == 1) {
+				LOG.error("RangerPolicyExportAuditWriter: failed to write policy download audit " + audits.get(0), excp);
+			} else {
+				LOG.warn("RangerPolicyExportAuditWriter: failed to write " + audits.size() + " policy download audits in one transaction; writing them one at a time", excp);
+
+				for(XXPolicyExportAudit audit : audits) {
+					audit.setId(null); // id assigned in the rolled back transaction
+
+					try {
+						createAudits(Collections.singletonList(audit));
+					} catch(Throwable excp2) {
+						LOG.error("RangerPolicyExportAuditWriter: failed to write policy download audit " + audit, excp2);
+					}
+				}
+			}
+		}
+	}
+
+	private void createAudits(final List<XXPolicyExportAudit> audits) {
+		TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+
+		txTemplate.execute(new TransactionCallback<Object>() {
+			@Override
+			public Object doInTransaction(TransactionStatus status) {
+				daoMgr.getXXPolicyExportAudit().batchCreate(audits);
+
+				return null;
+			}
+		});
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("RangerPolicyExportAuditWriter: wrote " + audits.size() + " policy download audits");
+		}
+	}
+
+	/**
+	 * @return audits in the given order, with only the latest of "not modified" audits by a plugin for the same version
+	 */
+	static List<XXPolicyExportAudit> coalesce(List<XXPolicyExportAudit> audits) {
+		Map<String, XXPolicyExportAudit> notModified = new LinkedHashMap<String, XXPolicyExportAudit>();
+		List<XXPolicyExportAudit>        ret         = new ArrayList<XXPolicyExportAudit>(audits.size());
+
+		for(XXPolicyExportAudit audit : audits) {
+			if(audit.getHttpRetCode() != HttpServletResponse.SC_NOT_MODIFIED) {
+				ret.add(audit);
+			} else {
+				String key = audit.getRepositoryName() + "|" + audit.getAgentId() + "|" + audit.getClientIP() + "|" + audit.getRequestedEpoch();
+
+				notModified.remove(key);
+				notModified.put(key, audit);
+			}
+		}
+
+		ret.addAll(notModified.values());
+
+		return ret;
+	}
+}
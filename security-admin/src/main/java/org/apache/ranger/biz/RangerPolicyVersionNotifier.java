@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Lets plugin policy downloads wait for the policy-version of a service to change, instead of polling.
+ *
+ * Only the changes committed through this Ranger Admin instance are notified; a waiter for a change made
+ * through another instance sees it when its wait times out.
+ */
+public class RangerPolicyVersionNotifier {
+	private final Semaphore                            waiters;
+	private final ConcurrentMap<String, PolicyVersion> versions = new ConcurrentHashMap<String, PolicyVersion>();
+
+	/**
+	 * @param maxWaiters maximum number of requests that wait at the same time; each one holds a request thread
+	 */
+	public RangerPolicyVersionNotifier(int maxWaiters) {
+		this.waiters = new Semaphore(Math.max(0, maxWaiters));
+	}
+
+	public void policyVersionChanged(String serviceName, long policyVersion) {
+		if(serviceName != null) {
+			getPolicyVersion(serviceName).setVersion(policyVersion);
+		}
+	}
+
+	public void serviceDeleted(String serviceName) {
+		if(serviceName != null) {
+			versions.remove(serviceName);
+		}
+	}
+
+	/**
+	 * @return true if a policy-version later than knownVersion was notified before the timeout; false otherwise,
+	 *         including when too many requests are already waiting
+	 */
+	public boolean waitForChange(String serviceName, long knownVersion, long timeoutMs) throws InterruptedException {
+		if(serviceName == null || timeoutMs <= 0 || !waiters.tryAcquire()) {
+			return false;
+		}
+
+		try {
+			return getPolicyVersion(serviceName).waitForVersionAfter(knownVersion, timeoutMs);
+		} finally {
+			waiters.release();
+		}
+	}
+
+	private PolicyVersion getPolicyVersion(String serviceName) {
+		PolicyVersion ret = versions.get(serviceName);
+
+		if(ret == null) {
+			ret = new PolicyVersion();
+
+			PolicyVersion existing = versions.putIfAbsent(serviceName, ret);
+
+			if(existing != null) {
+				ret = existing;
+			}
+		}
+
+		return ret;
+	}
+
+	static final class PolicyVersion {
+		private long version = -1;
+
+		synchronized void setVersion(long version) {
+			if(version > this.version) {
+				this.version = version;
+
+				notifyAll();
+			}
+		}
+
+		synchronized boolean waitForVersionAfter(long knownVersion, long timeoutMs) throws InterruptedException {
+			long endTime = System.currentTimeMillis() + timeoutMs;
+
+			while(version <= knownVersion) {
+				long remainingMs = endTime - System.currentTimeMillis();
+
+				if(remainingMs <= 0) {
+					return false;
+				}
+
+				wait(remainingMs);
+			}
+
+			return true;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.util.ServicePolicies;
+
+/**
+ * Policies of each service, as last downloaded by plugins; keyed by the policy-version of the service and
+ * the version of its service-def.
+ *
+ * When a new version is requested by many plugins at the same time, only one of the requests loads it from
+ * the database; the others wait for it and share the result. The ServicePolicies returned are shared by
+ * all callers, and must not be modified.
+ */
+public class RangerServicePoliciesCache {
+	private static final Log LOG = LogFactory.getLog(RangerServicePoliciesCache.class);
+
+	public interface Loader {
+		ServicePolicies load() throws Exception;
+	}
+
+	private final ConcurrentMap<Long, CachedServicePolicies> cache = new ConcurrentHashMap<Long, CachedServicePolicies>();
+
+	/**
+	 * @return cached policies of the service, if they are of the given versions; otherwise policies from the loader
+	 */
+	public ServicePolicies getServicePolicies(Long serviceId, Long policyVersion, Long serviceDefVersion, Loader loader) throws Exception {
+		if(serviceId == null || policyVersion == null) {
+			return loader.load();
+		}
+
+		CachedServicePolicies cachedPolicies = cache.get(serviceId);
+
+		if(cachedPolicies == null) {
+			cachedPolicies = new CachedServicePolicies();
+
+			CachedServicePolicies existing = cache.putIfAbsent(serviceId, cachedPolicies);
+
+			if(existing != null) {
+				cachedPolicies = existing;
+			}
+		}
+
+		return cachedPolicies.get(serviceId, policyVersion, serviceDefVersion, loader);
+	}
+
+	public void serviceDeleted(Long serviceId) {
+		if(serviceId != null) {
+			cache.remove(serviceId);
+		}
+	}
+
+	static final class CachedServicePolicies {
+		private volatile Entry entry = null;
+
+		ServicePolicies get(Long serviceId, Long policyVersion, Long serviceDefVersion, Loader loader) throws Exception {
+			Entry ret = entry;
+
+			// a request that read the service before its latest update; don't replace the newer policies
+			if(ret != null && ret.policyVersion.longValue() > policyVersion.longValue()) {
+				return loader.load();
+			}
+
+			if(ret == null || !ret.isFor(policyVersion, serviceDefVersion)) {
+				synchronized(this) {
+					ret = entry;
+
+					// another request might have loaded this version while we waited
+					if(ret == null || !ret.isFor(policyVersion, serviceDefVersion)) {
+						long startTime = System.currentTimeMillis();
+
+						ret   = new Entry(policyVersion, serviceDefVersion, loader.load());
+						entry = ret;
+
+						if(LOG.isDebugEnabled()) {
+							LOG.debug("RangerServicePoliciesCache: loaded policies of service id=" + serviceId + ", policyVersion=" + policyVersion + " in " + (System.currentTimeMillis() - startTime) + "ms");
+						}
+					}
+				}
+			}
+
+			return ret.servicePolicies;
+		}
+	}
+
+	static final class Entry {
+		final Long            policyVersion;
+		final Long            serviceDefVersion;
+		final ServicePolicies servicePolicies;
+
+		Entry(Long policyVersion, Long serviceDefVersion, ServicePolicies servicePolicies) {
+			this.policyVersion     = policyVersion;
+			this.serviceDefVersion = serviceDefVersion;
+			this.servicePolicies   = servicePolicies;
+		}
+
+		boolean isFor(Long policyVersion, Long serviceDefVersion) {
+			return ObjectUtils.equals(this.policyVersion, policyVersion) && ObjectUtils.equals(this.serviceDefVersion, serviceDefVersion);
+		}
+	}
+}
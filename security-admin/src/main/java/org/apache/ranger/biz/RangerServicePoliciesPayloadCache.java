@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.apache.ranger.plugin.util.ServicePoliciesBinaryFormat;
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Policies downloaded by plugins, serialized and gzip-compressed once per policy-version of each service
+ * instead of once per download.
+ *
+ * A payload is reused for as long as the policy-version of the service, and the version of its service-def,
+ * don't change; these versions are also the entity-tag of the payload. Each representation - JSON or the
+ * binary encoding, plain or gzip-compressed - is created on the first request for it.
+ */
+public class RangerServicePoliciesPayloadCache {
+	private static final Log LOG = LogFactory.getLog(RangerServicePoliciesPayloadCache.class);
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	private final ConcurrentMap<String, CachedPayload> cache = new ConcurrentHashMap<String, CachedPayload>();
+
+	/**
+	 * @return serialized policies; delta policies are not cached, as they depend on the version the plugin has
+	 */
+	public Payload getPayload(String serviceName, ServicePolicies policies) {
+		String eTag = Boolean.TRUE.equals(policies.getIsDelta()) ? null : getETag(policies);
+
+		if(serviceName == null || eTag == null) {
+			return createPayload(policies, null);
+		}
+
+		CachedPayload cachedPayload = cache.get(serviceName);
+
+		if(cachedPayload == null) {
+			cachedPayload = new CachedPayload();
+
+			CachedPayload existing = cache.putIfAbsent(serviceName, cachedPayload);
+
+			if(existing != null) {
+				cachedPayload = existing;
+			}
+		}
+
+		return cachedPayload.get(policies, eTag);
+	}
+
+	public void serviceDeleted(String serviceName) {
+		if(serviceName != null) {
+			cache.remove(serviceName);
+		}
+	}
+
+	Payload createPayload(ServicePolicies policies, String eTag) {
+		return new Payload(policies, eTag);
+	}
+
+	static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 4 + 64);
+		GZIPOutputStream      gzip  = new GZIPOutputStream(bytes);
+
+		gzip.write(data);
+		gzip.close();
+
+		return bytes.toByteArray();
+	}
+
+	static String getETag(ServicePolicies policies) {
+		if(policies.getPolicyVersion() == null) {
+			return null;
+		}
+
+		Long serviceDefVersion = policies.getServiceDef() == null ? null : policies.getServiceDef().getVersion();
+
+		return "\"" + policies.getServiceId() + "-" + policies.getPolicyVersion() + "-" + serviceDefVersion + "\"";
+	}
+
+	final class CachedPayload {
+		private volatile Payload payload = null;
+
+		Payload get(ServicePolicies policies, String eTag) {
+			Payload ret = payload;
+
+			// a request that read the service before its latest update; don't replace the newer payload
+			if(ret != null && ret.policyVersion > policies.getPolicyVersion().longValue()) {
+				return createPayload(policies, eTag);
+			}
+
+			if(ret == null || !ret.eTag.equals(eTag)) {
+				synchronized(this) {
+					ret = payload;
+
+					// another request might have created the payload of this version while we waited
+					if(ret == null || !ret.eTag.equals(eTag)) {
+						ret     = createPayload(policies, eTag);
+						payload = ret;
+					}
+				}
+			}
+
+			return ret;
+		}
+	}
+
+	public static final class Payload {
+		private final long            policyVersion;
+		private final String          eTag;
+		private final ServicePolicies policies;
+		private byte[]                json;
+		private byte[]                gzipJson;
+		private byte[]                binary;
+		private byte[]                gzipBinary;
+
+		Payload(ServicePolicies policies, String eTag) {
+			this.policyVersion = policies.getPolicyVersion() == null ? -1 : policies.getPolicyVersion().longValue();
+			this.eTag          = eTag;
+			this.policies      = policies;
+		}
+
+		public synchronized byte[] getJson() throws IOException {
+			if(json == null) {
+				json = createJson();
+			}
+
+			return json;
+		}
+
+		public synchronized byte[] getGzipJson() throws IOException {
+			if(gzipJson == null) {
+				gzipJson = gzip(json != null ? json : createJson());
+			}
+
+			return gzipJson;
+		}
+
+		/**
+		 * @return policies in the format of ServicePoliciesBinaryFormat
+		 */
+		public synchronized byte[] getBinary() throws IOException {
+			if(binary == null) {
+				binary = createBinary();
+			}
+
+			return binary;
+		}
+
+		public synchronized byte[] getGzipBinary() throws IOException {
+			if(gzipBinary == null) {
+				gzipBinary = gzip(binary != null ? binary : createBinary());
+			}
+
+			return gzipBinary;
+		}
+
+		/**
+		 * @return entity-tag of the payload; null for policies that are not cached
+		 */
+		public String getETag() {
+			return eTag;
+		}
+
+		private byte[] createJson() throws IOException {
+			long   startTime = System.currentTimeMillis();
+			byte[] ret       = MAPPER.writeValueAsBytes(policies);
+
+			if(LOG.isDebugEnabled()) {
+				LOG.debug("RangerServicePoliciesPayloadCache: serialized policies of service " + policies.getServiceName() + ", policyVersion=" + policies.getPolicyVersion() + " to JSON: " + ret.length + " bytes, in " + (System.currentTimeMillis() - startTime) + "ms");
+			}
+
+			return ret;
+		}
+
+		private byte[] createBinary() throws IOException {
+			long                  startTime = System.currentTimeMillis();
+			ByteArrayOutputStream bytes     = new ByteArrayOutputStream(4096);
+
+			ServicePoliciesBinaryFormat.write(policies, bytes);
+
+			byte[] ret = bytes.toByteArray();
+
+			if(LOG.isDebugEnabled()) {
+				LOG.debug("RangerServicePoliciesPayloadCache: serialized policies of service " + policies.getServiceName() + ", policyVersion=" + policies.getPolicyVersion() + " to binary format: " + ret.length + " bytes, in " + (System.currentTimeMillis() - startTime) + "ms");
+			}
+
+			return ret;
+		}
+	}
+}
@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import javax.annotation.PostConstruct;
 
@@ -36,6 +37,7 @@ import org.apache.ranger.common.AppConstants;
 import org.apache.ranger.common.ContextUtil;
 import org.apache.ranger.common.DateUtil;
 import org.apache.ranger.common.MessageEnums;
+import org.apache.ranger.common.PropertiesUtil;
 import org.apache.ranger.common.RESTErrorUtil;
 import org.apache.ranger.common.RangerCommonEnums;
 import org.apache.ranger.common.StringUtil;
@@ -117,6 +119,8 @@ import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.apache.ranger.plugin.util.SearchFilter;
 
@@ -170,6 +174,15 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 	private static volatile boolean legacyServiceDefsInitDone = false;
 	private Boolean populateExistingBaseFields = false;
+	private static final int RANGER_POLICY_CHANGELOG_SIZE = 10000;
+	private static final int RANGER_POLICY_DOWNLOAD_MAX_WAITERS = 100;
+	private static final long RANGER_POLICY_DOWNLOAD_MAX_WAIT_MS = 60 * 1000;
+
+	private RangerPolicyChangeLog policyChangeLog = null;
+	private RangerServicePoliciesCache servicePoliciesCache = null;
+	private RangerServicePoliciesPayloadCache servicePoliciesPayloadCache = new RangerServicePoliciesPayloadCache();
+	private RangerPolicyVersionNotifier policyVersionNotifier = null;
+	private long maxPolicyDownloadWaitMs = RANGER_POLICY_DOWNLOAD_MAX_WAIT_MS;
 	
 	@Override
 	public void init() throws Exception {
@@ -188,6 +201,15 @@ public class ServiceDBStore extends AbstractServiceStore {
 			LOG.debug("==> ServiceDefDBStore.initStore()");
 		}
 
+		policyChangeLog = new RangerPolicyChangeLog(PropertiesUtil.getIntProperty("ranger.admin.policy.changelog.size", RANGER_POLICY_CHANGELOG_SIZE));
+
+		if(PropertiesUtil.getBooleanProperty("ranger.admin.policy.download.cache.enabled", true)) {
+			servicePoliciesCache = new RangerServicePoliciesCache();
+		}
+
+		policyVersionNotifier   = new RangerPolicyVersionNotifier(PropertiesUtil.getIntProperty("ranger.admin.policy.download.wait.max.requests", RANGER_POLICY_DOWNLOAD_MAX_WAITERS));
+		maxPolicyDownloadWaitMs = PropertiesUtil.getIntProperty("ranger.admin.policy.download.wait.max.ms", (int) RANGER_POLICY_DOWNLOAD_MAX_WAIT_MS);
+
 		if(! legacyServiceDefsInitDone) {
 			synchronized(ServiceDBStore.class) {
 				if(!legacyServiceDefsInitDone) {
@@ -646,6 +668,15 @@ public class ServiceDBStore extends AbstractServiceStore {
 		
 		List<XXTrxLog> trxLogList = svcService.getTransactionLog(service, RangerServiceService.OPERATION_DELETE_CONTEXT);
 		bizUtil.createTrxLog(trxLogList);
+
+		policyChangeLog.serviceDeleted(id);
+
+		if(servicePoliciesCache != null) {
+			servicePoliciesCache.serviceDeleted(id);
+		}
+
+		servicePoliciesPayloadCache.serviceDeleted(service.getName());
+		policyVersionNotifier.serviceDeleted(service.getName());
 	}
 
 	@Override
@@ -738,7 +769,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 		createNewResourcesForPolicy(policy, xCreatedPolicy, resources);
 		createNewPolicyItemsForPolicy(policy, xCreatedPolicy, policyItems, xServiceDef);
-		handlePolicyUpdate(service);
+		handlePolicyUpdate(service, policy.getId());
 		RangerPolicy createdPolicy = policyService.getPopulatedViewObject(xCreatedPolicy);
 		dataHistService.createObjectDataHistory(createdPolicy, RangerDataHistService.ACTION_CREATE);
 
@@ -809,7 +840,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		createNewResourcesForPolicy(policy, newUpdPolicy, newResources);
 		createNewPolicyItemsForPolicy(policy, newUpdPolicy, newPolicyItems, xServiceDef);
 		
-		handlePolicyUpdate(service);
+		handlePolicyUpdate(service, policy.getId());
 		RangerPolicy updPolicy = policyService.getPopulatedViewObject(newUpdPolicy);
 		dataHistService.createObjectDataHistory(updPolicy, RangerDataHistService.ACTION_UPDATE);
 		
@@ -853,7 +884,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		deleteExistingPolicyResources(policy);
 		
 		policyService.delete(policy);
-		handlePolicyUpdate(service);
+		handlePolicyUpdate(service, policyId);
 		
 		dataHistService.createObjectDataHistory(policy, RangerDataHistService.ACTION_DELETE);
 		
@@ -994,8 +1025,16 @@ public class ServiceDBStore extends AbstractServiceStore {
 
 	@Override
 	public ServicePolicies getServicePoliciesIfUpdated(String serviceName, Long lastKnownVersion) throws Exception {
+		return getServicePoliciesIfUpdated(serviceName, lastKnownVersion, false);
+	}
+
+	/**
+	 * @param isDeltaSupported if true, and all changes since lastKnownVersion are in the change log, only the
+	 *                         changed policies are returned, with ids of deleted policies
+	 */
+	public ServicePolicies getServicePoliciesIfUpdated(String serviceName, Long lastKnownVersion, boolean isDeltaSupported) throws Exception {
 		if(LOG.isDebugEnabled()) {
-			LOG.debug("==> ServiceDBStore.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ")");
+			LOG.debug("==> ServiceDBStore.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + isDeltaSupported + ")");
 		}
 
 		ServicePolicies ret = null;
@@ -1013,26 +1052,105 @@ public class ServiceDBStore extends AbstractServiceStore {
 		}
 
 		if(lastKnownVersion == null || service.getPolicyVersion() == null || lastKnownVersion.longValue() != service.getPolicyVersion().longValue()) {
-			SearchFilter filter = new SearchFilter(SearchFilter.SERVICE_NAME, serviceName);
+			Set<Long> changedPolicyIds = null;
+
+			if(isDeltaSupported && lastKnownVersion != null && lastKnownVersion.longValue() > 0 && service.getPolicyVersion() != null) {
+				changedPolicyIds = policyChangeLog.getChangedPolicyIds(service.getId(), lastKnownVersion.longValue(), service.getPolicyVersion().longValue());
+			}
 
-			List<RangerPolicy> policies = getServicePolicies(serviceName, filter);
+			if(changedPolicyIds != null) {
+				ret = createServicePolicies(service, serviceDef);
 
-			ret = new ServicePolicies();
+				List<RangerPolicy> changedPolicies  = new ArrayList<RangerPolicy>();
+				List<Long>         deletedPolicyIds = new ArrayList<Long>();
 
-			ret.setServiceId(service.getId());
-			ret.setServiceName(service.getName());
-			ret.setPolicyVersion(service.getPolicyVersion());
-			ret.setPolicyUpdateTime(service.getPolicyUpdateTime());
-			ret.setPolicies(policies);
-			ret.setServiceDef(serviceDef);
+				// a logged change is only a hint: send the current state of each of these policies
+				for(Long policyId : changedPolicyIds) {
+					XXPolicy xPolicy = daoMgr.getXXPolicy().getById(policyId);
+
+					if(xPolicy == null) {
+						deletedPolicyIds.add(policyId);
+					} else {
+						changedPolicies.add(policyService.getPopulatedViewObject(xPolicy));
+					}
+				}
+
+				ret.setIsDelta(Boolean.TRUE);
+				ret.setPolicies(changedPolicies);
+				ret.setDeletedPolicyIds(deletedPolicyIds);
+			} else if(servicePoliciesCache != null) {
+				final RangerService    svc    = service;
+				final RangerServiceDef svcDef = serviceDef;
+
+				ret = servicePoliciesCache.getServicePolicies(service.getId(), service.getPolicyVersion(), serviceDef.getVersion(), new RangerServicePoliciesCache.Loader() {
+					@Override
+					public ServicePolicies load() throws Exception {
+						return loadServicePolicies(svc, svcDef);
+					}
+				});
+			} else {
+				ret = loadServicePolicies(service, serviceDef);
+			}
 		}
 
 		if(LOG.isDebugEnabled()) {
-			LOG.debug("<== ServiceDBStore.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + "): count=" + ((ret == null || ret.getPolicies() == null) ? 0 : ret.getPolicies().size()));
+			LOG.debug("<== ServiceDBStore.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + isDeltaSupported + "): isDelta=" + (ret == null ? null : ret.getIsDelta()) + ", count=" + ((ret == null || ret.getPolicies() == null) ? 0 : ret.getPolicies().size()));
 		}
 		return ret;
 	}
 	
+	/**
+	 * Waits, without reading the database, for a change in policies of the service to be committed through
+	 * this instance; the caller should read the policies again, after a transaction started after this returns.
+	 *
+	 * @return true if the policy-version of the service changed from lastKnownVersion before the timeout
+	 */
+	public boolean waitForPolicyUpdate(String serviceName, long lastKnownVersion, long timeoutMs) {
+		boolean ret = false;
+
+		try {
+			ret = policyVersionNotifier.waitForChange(serviceName, lastKnownVersion, Math.min(timeoutMs, maxPolicyDownloadWaitMs));
+		} catch(InterruptedException excp) {
+			Thread.currentThread().interrupt();
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return policies serialized for download by plugins; the payload of a full download is shared by all plugins of the service
+	 */
+	public RangerServicePoliciesPayloadCache.Payload getServicePoliciesPayload(ServicePolicies policies) throws Exception {
+		return servicePoliciesPayloadCache.getPayload(policies.getServiceName(), policies);
+	}
+
+	private ServicePolicies createServicePolicies(RangerService service, RangerServiceDef serviceDef) {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceId(service.getId());
+		ret.setServiceName(service.getName());
+		ret.setPolicyVersion(service.getPolicyVersion());
+		ret.setPolicyUpdateTime(service.getPolicyUpdateTime());
+		ret.setServiceDef(serviceDef);
+
+		return ret;
+	}
+
+	private ServicePolicies loadServicePolicies(RangerService service, RangerServiceDef serviceDef) throws Exception {
+		ServicePolicies ret = createServicePolicies(service, serviceDef);
+
+		// unlike getServicePolicies(), a failure to read must not look like a service without policies; this result can be cached
+		XXService xService = daoMgr.getXXService().getById(service.getId());
+
+		if(xService == null) {
+			throw new Exception("service does not exist - id=" + service.getId());
+		}
+
+		ret.setPolicies(policyService.getServicePolicies(xService));
+
+		return ret;
+	}
+
 	private void createDefaultPolicy(XXService createdService, VXUser vXUser) throws Exception {
 		RangerPolicy policy = new RangerPolicy();
 		String policyName=createdService.getName()+"-"+1+"-"+DateUtil.dateToString(DateUtil.getUTCDate(),"yyyyMMddHHmmss");
@@ -1120,7 +1238,7 @@ public class ServiceDBStore extends AbstractServiceStore {
 		return validConfigs;
 	}
 	
-	private void handlePolicyUpdate(RangerService service) throws Exception {
+	private void handlePolicyUpdate(RangerService service, final Long policyId) throws Exception {
 		if(service == null) {
 			return;
 		}
@@ -1136,6 +1254,28 @@ public class ServiceDBStore extends AbstractServiceStore {
 		service.setPolicyVersion(policyVersion);
 		service.setPolicyUpdateTime(new Date());
 		service = updateService(service);
+
+		final Long   serviceId        = service.getId();
+		final String serviceName      = service.getName();
+		final Long   newPolicyVersion = policyVersion;
+
+		// the change is logged, and plugins waiting for it notified, only after it is committed: a version rolled
+		// back here can be committed by another Ranger Admin instance with different policy changes
+		if(TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					policyUpdateCommitted(serviceId, serviceName, newPolicyVersion, policyId);
+				}
+			});
+		} else {
+			policyUpdateCommitted(serviceId, serviceName, newPolicyVersion, policyId);
+		}
+	}
+
+	private void policyUpdateCommitted(Long serviceId, String serviceName, Long policyVersion, Long policyId) {
+		policyChangeLog.policyChanged(serviceId, policyVersion, policyId);
+		policyVersionNotifier.policyVersionChanged(serviceName, policyVersion.longValue());
 	}
 	
 	private void createNewPolicyItemsForPolicy(RangerPolicy policy, XXPolicy xPolicy, List<RangerPolicyItem> policyItems, XXServiceDef xServiceDef) {
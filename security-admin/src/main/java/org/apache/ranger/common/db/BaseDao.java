@@ -87,6 +87,19 @@ public abstract class BaseDao<T> {
 		return ret;
 	}
 
+	/**
+	 * Persists all the given objects, flushing once for all of them; with eclipselink.jdbc.batch-writing
+	 * enabled in the persistence unit, the inserts are sent to the database in JDBC batches
+	 */
+	public List<T> batchCreate(List<T> objList) {
+		for (T obj : objList) {
+			em.persist(obj);
+		}
+		em.flush();
+
+		return objList;
+	}
+
 	public T update(T obj) {
 		em.merge(obj);
 		em.flush();
@@ -81,4 +81,20 @@ public class XXGroupDao extends BaseDao<XXGroup> {
 		}
 	}
 
+	/**
+	 * @return (policyItemId, group name) for each group in policy items of all policies of the service
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> findPolicyItemGroupsByServiceId(Long serviceId) {
+		if (serviceId == null) {
+			return new ArrayList<Object[]>();
+		}
+		try {
+			return getEntityManager()
+					.createNamedQuery("XXGroup.findPolicyItemGroupsByServiceId")
+					.setParameter("serviceId", serviceId).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<Object[]>();
+		}
+	}
 }
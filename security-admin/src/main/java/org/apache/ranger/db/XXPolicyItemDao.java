@@ -53,4 +53,19 @@ public class XXPolicyItemDao extends BaseDao<XXPolicyItem> {
 		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * @return policy items of all policies of the service
+	 */
+	public List<XXPolicyItem> findByServiceId(Long serviceId) {
+		if(serviceId == null) {
+			return new ArrayList<XXPolicyItem>();
+		}
+		try {
+			return getEntityManager()
+					.createNamedQuery("XXPolicyItem.findByServiceId", tClass)
+					.setParameter("serviceId", serviceId).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXPolicyItem>();
+		}
+	}
+}
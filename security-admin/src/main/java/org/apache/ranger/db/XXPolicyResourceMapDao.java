@@ -44,4 +44,19 @@ public class XXPolicyResourceMapDao extends BaseDao<XXPolicyResourceMap> {
 		}
 	}
 
+	/**
+	 * @return resource values of all policies of the service
+	 */
+	public List<XXPolicyResourceMap> findByServiceId(Long serviceId) {
+		if(serviceId == null) {
+			return new ArrayList<XXPolicyResourceMap>();
+		}
+		try {
+			return getEntityManager()
+					.createNamedQuery("XXPolicyResourceMap.findByServiceId", tClass)
+					.setParameter("serviceId", serviceId).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<XXPolicyResourceMap>();
+		}
+	}
 }
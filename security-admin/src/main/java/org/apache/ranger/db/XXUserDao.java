@@ -20,6 +20,7 @@
  package org.apache.ranger.db;
 
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.NoResultException;
@@ -64,4 +65,21 @@ public class XXUserDao extends BaseDao<XXUser> {
 			return null;
 		}
 	}
+
+	/**
+	 * @return (policyItemId, user name) for each user in policy items of all policies of the service
+	 */
+	@SuppressWarnings("unchecked")
+	public List<Object[]> findPolicyItemUsersByServiceId(Long serviceId) {
+		if (serviceId == null) {
+			return new ArrayList<Object[]>();
+		}
+		try {
+			return getEntityManager()
+					.createNamedQuery("XXUser.findPolicyItemUsersByServiceId")
+					.setParameter("serviceId", serviceId).getResultList();
+		} catch (NoResultException e) {
+			return new ArrayList<Object[]>();
+		}
+	}
 }
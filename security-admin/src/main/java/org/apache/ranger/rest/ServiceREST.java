@@ -19,6 +19,7 @@
 
 package org.apache.ranger.rest;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -37,6 +38,10 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
@@ -45,6 +50,8 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.ranger.admin.client.datatype.RESTResponse;
 import org.apache.ranger.biz.AssetMgr;
 import org.apache.ranger.biz.RangerBizUtil;
+import org.apache.ranger.biz.RangerPolicyExportAuditWriter;
+import org.apache.ranger.biz.RangerServicePoliciesPayloadCache;
 import org.apache.ranger.biz.ServiceDBStore;
 import org.apache.ranger.biz.ServiceMgr;
 import org.apache.ranger.biz.XUserMgr;
@@ -74,6 +81,7 @@ import org.apache.ranger.plugin.service.ResourceLookupContext;
 import org.apache.ranger.plugin.util.GrantRevokeRequest;
 import org.apache.ranger.plugin.util.SearchFilter;
 import org.apache.ranger.plugin.util.ServicePolicies;
+import org.apache.ranger.plugin.util.ServicePoliciesBinaryFormat;
 import org.apache.ranger.service.RangerPolicyService;
 import org.apache.ranger.service.RangerServiceDefService;
 import org.apache.ranger.service.RangerServiceService;
@@ -83,11 +91,17 @@ import org.apache.ranger.view.RangerServiceList;
 import org.apache.ranger.view.VXResponse;
 import org.apache.ranger.view.VXString;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Scope;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Path("plugins")
 @Component
@@ -105,6 +119,13 @@ public class ServiceREST {
 	@Autowired
 	AssetMgr assetMgr;
 
+	@Autowired
+	RangerPolicyExportAuditWriter policyExportAuditWriter;
+
+	@Autowired
+	@Qualifier(value = "transactionManager")
+	PlatformTransactionManager txManager;
+
 	@Autowired
 	XUserMgr userMgr;
 
@@ -1091,27 +1112,74 @@ public class ServiceREST {
 
 	@GET
 	@Path("/policies/download/{serviceName}")
-	@Produces({ "application/json", "application/xml" })
-	public ServicePolicies getServicePoliciesIfUpdated(@PathParam("serviceName") String serviceName, @QueryParam("lastKnownVersion") Long lastKnownVersion, @QueryParam("pluginId") String pluginId, @Context HttpServletRequest request) throws Exception {
+	@Produces({ "application/json", "application/xml", ServicePoliciesBinaryFormat.MIME_TYPE })
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public Response getServicePoliciesIfUpdated(@PathParam("serviceName") String serviceName, @QueryParam("lastKnownVersion") Long lastKnownVersion, @QueryParam("pluginId") String pluginId, @QueryParam("supportsPolicyDeltas") Boolean supportsPolicyDeltas, @QueryParam("waitForPolicyUpdateMs") Long waitForPolicyUpdateMs, @Context HttpServletRequest request) throws Exception {
 		if(LOG.isDebugEnabled()) {
-			LOG.debug("==> ServiceREST.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ")");
+			LOG.debug("==> ServiceREST.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + waitForPolicyUpdateMs + ")");
+		}
+
+		boolean  isLongPoll = lastKnownVersion != null && waitForPolicyUpdateMs != null && waitForPolicyUpdateMs.longValue() > 0;
+		Response ret        = downloadServicePolicies(serviceName, lastKnownVersion, pluginId, supportsPolicyDeltas, !isLongPoll, request);
+
+		// wait outside of a transaction: the wait holds no database connection, and the download after it sees the committed change
+		if(isLongPoll && ret != null && ret.getStatus() == HttpServletResponse.SC_NOT_MODIFIED) {
+			if(svcStore.waitForPolicyUpdate(serviceName, lastKnownVersion.longValue(), waitForPolicyUpdateMs.longValue())) {
+				ret = downloadServicePolicies(serviceName, lastKnownVersion, pluginId, supportsPolicyDeltas, true, request);
+			} else {
+				createPolicyDownloadAudit(serviceName, lastKnownVersion, pluginId, null, HttpServletResponse.SC_NOT_MODIFIED, request);
+			}
+		}
+
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("<== ServiceREST.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ", " + waitForPolicyUpdateMs + "): status=" + (ret == null ? null : ret.getStatus()));
+		}
+
+		return ret;
+	}
+
+	private Response downloadServicePolicies(final String serviceName, final Long lastKnownVersion, final String pluginId, final Boolean supportsPolicyDeltas, final boolean auditNotModified, final HttpServletRequest request) {
+		TransactionTemplate txTemplate = new TransactionTemplate(txManager);
+
+		txTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+		return txTemplate.execute(new TransactionCallback<Response>() {
+			@Override
+			public Response doInTransaction(TransactionStatus status) {
+				return getServicePoliciesResponse(serviceName, lastKnownVersion, pluginId, supportsPolicyDeltas, auditNotModified, request);
+			}
+		});
+	}
+
+	private Response getServicePoliciesResponse(String serviceName, Long lastKnownVersion, String pluginId, Boolean supportsPolicyDeltas, boolean auditNotModified, HttpServletRequest request) {
+		if(LOG.isDebugEnabled()) {
+			LOG.debug("==> ServiceREST.getServicePoliciesResponse(" + serviceName + ", " + lastKnownVersion + ")");
 		}
 
 		ServicePolicies ret      = null;
+		Response        response = null;
 		int             httpCode = HttpServletResponse.SC_OK;
 		String          logMsg   = null;
 
 		if (serviceUtil.isValidateHttpsAuthentication(serviceName, request)) {
 			
 			try {
-				ret = svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion);
+				ret = svcStore.getServicePoliciesIfUpdated(serviceName, lastKnownVersion, Boolean.TRUE.equals(supportsPolicyDeltas));
 	
 				if(ret == null) {
 					httpCode = HttpServletResponse.SC_NOT_MODIFIED;
 					logMsg   = "No change since last update";
-				} else {
+					response = Response.notModified().build();
+				} else if(!acceptsJson(request) && !acceptsBinaryFormat(request)) {
 					httpCode = HttpServletResponse.SC_OK;
 					logMsg   = "Returning " + (ret.getPolicies() != null ? ret.getPolicies().size() : 0) + " policies. Policy version=" + ret.getPolicyVersion();
+					response = Response.ok(ret).build();
+				} else {
+					RangerServicePoliciesPayloadCache.Payload payload = svcStore.getServicePoliciesPayload(ret);
+
+					httpCode = HttpServletResponse.SC_OK;
+					logMsg   = "Returning " + (ret.getPolicies() != null ? ret.getPolicies().size() : 0) + (Boolean.TRUE.equals(ret.getIsDelta()) ? " changed" : "") + " policies. Policy version=" + ret.getPolicyVersion();
+					response = createPayloadResponse(payload, request);
 				}
 			} catch(Exception excp) {
 				LOG.error("getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + ") failed", excp);
@@ -1119,20 +1187,55 @@ public class ServiceREST {
 				httpCode = HttpServletResponse.SC_BAD_REQUEST;
 				logMsg   = excp.getMessage();
 			} finally {
-				createPolicyDownloadAudit(serviceName, lastKnownVersion, pluginId, ret, httpCode, request);
+				if(httpCode != HttpServletResponse.SC_NOT_MODIFIED || auditNotModified) {
+					createPolicyDownloadAudit(serviceName, lastKnownVersion, pluginId, ret, httpCode, request);
+				}
 			}
 	
-			if(httpCode != HttpServletResponse.SC_OK) {
-				boolean logError = httpCode != HttpServletResponse.SC_NOT_MODIFIED;
-				throw restErrorUtil.createRESTException(httpCode, logMsg, logError);
+			if(httpCode == HttpServletResponse.SC_BAD_REQUEST) {
+				throw restErrorUtil.createRESTException(httpCode, logMsg, true);
 			}
 		 }
  
 		if(LOG.isDebugEnabled()) {
-			LOG.debug("<== ServiceREST.getServicePoliciesIfUpdated(" + serviceName + ", " + lastKnownVersion + "): count=" + ((ret == null || ret.getPolicies() == null) ? 0 : ret.getPolicies().size()));
+			LOG.debug("<== ServiceREST.getServicePoliciesResponse(" + serviceName + ", " + lastKnownVersion + "): " + logMsg);
 		}
    
-		return ret;
+		return response;
+	}
+
+	private boolean acceptsJson(HttpServletRequest request) {
+		String accept = request.getHeader(HttpHeaders.ACCEPT);
+
+		return StringUtils.isEmpty(accept) || StringUtils.contains(accept, "json") || StringUtils.contains(accept, "*/*");
+	}
+
+	private boolean acceptsBinaryFormat(HttpServletRequest request) {
+		return StringUtils.contains(request.getHeader(HttpHeaders.ACCEPT), ServicePoliciesBinaryFormat.MIME_TYPE);
+	}
+
+	private Response createPayloadResponse(RangerServicePoliciesPayloadCache.Payload payload, HttpServletRequest request) throws IOException {
+		String          acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+		boolean         isGzip         = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+		ResponseBuilder builder;
+
+		if(acceptsBinaryFormat(request)) {
+			builder = Response.ok(isGzip ? payload.getGzipBinary() : payload.getBinary()).type(ServicePoliciesBinaryFormat.MIME_TYPE);
+		} else {
+			builder = Response.ok(isGzip ? payload.getGzipJson() : payload.getJson()).type(MediaType.APPLICATION_JSON_TYPE);
+		}
+
+		if(isGzip) {
+			builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+
+		builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING);
+
+		if(payload.getETag() != null) {
+			builder.header(HttpHeaders.ETAG, payload.getETag());
+		}
+
+		return builder.build();
 	}
 
 	private void createPolicyDownloadAudit(String serviceName, Long lastKnownVersion, String pluginId, ServicePolicies policies, int httpRespCode, HttpServletRequest request) {
@@ -1151,7 +1254,7 @@ public class ServiceREST {
 			policyExportAudit.setRequestedEpoch(lastKnownVersion);
 			policyExportAudit.setHttpRetCode(httpRespCode);
 
-			assetMgr.createPolicyAudit(policyExportAudit);
+			policyExportAuditWriter.addAudit(policyExportAudit);
 		} catch(Exception excp) {
 			LOG.error("error while creating policy download audit", excp);
 		}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ranger.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.entity.XXAccessTypeDef;
+import org.apache.ranger.entity.XXPolicyConditionDef;
+import org.apache.ranger.entity.XXPolicyItem;
+import org.apache.ranger.entity.XXPolicyItemAccess;
+import org.apache.ranger.entity.XXPolicyItemCondition;
+import org.apache.ranger.entity.XXPolicyResource;
+import org.apache.ranger.entity.XXPolicyResourceMap;
+import org.apache.ranger.entity.XXResourceDef;
+import org.apache.ranger.entity.XXService;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItem;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemAccess;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyItemCondition;
+import org.apache.ranger.plugin.model.RangerPolicy.RangerPolicyResource;
+
+/**
+ * Resources and policy items of all policies of a service, read with one query per table instead of
+ * queries per policy, per resource and per policy item.
+ */
+class RangerPolicyAssembler {
+	private final Map<Long, String>                            accessTypeNames   = new HashMap<Long, String>();
+	private final Map<Long, String>                            conditionDefNames = new HashMap<Long, String>();
+	private final Map<Long, String>                            resourceDefNames  = new HashMap<Long, String>();
+	private final Map<Long, List<RangerPolicyItem>>            policyItems       = new HashMap<Long, List<RangerPolicyItem>>();
+	private final Map<Long, Map<String, RangerPolicyResource>> policyResources   = new HashMap<Long, Map<String, RangerPolicyResource>>();
+
+	RangerPolicyAssembler(RangerDaoManager daoMgr, XXService xService) {
+		Long serviceId    = xService.getId();
+		Long serviceDefId = xService.getType();
+
+		for(XXAccessTypeDef xAccessTypeDef : daoMgr.getXXAccessTypeDef().findByServiceDefId(serviceDefId)) {
+			accessTypeNames.put(xAccessTypeDef.getId(), xAccessTypeDef.getName());
+		}
+
+		for(XXPolicyConditionDef xConditionDef : daoMgr.getXXPolicyConditionDef().findByServiceDefId(serviceDefId)) {
+			conditionDefNames.put(xConditionDef.getId(), xConditionDef.getName());
+		}
+
+		for(XXResourceDef xResourceDef : daoMgr.getXXResourceDef().findByServiceDefId(serviceDefId)) {
+			resourceDefNames.put(xResourceDef.getId(), xResourceDef.getName());
+		}
+
+		initPolicyItems(daoMgr, serviceId);
+		initPolicyResources(daoMgr, serviceId);
+	}
+
+	List<RangerPolicyItem> getPolicyItems(Long policyId) {
+		List<RangerPolicyItem> ret = policyItems.get(policyId);
+
+		return ret != null ? ret : new ArrayList<RangerPolicyItem>();
+	}
+
+	Map<String, RangerPolicyResource> getResources(Long policyId) {
+		Map<String, RangerPolicyResource> ret = policyResources.get(policyId);
+
+		return ret != null ? ret : new HashMap<String, RangerPolicyResource>();
+	}
+
+	private void initPolicyItems(RangerDaoManager daoMgr, Long serviceId) {
+		Map<Long, RangerPolicyItem>                       itemsById      = new HashMap<Long, RangerPolicyItem>();
+		Map<Long, Map<String, RangerPolicyItemCondition>> itemConditions = new HashMap<Long, Map<String, RangerPolicyItemCondition>>();
+
+		for(XXPolicyItem xPolicyItem : daoMgr.getXXPolicyItem().findByServiceId(serviceId)) {
+			RangerPolicyItem policyItem = new RangerPolicyItem();
+
+			policyItem.setAccesses(new ArrayList<RangerPolicyItemAccess>());
+			policyItem.setUsers(new ArrayList<String>());
+			policyItem.setGroups(new ArrayList<String>());
+			policyItem.setConditions(new ArrayList<RangerPolicyItemCondition>());
+			policyItem.setDelegateAdmin(xPolicyItem.getDelegateAdmin());
+
+			itemsById.put(xPolicyItem.getId(), policyItem);
+
+			List<RangerPolicyItem> items = policyItems.get(xPolicyItem.getPolicyid());
+
+			if(items == null) {
+				items = new ArrayList<RangerPolicyItem>();
+
+				policyItems.put(xPolicyItem.getPolicyid(), items);
+			}
+
+			items.add(policyItem);
+		}
+
+		for(XXPolicyItemAccess xAccess : daoMgr.getXXPolicyItemAccess().findByServiceId(serviceId)) {
+			RangerPolicyItem policyItem = itemsById.get(xAccess.getPolicyitemid());
+
+			if(policyItem != null) {
+				policyItem.getAccesses().add(new RangerPolicyItemAccess(accessTypeNames.get(xAccess.getType()), xAccess.getIsallowed()));
+			}
+		}
+
+		for(XXPolicyItemCondition xCondition : daoMgr.getXXPolicyItemCondition().findByServiceId(serviceId)) {
+			RangerPolicyItem policyItem = itemsById.get(xCondition.getPolicyitemid());
+
+			if(policyItem == null) {
+				continue;
+			}
+
+			// values of a condition are in multiple rows; collect them into one condition per condition-def
+			Map<String, RangerPolicyItemCondition> conditions    = itemConditions.get(xCondition.getPolicyitemid());
+			String                                 conditionType = conditionDefNames.get(xCondition.getType());
+
+			if(conditions == null) {
+				conditions = new LinkedHashMap<String, RangerPolicyItemCondition>();
+
+				itemConditions.put(xCondition.getPolicyitemid(), conditions);
+			}
+
+			RangerPolicyItemCondition condition = conditions.get(conditionType);
+
+			if(condition == null) {
+				condition = new RangerPolicyItemCondition(conditionType, new ArrayList<String>());
+
+				conditions.put(conditionType, condition);
+				policyItem.getConditions().add(condition);
+			}
+
+			condition.getValues().add(xCondition.getValue());
+		}
+
+		for(Object[] userPerm : daoMgr.getXXUser().findPolicyItemUsersByServiceId(serviceId)) {
+			RangerPolicyItem policyItem = itemsById.get((Long) userPerm[0]);
+
+			if(policyItem != null) {
+				policyItem.getUsers().add((String) userPerm[1]);
+			}
+		}
+
+		for(Object[] groupPerm : daoMgr.getXXGroup().findPolicyItemGroupsByServiceId(serviceId)) {
+			RangerPolicyItem policyItem = itemsById.get((Long) groupPerm[0]);
+
+			if(policyItem != null) {
+				policyItem.getGroups().add((String) groupPerm[1]);
+			}
+		}
+	}
+
+	private void initPolicyResources(RangerDaoManager daoMgr, Long serviceId) {
+		Map<Long, RangerPolicyResource> resourcesById = new HashMap<Long, RangerPolicyResource>();
+
+		for(XXPolicyResource xResource : daoMgr.getXXPolicyResource().findByServiceId(serviceId)) {
+			String resourceName = resourceDefNames.get(xResource.getResdefid());
+
+			if(resourceName == null) {
+				continue;
+			}
+
+			RangerPolicyResource resource = new RangerPolicyResource();
+
+			resource.setValues(new ArrayList<String>());
+			resource.setIsExcludes(xResource.getIsexcludes());
+			resource.setIsRecursive(xResource.getIsrecursive());
+
+			resourcesById.put(xResource.getId(), resource);
+
+			Map<String, RangerPolicyResource> resources = policyResources.get(xResource.getPolicyid());
+
+			if(resources == null) {
+				resources = new HashMap<String, RangerPolicyResource>();
+
+				policyResources.put(xResource.getPolicyid(), resources);
+			}
+
+			resources.put(resourceName, resource);
+		}
+
+		for(XXPolicyResourceMap xResourceMap : daoMgr.getXXPolicyResourceMap().findByServiceId(serviceId)) {
+			RangerPolicyResource resource = resourcesById.get(xResourceMap.getResourceid());
+
+			if(resource != null) {
+				resource.getValues().add(xResourceMap.getValue());
+			}
+		}
+	}
+}
@@ -20,6 +20,8 @@ package org.apache.ranger.service;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -111,6 +113,44 @@ public class RangerPolicyService extends RangerPolicyServiceBase<XXPolicy, Range
 	public RangerPolicy getPopulatedViewObject(XXPolicy xPolicy) {
 		return this.populateViewBean(xPolicy);
 	}
+
+	/**
+	 * @return all policies of the service, in the order of their ids; resources and policy items of the
+	 *         policies are read with a few queries for the whole service, instead of per policy
+	 */
+	public List<RangerPolicy> getServicePolicies(XXService xService) {
+		List<RangerPolicy> ret = new ArrayList<RangerPolicy>();
+
+		if(xService == null) {
+			return ret;
+		}
+
+		List<XXPolicy> xPolicies = daoMgr.getXXPolicy().findByServiceId(xService.getId());
+
+		if(xPolicies.isEmpty()) {
+			return ret;
+		}
+
+		Collections.sort(xPolicies, new Comparator<XXPolicy>() {
+			@Override
+			public int compare(XXPolicy p1, XXPolicy p2) {
+				return p1.getId().compareTo(p2.getId());
+			}
+		});
+
+		RangerPolicyAssembler assembler = new RangerPolicyAssembler(daoMgr, xService);
+
+		for(XXPolicy xPolicy : xPolicies) {
+			RangerPolicy vPolicy = super.populateViewBean(xPolicy);
+
+			vPolicy.setResources(assembler.getResources(xPolicy.getId()));
+			vPolicy.setPolicyItems(assembler.getPolicyItems(xPolicy.getId()));
+
+			ret.add(vPolicy);
+		}
+
+		return ret;
+	}
 	
 	public List<XXTrxLog> getTransactionLog(RangerPolicy vPolicy, int action){
 		return getTransactionLog(vPolicy, null, action);
@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.Test;
+
+
+public class TestRangerPolicyChangeLog {
+	@Test
+	public void testChangedPolicyIds() {
+		RangerPolicyChangeLog changeLog = new RangerPolicyChangeLog(10);
+
+		changeLog.policyChanged(1L, 5L, 102L);
+		changeLog.policyChanged(1L, 6L, 101L);
+		changeLog.policyChanged(1L, 7L, 102L);
+		changeLog.policyChanged(2L, 7L, 200L);
+
+		Set<Long> changedPolicyIds = changeLog.getChangedPolicyIds(1L, 4L, 7L);
+
+		assertEquals(Arrays.asList(101L, 102L), new ArrayList<Long>(changedPolicyIds));
+		assertEquals(Arrays.asList(102L), new ArrayList<Long>(changeLog.getChangedPolicyIds(1L, 6L, 7L)));
+
+		assertNull(changeLog.getChangedPolicyIds(1L, 3L, 7L)); // version 4 is not in the log
+		assertNull(changeLog.getChangedPolicyIds(1L, 7L, 7L));
+		assertNull(changeLog.getChangedPolicyIds(3L, 4L, 7L));
+
+		changeLog.serviceDeleted(1L);
+
+		assertNull(changeLog.getChangedPolicyIds(1L, 4L, 7L));
+		assertNotNull(changeLog.getChangedPolicyIds(2L, 6L, 7L));
+	}
+
+	@Test
+	public void testTruncatedLog() {
+		RangerPolicyChangeLog changeLog = new RangerPolicyChangeLog(3);
+
+		for(long version = 1; version <= 5; version++) {
+			changeLog.policyChanged(1L, version, 100L + version);
+		}
+
+		assertNull(changeLog.getChangedPolicyIds(1L, 1L, 5L));
+		assertEquals(Arrays.asList(103L, 104L, 105L), new ArrayList<Long>(changeLog.getChangedPolicyIds(1L, 2L, 5L)));
+	}
+
+	@Test
+	public void testMissingVersion() {
+		RangerPolicyChangeLog changeLog = new RangerPolicyChangeLog(10);
+
+		// version 2 was created through another instance
+		changeLog.policyChanged(1L, 1L, 101L);
+		changeLog.policyChanged(1L, 3L, 103L);
+		changeLog.policyChanged(1L, 3L, 104L); // left over from a rolled back transaction
+
+		assertNull(changeLog.getChangedPolicyIds(1L, 0L, 3L));
+		assertEquals(Arrays.asList(103L, 104L), new ArrayList<Long>(changeLog.getChangedPolicyIds(1L, 2L, 3L)));
+	}
+}
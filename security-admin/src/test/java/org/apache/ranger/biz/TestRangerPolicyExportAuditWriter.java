@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.ranger.db.RangerDaoManager;
+import org.apache.ranger.db.XXPolicyExportAuditDao;
+import org.apache.ranger.entity.XXPolicyExportAudit;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.transaction.PlatformTransactionManager;
+
+
+public class TestRangerPolicyExportAuditWriter {
+	@Test
+	public void testCoalesceNotModified() {
+		XXPolicyExportAudit audit1 = createAudit("hivedev", "host1", "10.0.0.1", 5L, HttpServletResponse.SC_NOT_MODIFIED);
+		XXPolicyExportAudit audit2 = createAudit("hivedev", "host1", "10.0.0.1", 5L, HttpServletResponse.SC_NOT_MODIFIED);
+		XXPolicyExportAudit audit3 = createAudit("hivedev", "host1", "10.0.0.1", 5L, HttpServletResponse.SC_NOT_MODIFIED);
+
+		List<XXPolicyExportAudit> ret = RangerPolicyExportAuditWriter.coalesce(Arrays.asList(audit1, audit2, audit3));
+
+		assertEquals(1, ret.size());
+		assertSame(audit3, ret.get(0)); // the latest is kept
+	}
+
+	@Test
+	public void testNoCoalesceOfDifferentDownloads() {
+		XXPolicyExportAudit audit1 = createAudit("hivedev", "host1", "10.0.0.1", 5L, HttpServletResponse.SC_NOT_MODIFIED);
+		XXPolicyExportAudit audit2 = createAudit("hivedev", "host1", "10.0.0.2", 5L, HttpServletResponse.SC_NOT_MODIFIED); // different client
+		XXPolicyExportAudit audit3 = createAudit("hdfsdev", "host1", "10.0.0.1", 5L, HttpServletResponse.SC_NOT_MODIFIED); // different service
+		XXPolicyExportAudit audit4 = createAudit("hivedev", "host1", "10.0.0.1", 6L, HttpServletResponse.SC_NOT_MODIFIED); // different version
+		XXPolicyExportAudit audit5 = createAudit("hivedev", "host1", "10.0.0.1", 5L, HttpServletResponse.SC_OK);           // different code
+		XXPolicyExportAudit audit6 = createAudit("hivedev", "host1", "10.0.0.1", 5L, HttpServletResponse.SC_OK);
+
+		List<XXPolicyExportAudit> ret = RangerPolicyExportAuditWriter.coalesce(Arrays.asList(audit1, audit2, audit3, audit4, audit5, audit6));
+
+		// audits are compared by identity, as XXPolicyExportAudit.equals() compares the values
+		assertSameAudits(Arrays.asList(audit5, audit6, audit1, audit2, audit3, audit4), ret);
+	}
+
+	@Test
+	public void testCoalesceWithinBatch() {
+		XXPolicyExportAudit audit1 = createAudit("hivedev", "host1", "10.0.0.1", 5L, HttpServletResponse.SC_NOT_MODIFIED);
+		XXPolicyExportAudit audit2 = createAudit("hdfsdev", "host2", "10.0.0.2", 8L, HttpServletResponse.SC_NOT_MODIFIED);
+		XXPolicyExportAudit audit3 = createAudit("hivedev", "host1", "10.0.0.1", 5L, HttpServletResponse.SC_OK);
+		XXPolicyExportAudit audit4 = createAudit("hivedev", "host1", "10.0.0.1", 5L, HttpServletResponse.SC_NOT_MODIFIED);
+		XXPolicyExportAudit audit5 = createAudit("hdfsdev", "host2", "10.0.0.2", 8L, HttpServletResponse.SC_NOT_MODIFIED);
+
+		List<XXPolicyExportAudit> ret = RangerPolicyExportAuditWriter.coalesce(Arrays.asList(audit1, audit2, audit3, audit4, audit5));
+
+		assertSameAudits(Arrays.asList(audit3, audit4, audit5), ret);
+	}
+
+	@Test
+	public void testFailedBatchIsWrittenOneAtATime() {
+		final XXPolicyExportAudit audit1 = createAudit("hivedev", "host1", "10.0.0.1", 5L, HttpServletResponse.SC_OK);
+		final XXPolicyExportAudit audit2 = createAudit("hivedev", "host2", "10.0.0.2", 5L, HttpServletResponse.SC_OK);
+		final XXPolicyExportAudit audit3 = createAudit("hivedev", "host3", "10.0.0.3", 5L, HttpServletResponse.SC_OK);
+
+		final List<XXPolicyExportAudit> written = new ArrayList<XXPolicyExportAudit>();
+
+		XXPolicyExportAuditDao dao    = Mockito.mock(XXPolicyExportAuditDao.class);
+		RangerDaoManager       daoMgr = Mockito.mock(RangerDaoManager.class);
+
+		Mockito.when(daoMgr.getXXPolicyExportAudit()).thenReturn(dao);
+		Mockito.when(dao.batchCreate(Mockito.anyList())).thenAnswer(new Answer<List<XXPolicyExportAudit>>() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public List<XXPolicyExportAudit> answer(InvocationOnMock invocation) throws Throwable {
+				List<XXPolicyExportAudit> audits = (List<XXPolicyExportAudit>) invocation.getArguments()[0];
+
+				for(XXPolicyExportAudit audit : audits) {
+					if(audit == audit2) {
+						throw new RuntimeException("bad audit");
+					}
+				}
+
+				written.addAll(audits);
+
+				return audits;
+			}
+		});
+
+		RangerPolicyExportAuditWriter writer = new RangerPolicyExportAuditWriter();
+
+		writer.daoMgr    = daoMgr;
+		writer.txManager = Mockito.mock(PlatformTransactionManager.class);
+
+		writer.writeBatch(Arrays.asList(audit1, audit2, audit3));
+
+		// the batch fails because of audit2; the others are written on their own
+		assertSameAudits(Arrays.asList(audit1, audit3), written);
+		Mockito.verify(dao, Mockito.times(4)).batchCreate(Mockito.anyList());
+	}
+
+	private static void assertSameAudits(List<XXPolicyExportAudit> expected, List<XXPolicyExportAudit> actual) {
+		assertEquals(expected.size(), actual.size());
+
+		for(int i = 0; i < expected.size(); i++) {
+			assertSame(expected.get(i), actual.get(i));
+		}
+	}
+
+	private static XXPolicyExportAudit createAudit(String serviceName, String agentId, String clientIP, Long requestedEpoch, int httpRetCode) {
+		XXPolicyExportAudit ret = new XXPolicyExportAudit();
+
+		ret.setRepositoryName(serviceName);
+		ret.setAgentId(agentId);
+		ret.setClientIP(clientIP);
+		ret.setRequestedEpoch(requestedEpoch);
+		ret.setHttpRetCode(httpRetCode);
+
+		return ret;
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+
+public class TestRangerPolicyVersionNotifier {
+	@Test
+	public void testWaitForChange() throws Exception {
+		final RangerPolicyVersionNotifier notifier = new RangerPolicyVersionNotifier(10);
+		ExecutorService                   executor = Executors.newSingleThreadExecutor();
+
+		try {
+			Future<Boolean> result = executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					return notifier.waitForChange("svc", 5, 60 * 1000);
+				}
+			});
+
+			Thread.sleep(100);
+
+			notifier.policyVersionChanged("other", 6);
+			notifier.policyVersionChanged("svc", 5);
+
+			assertFalse(result.isDone());
+
+			notifier.policyVersionChanged("svc", 6);
+
+			assertTrue(result.get(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// a change notified before the wait started
+		assertTrue(notifier.waitForChange("svc", 5, 60 * 1000));
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		RangerPolicyVersionNotifier notifier = new RangerPolicyVersionNotifier(10);
+
+		notifier.policyVersionChanged("svc", 5);
+
+		long startTime = System.currentTimeMillis();
+
+		assertFalse(notifier.waitForChange("svc", 5, 100));
+		assertTrue(System.currentTimeMillis() - startTime >= 100);
+
+		notifier.serviceDeleted("svc");
+
+		assertFalse(notifier.waitForChange("svc", 1, 10));
+	}
+
+	@Test
+	public void testMaxWaiters() throws Exception {
+		RangerPolicyVersionNotifier notifier = new RangerPolicyVersionNotifier(0);
+
+		notifier.policyVersionChanged("svc", 6);
+
+		// too many waiters: the request is answered right away
+		assertFalse(notifier.waitForChange("svc", 5, 60 * 1000));
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Test;
+
+
+public class TestRangerServicePoliciesCache {
+	@Test
+	public void testSingleLoadPerVersion() throws Exception {
+		final RangerServicePoliciesCache cache    = new RangerServicePoliciesCache();
+		final CountingLoader             loader   = new CountingLoader(5L, 20);
+		ExecutorService                  executor = Executors.newFixedThreadPool(8);
+		List<Future<ServicePolicies>>    results  = new ArrayList<Future<ServicePolicies>>();
+
+		try {
+			for(int i = 0; i < 32; i++) {
+				results.add(executor.submit(new Callable<ServicePolicies>() {
+					@Override
+					public ServicePolicies call() throws Exception {
+						return cache.getServicePolicies(1L, 5L, 1L, loader);
+					}
+				}));
+			}
+
+			ServicePolicies first = results.get(0).get();
+
+			for(Future<ServicePolicies> result : results) {
+				assertSame(first, result.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(1, loader.loadCount.get());
+	}
+
+	@Test
+	public void testVersionChange() throws Exception {
+		RangerServicePoliciesCache cache  = new RangerServicePoliciesCache();
+		CountingLoader             loader = new CountingLoader(5L, 0);
+
+		ServicePolicies v5 = cache.getServicePolicies(1L, 5L, 1L, loader);
+
+		assertSame(v5, cache.getServicePolicies(1L, 5L, 1L, loader));
+		assertEquals(1, loader.loadCount.get());
+
+		assertNotSame(v5, cache.getServicePolicies(1L, 5L, 2L, loader)); // service-def updated
+		assertEquals(2, loader.loadCount.get());
+
+		ServicePolicies v6 = cache.getServicePolicies(1L, 6L, 2L, loader);
+
+		assertEquals(3, loader.loadCount.get());
+
+		// a late request for an older version doesn't evict the newer one
+		cache.getServicePolicies(1L, 5L, 2L, loader);
+
+		assertSame(v6, cache.getServicePolicies(1L, 6L, 2L, loader));
+		assertEquals(4, loader.loadCount.get());
+
+		cache.serviceDeleted(1L);
+
+		assertNotSame(v6, cache.getServicePolicies(1L, 6L, 2L, loader));
+	}
+
+	@Test
+	public void testFailedLoadNotCached() throws Exception {
+		RangerServicePoliciesCache cache  = new RangerServicePoliciesCache();
+		CountingLoader             loader = new CountingLoader(5L, 0);
+
+		try {
+			cache.getServicePolicies(1L, 5L, 1L, new RangerServicePoliciesCache.Loader() {
+				@Override
+				public ServicePolicies load() throws Exception {
+					throw new Exception("database not available");
+				}
+			});
+
+			fail("expected exception");
+		} catch(Exception excp) {
+			// expected
+		}
+
+		assertNotNull(cache.getServicePolicies(1L, 5L, 1L, loader));
+		assertEquals(1, loader.loadCount.get());
+	}
+
+	static class CountingLoader implements RangerServicePoliciesCache.Loader {
+		final AtomicInteger loadCount = new AtomicInteger();
+		final Long          policyVersion;
+		final long          loadTimeMs;
+
+		CountingLoader(Long policyVersion, long loadTimeMs) {
+			this.policyVersion = policyVersion;
+			this.loadTimeMs    = loadTimeMs;
+		}
+
+		@Override
+		public ServicePolicies load() throws Exception {
+			loadCount.incrementAndGet();
+
+			Thread.sleep(loadTimeMs);
+
+			ServicePolicies ret = new ServicePolicies();
+
+			ret.setPolicyVersion(policyVersion);
+
+			return ret;
+		}
+	}
+}
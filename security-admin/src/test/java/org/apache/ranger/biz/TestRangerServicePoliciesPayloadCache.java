@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.ranger.biz;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.ranger.plugin.util.ServicePolicies;
+import org.junit.Test;
+
+
+public class TestRangerServicePoliciesPayloadCache {
+	@Test
+	public void testPayloadPerVersion() throws Exception {
+		RangerServicePoliciesPayloadCache cache = new RangerServicePoliciesPayloadCache();
+
+		RangerServicePoliciesPayloadCache.Payload v5 = cache.getPayload("svc", createPolicies(5L));
+
+		assertNotNull(v5.getETag());
+		assertSame(v5, cache.getPayload("svc", createPolicies(5L)));
+		assertArrayEquals(v5.getJson(), gunzip(v5.getGzipJson()));
+		assertArrayEquals(v5.getBinary(), gunzip(v5.getGzipBinary()));
+
+		RangerServicePoliciesPayloadCache.Payload v6 = cache.getPayload("svc", createPolicies(6L));
+
+		assertNotSame(v5, v6);
+		assertFalse(v5.getETag().equals(v6.getETag()));
+
+		// a late request for an older version doesn't evict the newer one
+		assertEquals(v5.getETag(), cache.getPayload("svc", createPolicies(5L)).getETag());
+		assertSame(v6, cache.getPayload("svc", createPolicies(6L)));
+
+		cache.serviceDeleted("svc");
+
+		assertNotSame(v6, cache.getPayload("svc", createPolicies(6L)));
+	}
+
+	@Test
+	public void testDeltaNotCached() throws Exception {
+		RangerServicePoliciesPayloadCache cache = new RangerServicePoliciesPayloadCache();
+		ServicePolicies                   delta = createPolicies(5L);
+
+		delta.setIsDelta(Boolean.TRUE);
+
+		RangerServicePoliciesPayloadCache.Payload payload = cache.getPayload("svc", delta);
+
+		assertNull(payload.getETag());
+		assertNotSame(payload, cache.getPayload("svc", delta));
+	}
+
+	private ServicePolicies createPolicies(Long policyVersion) {
+		ServicePolicies ret = new ServicePolicies();
+
+		ret.setServiceId(1L);
+		ret.setServiceName("svc");
+		ret.setPolicyVersion(policyVersion);
+
+		return ret;
+	}
+
+	private byte[] gunzip(byte[] data) throws Exception {
+		ByteArrayOutputStream ret = new ByteArrayOutputStream();
+		InputStream           in  = new GZIPInputStream(new ByteArrayInputStream(data));
+		byte[]                buf = new byte[4096];
+
+		for(int len = in.read(buf); len != -1; len = in.read(buf)) {
+			ret.write(buf, 0, len);
+		}
+
+		in.close();
+
+		return ret.toByteArray();
+	}
+}